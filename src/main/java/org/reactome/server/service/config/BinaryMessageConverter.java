@@ -0,0 +1,61 @@
+package org.reactome.server.service.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.http.converter.json.AbstractJackson2HttpMessageConverter;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.Objects;
+
+/**
+ * Binary counterpart (CBOR or Smile) of {@link CustomMessageConverter}. The content is the same as the JSON one
+ * (same includeRef and view parameters), but smaller and faster to parse, so it is meant for machine clients that
+ * request it via the Accept header (i.e. "application/cbor" or "application/x-jackson-smile").
+ */
+public class BinaryMessageConverter extends AbstractJackson2HttpMessageConverter {
+
+    public static final String APPLICATION_CBOR = "application/cbor";
+    public static final String APPLICATION_SMILE = "application/x-jackson-smile";
+
+    private final JacksonViews views;
+
+    /**
+     * @param defaultObjectMapper mapper for the binary format with the dbId object identity
+     * @param jsogObjectMapper    mapper for the binary format with the JSOG object identity
+     * @param mediaType           the media type of the binary format
+     */
+    public BinaryMessageConverter(ObjectMapper defaultObjectMapper, ObjectMapper jsogObjectMapper, MediaType mediaType) {
+        super(defaultObjectMapper, mediaType);
+        this.views = new JacksonViews(defaultObjectMapper, jsogObjectMapper);
+    }
+
+    public ObjectWriter getObjectWriter(HttpServletRequest request) {
+        return views.getObjectWriter(request);
+    }
+
+    public ObjectReader getObjectReader(HttpServletRequest request) {
+        return views.getObjectReader(request);
+    }
+
+    @Override
+    protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage) throws IOException, HttpMessageNotWritableException {
+        HttpServletRequest request = ((ServletRequestAttributes) Objects.requireNonNull(RequestContextHolder.getRequestAttributes())).getRequest();
+        this.getObjectWriter(request).writeValue(outputMessage.getBody(), object);
+    }
+
+    @Override
+    protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage) throws IOException, HttpMessageNotReadableException {
+        HttpServletRequest request = ((ServletRequestAttributes) Objects.requireNonNull(RequestContextHolder.getRequestAttributes())).getRequest();
+        return this.getObjectReader(request).readValue(inputMessage.getBody(), clazz);
+    }
+}
@@ -3,9 +3,7 @@ package org.reactome.server.service.config;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.ObjectReader;
 import com.fasterxml.jackson.databind.ObjectWriter;
-import com.fasterxml.jackson.databind.SerializationFeature;
 import org.reactome.server.graph.aop.LazyFetchAspect;
-import org.reactome.server.graph.domain.annotations.StoichiometryView;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.http.HttpInputMessage;
@@ -29,54 +27,27 @@ import java.util.Objects;
 @Component
 public class CustomMessageConverter extends MappingJackson2HttpMessageConverter {
 
-    private final ObjectMapper defaultObjectMapper;
-    private final ObjectMapper jsogObjectMapper;
+    private final JacksonViews views;
     private final LazyFetchAspect lazyFetchAspect;
 
 
     @Autowired
     public CustomMessageConverter(ObjectMapper defaultObjectMapper, @Qualifier("jsogObjectMapper") ObjectMapper jsogObjectMapper, LazyFetchAspect lazyFetchAspect) {
         super(defaultObjectMapper);
-        this.defaultObjectMapper = defaultObjectMapper;
-        this.jsogObjectMapper = jsogObjectMapper;
         this.lazyFetchAspect = lazyFetchAspect;
+        this.views = new JacksonViews(defaultObjectMapper, jsogObjectMapper);
     }
 
-    private ObjectMapper getMapper(HttpServletRequest request) {
-        boolean useJsog = Boolean.parseBoolean(request.getParameter("includeRef"));
-        ObjectMapper mapper = useJsog ? jsogObjectMapper : defaultObjectMapper;
-        mapper.configure(SerializationFeature.WRAP_ROOT_VALUE, false);
-        return mapper;
+    public ObjectWriter getDefaultObjectWriter() {
+        return views.getDefaultObjectWriter();
     }
 
     public ObjectWriter getObjectWriter(HttpServletRequest request) {
-        ObjectMapper mapper = getMapper(request);
-        String view = request.getParameter("view");
-        if (view == null) return mapper.writerWithView(StoichiometryView.Flatten.class);
-        switch (view) {
-            case "nested":
-                return mapper.writerWithView(StoichiometryView.Nested.class);
-            case "nested-aggregated":
-                return mapper.writerWithView(StoichiometryView.NestedAggregated.class);
-            case "flatten":
-            default:
-                return mapper.writerWithView(StoichiometryView.Flatten.class);
-        }
+        return views.getObjectWriter(request);
     }
 
     public ObjectReader getObjectReader(HttpServletRequest request) {
-        ObjectMapper mapper = getMapper(request);
-        String view = request.getParameter("view");
-        if (view == null) return mapper.readerWithView(StoichiometryView.Flatten.class);
-        switch (view) {
-            case "nested":
-                return mapper.readerWithView(StoichiometryView.Nested.class);
-            case "nested-aggregated":
-                return mapper.readerWithView(StoichiometryView.NestedAggregated.class);
-            case "flatten":
-            default:
-                return mapper.readerWithView(StoichiometryView.Flatten.class);
-        }
+        return views.getObjectReader(request);
     }
 
 
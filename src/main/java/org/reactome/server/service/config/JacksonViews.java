@@ -0,0 +1,64 @@
+package org.reactome.server.service.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.reactome.server.graph.domain.annotations.StoichiometryView;
+
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * Writers and readers for every combination of object identity (dbId or JSOG, see includeRef parameter) and
+ * stoichiometry view (see view parameter) of a given format. Writers and readers are immutable, so they are created
+ * once and shared by the message converters of the different formats (JSON, CBOR and Smile).
+ */
+class JacksonViews {
+
+    // Views indexed as returned by getView: flatten (default), nested and nested-aggregated
+    private static final Class<?>[] VIEWS = {StoichiometryView.Flatten.class, StoichiometryView.Nested.class, StoichiometryView.NestedAggregated.class};
+
+    private final ObjectWriter[][] writers = new ObjectWriter[2][VIEWS.length];
+    private final ObjectReader[][] readers = new ObjectReader[2][VIEWS.length];
+
+    JacksonViews(ObjectMapper defaultObjectMapper, ObjectMapper jsogObjectMapper) {
+        ObjectMapper[] mappers = {defaultObjectMapper, jsogObjectMapper};
+        for (int m = 0; m < mappers.length; m++) {
+            for (int v = 0; v < VIEWS.length; v++) {
+                writers[m][v] = mappers[m].writerWithView(VIEWS[v]).without(SerializationFeature.WRAP_ROOT_VALUE);
+                readers[m][v] = mappers[m].readerWithView(VIEWS[v]);
+            }
+        }
+    }
+
+    // No identity references and flatten view (what requests without includeRef and view parameters get)
+    ObjectWriter getDefaultObjectWriter() {
+        return writers[0][0];
+    }
+
+    ObjectWriter getObjectWriter(HttpServletRequest request) {
+        return writers[getMapper(request)][getView(request)];
+    }
+
+    ObjectReader getObjectReader(HttpServletRequest request) {
+        return readers[getMapper(request)][getView(request)];
+    }
+
+    private int getMapper(HttpServletRequest request) {
+        return Boolean.parseBoolean(request.getParameter("includeRef")) ? 1 : 0;
+    }
+
+    private int getView(HttpServletRequest request) {
+        String view = request.getParameter("view");
+        if (view == null) return 0;
+        switch (view) {
+            case "nested":
+                return 1;
+            case "nested-aggregated":
+                return 2;
+            case "flatten":
+            default:
+                return 0;
+        }
+    }
+}
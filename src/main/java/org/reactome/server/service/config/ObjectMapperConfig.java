@@ -4,17 +4,29 @@ package org.reactome.server.service.config;
 import com.fasterxml.jackson.annotation.JsonIdentityInfo;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.ObjectIdGenerators;
+import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
 import com.voodoodyne.jackson.jsog.JSOGGenerator;
 import org.reactome.server.graph.domain.model.DatabaseObject;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
+import org.springframework.http.MediaType;
 
 @Configuration
 public class ObjectMapperConfig {
 
+    /*
+     * Blackbird replaces the reflective getter invocation with accessors generated through LambdaMetafactory. It only
+     * changes how the properties are accessed, so the object identity (dbId and JSOG) handling remains the same.
+     */
+    @Value("${jackson.blackbird:false}")
+    private Boolean blackbird;
 
     @JsonIdentityInfo(generator = ObjectIdGenerators.PropertyGenerator.class, property = "dbId")
     public abstract static class DatabaseObjectMixin {
@@ -34,10 +46,7 @@ public class ObjectMapperConfig {
     @Bean
     @Primary
     public ObjectMapper defaultObjectMapper() {
-        ObjectMapper mapper = new ObjectMapper();
-        mapper.setSerializationInclusion(JsonInclude.Include.NON_EMPTY);
-        mapper.addMixIn(DatabaseObject.class, DatabaseObjectMixin.class);
-        return mapper;
+        return createMapper(new JsonFactory(), DatabaseObjectMixin.class);
     }
 
     /**
@@ -49,9 +58,38 @@ public class ObjectMapperConfig {
     @Bean
     @Qualifier("jsogObjectMapper")
     public ObjectMapper jsogObjectMapper() {
-        ObjectMapper mapper = new ObjectMapper();
+        return createMapper(new JsonFactory(), DatabaseObjectJSOGMixin.class);
+    }
+
+    /**
+     * CBOR version of the JSON responses (same mappers configuration) for the clients requesting "application/cbor"
+     * @return BinaryMessageConverter
+     */
+    @Bean
+    public BinaryMessageConverter cborMessageConverter() {
+        return new BinaryMessageConverter(
+                createMapper(new CBORFactory(), DatabaseObjectMixin.class),
+                createMapper(new CBORFactory(), DatabaseObjectJSOGMixin.class),
+                MediaType.valueOf(BinaryMessageConverter.APPLICATION_CBOR));
+    }
+
+    /**
+     * Smile version of the JSON responses (same mappers configuration) for the clients requesting "application/x-jackson-smile"
+     * @return BinaryMessageConverter
+     */
+    @Bean
+    public BinaryMessageConverter smileMessageConverter() {
+        return new BinaryMessageConverter(
+                createMapper(new SmileFactory(), DatabaseObjectMixin.class),
+                createMapper(new SmileFactory(), DatabaseObjectJSOGMixin.class),
+                MediaType.valueOf(BinaryMessageConverter.APPLICATION_SMILE));
+    }
+
+    private ObjectMapper createMapper(JsonFactory factory, Class<?> databaseObjectMixin) {
+        ObjectMapper mapper = new ObjectMapper(factory);
         mapper.setSerializationInclusion(JsonInclude.Include.NON_EMPTY);
-        mapper.addMixIn(DatabaseObject.class, DatabaseObjectJSOGMixin.class);
+        mapper.addMixIn(DatabaseObject.class, databaseObjectMixin);
+        if (blackbird) mapper.registerModule(new BlackbirdModule());
         return mapper;
     }
 
@@ -1,8 +1,12 @@
 package org.reactome.server.service.config;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import org.apache.catalina.Context;
 import org.apache.tomcat.util.scan.StandardJarScanner;
+import org.reactome.server.graph.service.GeneralService;
 import org.reactome.server.service.utils.CustomRequestFilter;
+import org.reactome.server.service.utils.PrecompressedResponseFilter;
+import org.reactome.server.service.utils.ReleaseETagFilter;
 import org.reactome.server.utils.proxy.ProxyServlet;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
@@ -11,6 +15,7 @@ import org.springframework.boot.web.servlet.ServletRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.PropertySource;
+import org.springframework.core.Ordered;
 
 import java.util.Map;
 
@@ -87,6 +92,39 @@ public class ServletConfig {
         registration.setFilter(customRequestFilter);
         registration.addUrlPatterns("/*");
         registration.setName("crs");
+        registration.setOrder(Ordered.LOWEST_PRECEDENCE - 2); //Before etag and precompressed, so the CORS headers are always added
+        return registration;
+    }
+
+    /**
+     * Release based ETag and Cache-Control for the content responses (304 for the conditional requests of the current
+     * release)
+     */
+    @Bean
+    public FilterRegistrationBean<ReleaseETagFilter> releaseETagFilter(GeneralService generalService,
+                                                                       @Value("${etag.max.age:86400}") Long maxAge,
+                                                                       MeterRegistry registry) {
+        FilterRegistrationBean<ReleaseETagFilter> registration = new FilterRegistrationBean<>();
+        registration.setFilter(new ReleaseETagFilter(generalService, maxAge, registry));
+        registration.addUrlPatterns("/data/*", "/exporter/*", "/search/*");
+        registration.setName("etag");
+        registration.setOrder(Ordered.LOWEST_PRECEDENCE - 1); //Before precompressed, so 304 are answered straight away
+        return registration;
+    }
+
+    /**
+     * Responses that only depend on the database version are compressed once per release (see the
+     * server.compression.* properties for the rest of the responses)
+     */
+    @Bean
+    public FilterRegistrationBean<PrecompressedResponseFilter> precompressedResponseFilter(GeneralService generalService,
+                                                                                          @Value("${precompressed.cache.size:200}") Integer size,
+                                                                                          MeterRegistry registry) {
+        FilterRegistrationBean<PrecompressedResponseFilter> registration = new FilterRegistrationBean<>();
+        registration.setFilter(new PrecompressedResponseFilter(generalService, size, registry));
+        registration.addUrlPatterns("/data/species/*", "/data/diseases", "/data/schema/model");
+        registration.setName("precompressed");
+        registration.setOrder(Ordered.LOWEST_PRECEDENCE);
         return registration;
     }
 
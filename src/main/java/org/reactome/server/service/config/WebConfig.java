@@ -1,6 +1,7 @@
 package org.reactome.server.service.config;
 
 
+import io.micrometer.core.instrument.MeterRegistry;
 import org.aspectj.lang.Aspects;
 import org.gk.persistence.MySQLAdaptor;
 import org.reactome.server.analysis.core.data.AnalysisData;
@@ -8,12 +9,16 @@ import org.reactome.server.analysis.core.result.utils.TokenUtils;
 import org.reactome.server.graph.aop.LazyFetchAspect;
 import org.reactome.server.interactors.service.PsicquicService;
 import org.reactome.server.service.utils.AspectLazyLoadingPrevention;
+import org.reactome.server.service.utils.BoundedAsyncExecutor;
+import org.reactome.server.service.utils.BulkLookupWriter;
 import org.reactome.server.service.utils.TupleManager;
 import org.reactome.server.service.utils.TuplesFileCheckerController;
+import org.reactome.server.service.utils.WeightedAdmissionScheduler;
 import org.reactome.server.tools.diagram.exporter.raster.RasterExporter;
 import org.reactome.server.tools.event.exporter.EventExporter;
 import org.reactome.server.tools.fireworks.exporter.FireworksExporter;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -75,10 +80,16 @@ public class WebConfig implements WebMvcConfigurer {
 
 
     private final CustomMessageConverter customMessageConverter;
+    private final BinaryMessageConverter cborMessageConverter;
+    private final BinaryMessageConverter smileMessageConverter;
 
     @Autowired
-    public WebConfig(CustomMessageConverter customMessageConverter) {
+    public WebConfig(CustomMessageConverter customMessageConverter,
+                     @Qualifier("cborMessageConverter") BinaryMessageConverter cborMessageConverter,
+                     @Qualifier("smileMessageConverter") BinaryMessageConverter smileMessageConverter) {
         this.customMessageConverter = customMessageConverter;
+        this.cborMessageConverter = cborMessageConverter;
+        this.smileMessageConverter = smileMessageConverter;
     }
 
 
@@ -96,6 +107,55 @@ public class WebConfig implements WebMvcConfigurer {
         return new RasterExporter(diagramPath, ehldPath, analysisPath, svgSummary);
     }
 
+    /**
+     * Admission for the raster exports (diagrams, reactions and fireworks) based on the estimated size of the images
+     * to be generated, so the heap is not exhausted when many big images are requested at the same time.
+     */
+    @Bean
+    public WeightedAdmissionScheduler rasterAdmissionScheduler(@Value("${raster.admission.budget:120000000}") Long budget,
+                                                               @Value("${raster.admission.queue:50}") Integer queueSize,
+                                                               @Value("${raster.admission.timeout:30000}") Long timeout,
+                                                               MeterRegistry registry) {
+        return new WeightedAdmissionScheduler("raster", budget, queueSize, timeout, registry);
+    }
+
+    /**
+     * Dedicated pool for the generation of the PDF documents, so servlet threads are not held while documents are
+     * being generated and only a few of them are generated at the same time.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public BoundedAsyncExecutor reportExecutor(@Value("${report.threads:4}") Integer threads,
+                                               @Value("${report.queue:20}") Integer queueSize,
+                                               @Value("${report.queue.timeout:60000}") Long queueTimeout,
+                                               MeterRegistry registry) {
+        return new BoundedAsyncExecutor("report", threads, queueSize, queueTimeout, registry);
+    }
+
+    /**
+     * Dedicated pool for the SBML and SBGN conversions of the events that have not been previously exported
+     */
+    @Bean(destroyMethod = "shutdown")
+    public BoundedAsyncExecutor sbxxExecutor(@Value("${sbxx.threads:2}") Integer threads,
+                                             @Value("${sbxx.queue:50}") Integer queueSize,
+                                             @Value("${sbxx.queue.timeout:60000}") Long queueTimeout,
+                                             MeterRegistry registry) {
+        return new BoundedAsyncExecutor("sbxx", threads, queueSize, queueTimeout, registry);
+    }
+
+    /**
+     * Bulk lookups of identifiers (requested as newline delimited JSON), resolved in batches by a dedicated pool
+     */
+    @Bean(destroyMethod = "shutdown")
+    public BulkLookupWriter bulkLookupWriter(@Value("${bulk.max.ids:20000}") Integer maxIds,
+                                             @Value("${bulk.batch.size:500}") Integer batchSize,
+                                             @Value("${bulk.parallelism:2}") Integer parallelism,
+                                             @Value("${bulk.threads:4}") Integer threads,
+                                             @Value("${bulk.queue:100}") Integer queueSize,
+                                             @Value("${bulk.queue.timeout:60000}") Long queueTimeout,
+                                             MeterRegistry registry) {
+        return new BulkLookupWriter(maxIds, batchSize, parallelism, threads, queueSize, queueTimeout, registry);
+    }
+
     @Bean
     public EventExporter eventExporter(@Value("${diagram.json.folder}") String diagramPath,
                                        @Value("${ehld.folder}") String ehldPath,
@@ -168,6 +228,9 @@ public class WebConfig implements WebMvcConfigurer {
 //        MappingJackson2HttpMessageConverter mappingJackson2HttpMessageConverter = new MappingJackson2HttpMessageConverter(objectMapper);
 
         converters.add(customMessageConverter);
+        // Only used when explicitly requested (JSON is the default since it goes first)
+        converters.add(cborMessageConverter);
+        converters.add(smileMessageConverter);
         List<MediaType> mediaTypes = new ArrayList<>();
         mediaTypes.add(MediaType.valueOf("text/plain; charset=UTF-8"));
         mediaTypes.add(MediaType.valueOf("application/json; charset=UTF-8"));
@@ -229,6 +229,18 @@ class GlobalExceptionHandler {
         return toJsonResponse(HttpStatus.PAYLOAD_TOO_LARGE, request, e.getMessage());
     }
 
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    @ExceptionHandler(ServiceUnavailableException.class)
+    @ResponseBody
+    ResponseEntity<String> handleServiceUnavailableException(HttpServletRequest request, ServiceUnavailableException e) {
+        logger.warn("ServiceUnavailableException was caught for request: " + request.getRequestURL());
+        ResponseEntity<String> rtn = toJsonResponse(HttpStatus.SERVICE_UNAVAILABLE, request, e.getMessage());
+        return ResponseEntity.status(rtn.getStatusCode())
+                .headers(rtn.getHeaders())
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfter()))
+                .body(rtn.getBody());
+    }
+
     //================================================================================
     // Neo4j
     //================================================================================
@@ -14,18 +14,30 @@ import org.reactome.server.graph.service.DatabaseObjectService;
 import org.reactome.server.graph.service.SchemaService;
 import org.reactome.server.service.exception.BadRequestException;
 import org.reactome.server.service.exception.NotFoundException;
+import org.reactome.server.service.manager.DocumentCacheManager;
+import org.reactome.server.service.utils.BoundedAsyncExecutor;
+import org.reactome.server.service.utils.FileResponseUtils;
 import org.reactome.server.tools.event.exporter.DocumentArgs;
 import org.reactome.server.tools.event.exporter.EventExporter;
 import org.reactome.server.tools.reaction.exporter.compartment.ReactomeCompartmentFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
 import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
@@ -39,9 +51,6 @@ import java.net.URL;
 @RequestMapping("/exporter")
 public class EventPdfController {
 
-    private static final Object REPORT_SEMAPHORE = new Object();
-    private static long REPORT_COUNT = 0L;
-    private static final int ALLOWED_CONCURRENT_REPORTS = 4;
     private static final int MAX_LEVEL = 1;
 
     private static final Logger logger = LoggerFactory.getLogger("infoLogger");
@@ -50,10 +59,14 @@ public class EventPdfController {
     private String reportUser;
     @Value("${report.password:default}")
     private String reportPassword;
+    @Value("${report.timeout:600000}")
+    private Long reportTimeout;
 
     private DatabaseObjectService dos;
     private TokenUtils tokenUtils;
     private EventExporter eventExporter;
+    private BoundedAsyncExecutor reportExecutor;
+    private DocumentCacheManager documentCacheManager;
 
     @Operation(
             summary = "Exports the content of a given event (pathway or reaction) to a PDF document",
@@ -70,10 +83,10 @@ public class EventPdfController {
             @ApiResponse(responseCode = "200", content = @Content(mediaType = "application/pdf")),
             @ApiResponse(responseCode = "404", description = "Stable Identifier does not match with any of the available diagrams."),
             @ApiResponse(responseCode = "500", description = "Could not deserialize diagram file."),
-            @ApiResponse(responseCode = "503", description = "Service was unable to export to Power Point.")
+            @ApiResponse(responseCode = "503", description = "Service is too busy to generate the document. Please retry after the time specified in the Retry-After header.")
     })
     @RequestMapping(value = "/document/event/{identifier}.pdf", method = RequestMethod.GET, produces = "application/pdf")
-    public void eventPdf(@Parameter(description = "Event identifier (it can be a pathway with diagram, a subpathway or a reaction)", required = true, example = "R-HSA-177929")
+    public DeferredResult<ResponseEntity<Resource>> eventPdf(@Parameter(description = "Event identifier (it can be a pathway with diagram, a subpathway or a reaction)", required = true, example = "R-HSA-177929")
                          @PathVariable String identifier,
 
                          @Parameter(description = "Number of levels to explore down in the pathways hierarchy [0 - 1]", example = "1")
@@ -92,50 +105,75 @@ public class EventPdfController {
                          @RequestParam(value = "analysisProfile", defaultValue = "Standard", required = false) String analysisProfile,
 
 
-                         HttpServletRequest request, HttpServletResponse response) throws IOException, InterruptedException {
-
-        synchronized (REPORT_SEMAPHORE) {
-            if (++REPORT_COUNT > ALLOWED_CONCURRENT_REPORTS) {
-                REPORT_SEMAPHORE.wait();
-            }
-        }
+                         HttpServletRequest request, HttpServletResponse response) throws IOException {
 
         Event event;
         try {
             event = dos.findById(identifier);
-            if (event == null) throw new NotFoundException(String.format("'%s' couldn't be found.", identifier));
-
-            DocumentArgs args = new DocumentArgs(event.getStId())
-                    .setServerName(getServerName(request))
-                    .setDiagramProfile(diagramProfile)
-                    .setSpecies(event.getSpecies().get(0).getDbId())
-                    .setMaxLevel(getLevel(level))
-                    .setResource(resource)
-                    .setImportableOnly(importableOnly)
-                    .setAnalysisProfile(analysisProfile)
-                    .setExpressionColumn(expColumn);
-
-            AnalysisStoredResult analysisResult = null;
-            if (token != null) {
-                analysisResult = tokenUtils.getFromToken(token);
-            }
-
-            response.setContentType("application/pdf");
-            response.setHeader("Content-Disposition", "attachment; filename=\"" + event.getStId() + "\".pdf");
-            eventExporter.export(args, analysisResult, response.getOutputStream());
-
-        } catch (NotFoundException ex) {
-            throw new NotFoundException(String.format("'%s' does not exist", identifier));
         } catch (ClassCastException ex) {
             throw new BadRequestException(String.format("'%s' is not an event", identifier));
-        } catch (RuntimeException ex) {
-            logger.error("Could not generate PDF document for " + identifier, ex);
-        } finally {
-            synchronized (REPORT_SEMAPHORE) {
-                REPORT_COUNT--;
-                REPORT_SEMAPHORE.notify();
+        }
+        if (event == null) throw new NotFoundException(String.format("'%s' does not exist", identifier));
+
+        // Cached documents are shared by all the requests, so they link to the canonical server. The rest link to the
+        // server that has been requested
+        String serverName = token == null ? documentCacheManager.getServerName(getServerName(request)) : getServerName(request);
+        DocumentArgs args = new DocumentArgs(event.getStId())
+                .setServerName(serverName)
+                .setDiagramProfile(diagramProfile)
+                .setSpecies(event.getSpecies().get(0).getDbId())
+                .setMaxLevel(getLevel(level))
+                .setResource(resource)
+                .setImportableOnly(importableOnly)
+                .setAnalysisProfile(analysisProfile)
+                .setExpressionColumn(expColumn);
+
+        // Documents without analysis overlay are served from the cache (generated on the first request)
+        if (token == null) {
+            String key = documentCacheManager.getKey(event.getStId(), getLevel(level), diagramProfile, serverName);
+            File document = documentCacheManager.getDocument(key);
+            if (document != null) {
+                setPdfHeaders(response, event);
+                FileResponseUtils.send(document, request, response);
+                return null; //The request has already been handled
             }
+            return reportExecutor.submit(reportTimeout, () -> {
+                try {
+                    File generated = documentCacheManager.generateDocument(key, args);
+                    return getPdfResponse(event, new FileSystemResource(generated));
+                } catch (Exception ex) {
+                    logger.error("Could not generate PDF document for " + identifier, ex);
+                    throw ex;
+                }
+            });
         }
+
+        // The document is generated by the report executor, so the servlet thread is released in the meantime. It is
+        // kept in memory and only written once the request is dispatched back, so a request that timed out (and has
+        // already been answered) is never written by the worker
+        return reportExecutor.submit(reportTimeout, () -> {
+            try {
+                AnalysisStoredResult analysisResult = tokenUtils.getFromToken(token);
+                ByteArrayOutputStream content = new ByteArrayOutputStream();
+                eventExporter.export(args, analysisResult, content);
+                return getPdfResponse(event, new ByteArrayResource(content.toByteArray()));
+            } catch (IOException | RuntimeException ex) {
+                logger.error("Could not generate PDF document for " + identifier, ex);
+                throw ex;
+            }
+        });
+    }
+
+    private void setPdfHeaders(HttpServletResponse response, Event event) {
+        response.setContentType("application/pdf");
+        response.setHeader("Content-Disposition", "attachment; filename=\"" + event.getStId() + "\".pdf");
+    }
+
+    private ResponseEntity<Resource> getPdfResponse(Event event, Resource document) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_PDF)
+                .header("Content-Disposition", "attachment; filename=\"" + event.getStId() + "\".pdf")
+                .body(document);
     }
 
     private int getLevel(int level) {
@@ -180,6 +218,16 @@ public class EventPdfController {
         this.eventExporter = eventExporter;
     }
 
+    @Autowired
+    public void setReportExecutor(@Qualifier("reportExecutor") BoundedAsyncExecutor reportExecutor) {
+        this.reportExecutor = reportExecutor;
+    }
+
+    @Autowired
+    public void setDocumentCacheManager(DocumentCacheManager documentCacheManager) {
+        this.documentCacheManager = documentCacheManager;
+    }
+
     @Autowired
     public void setSchemaService(SchemaService schemaService) {
         ReactomeCompartmentFactory.setSchemaService(schemaService);
@@ -1,5 +1,7 @@
 package org.reactome.server.service.controller.exporter;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -12,7 +14,11 @@ import org.reactome.server.graph.domain.model.Species;
 import org.reactome.server.graph.service.SpeciesService;
 import org.reactome.server.search.exception.SolrSearcherException;
 import org.reactome.server.service.exception.FireworksExporterException;
+import org.reactome.server.service.manager.FireworksLayoutManager;
+import org.reactome.server.service.manager.RasterCacheManager;
 import org.reactome.server.service.manager.SearchManager;
+import org.reactome.server.service.utils.ContentCache;
+import org.reactome.server.service.utils.WeightedAdmissionScheduler;
 import org.reactome.server.tools.fireworks.exporter.FireworksExporter;
 import org.reactome.server.tools.fireworks.exporter.common.analysis.exception.AnalysisServerError;
 import org.reactome.server.tools.fireworks.exporter.common.api.FireworkArgs;
@@ -20,8 +26,11 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 
 import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author Antonio Fabregat (fabregat@ebi.ac.uk)
@@ -36,6 +45,11 @@ public class FireworksImageExporterController {
 
     private SpeciesService speciesService;
     private SearchManager searchManager;
+    private RasterCacheManager rasterCacheManager;
+    private FireworksLayoutManager fireworksLayoutManager;
+    private WeightedAdmissionScheduler rasterAdmissionScheduler;
+
+    private Timer renderTimer;
 
     @Operation(
             summary = "Exports a given pathway overview to the specified image format (png, jpg, jpeg, svg, gif)"
@@ -50,6 +64,7 @@ public class FireworksImageExporterController {
             }),
             @ApiResponse(responseCode = "404", description = "Species does not match with any of the available."),
             @ApiResponse(responseCode = "500", description = "Could not deserialize pathways overview file."),
+            @ApiResponse(responseCode = "503", description = "Service is too busy to export the image. Please retry after the time specified in the Retry-After header.")
     })
     @RequestMapping(value = "/fireworks/{species}.{ext:.*}", method = RequestMethod.GET, produces = {"image/png", "image/jpg", "image/jpeg", "image/svg+xml", "image/gif"})
     public void diagramImage(@Parameter(description = "Species identifier (it can be the taxonomy id, species name or dbId)", required = true, example = "9606")
@@ -88,6 +103,23 @@ public class FireworksImageExporterController {
         //NO PDF for the time being
         if (ext.equalsIgnoreCase("pdf")) throw new IllegalArgumentException("Unsupported file extension pdf");
 
+        String type = ext.equalsIgnoreCase("svg") ? "svg+xml" : ext.toLowerCase();
+
+        // Overviews are fully defined by the export arguments (analysis results are immutable for a given token)
+        ContentCache cache = rasterCacheManager.getFireworksCache(token);
+        String key = ContentCache.key(rasterCacheManager.getDBVersion(), s.getDbId(), ext.toLowerCase(), quality,
+                flg, flgInteractors, sel, title, margin, profile, token, resource, expColumn, coverage);
+        byte[] image = cache.get(key);
+        if (image != null) {
+            try {
+                setHeaders(s, ext, type, response);
+                writeImage(image, response);
+            } catch (IOException e) {
+                throw new RuntimeException(e.getMessage()); //This won't generate a 400, but a 500 instead (@see GlobalExceptionHandler.handleUnclassified)
+            }
+            return;
+        }
+
         FireworkArgs args = new FireworkArgs(s.getDisplayName().replace(" ", "_"), ext);
         args.setSelected(sel);
         args.setProfile(profile);
@@ -107,15 +139,43 @@ public class FireworksImageExporterController {
             }
         }
 
-        try {
-            String type = ext.equalsIgnoreCase("svg") ? "svg+xml" : ext.toLowerCase();
-            response.addHeader("Content-Type", "image/" + type);
-            response.setHeader("Content-Disposition", "attachment; filename=\"" + s.getDisplayName() + "." + ext + "\"");
-            fireworksExporter.render(args, response.getOutputStream());
+        // The image is rendered in memory before anything is written, so failures get a proper error response
+        boolean isSVG = ext.equalsIgnoreCase("svg");
+        long area = fireworksLayoutManager.getArea(s);
+        long factor = Math.max(1, (int) Math.ceil(quality * 0.3));
+        long size = area > Long.MAX_VALUE / factor ? Long.MAX_VALUE : area * factor;
+        try (WeightedAdmissionScheduler.Permit permit = isSVG ? null : rasterAdmissionScheduler.acquire(size)) {
+            long start = System.nanoTime();
+            ByteArrayOutputStream os = new ByteArrayOutputStream();
+            fireworksExporter.render(args, os);
+            image = os.toByteArray();
+            renderTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            cache.put(key, image);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e.getMessage()); //This won't generate a 400, but a 500 instead (@see GlobalExceptionHandler.handleUnclassified)
         } catch (IOException | AnalysisServerError | TranscoderException e) {
-            e.printStackTrace();
+            throw new RuntimeException(e.getMessage()); //This won't generate a 400, but a 500 instead (@see GlobalExceptionHandler.handleUnclassified)
         }
 
+        try {
+            setHeaders(s, ext, type, response);
+            writeImage(image, response);
+        } catch (IOException e) {
+            throw new RuntimeException(e.getMessage()); //This won't generate a 400, but a 500 instead (@see GlobalExceptionHandler.handleUnclassified)
+        }
+    }
+
+    private void setHeaders(Species species, String ext, String type, HttpServletResponse response) {
+        response.addHeader("Content-Type", "image/" + type);
+        response.setHeader("Content-Disposition", "attachment; filename=\"" + species.getDisplayName() + "." + ext + "\"");
+    }
+
+    private void writeImage(byte[] image, HttpServletResponse response) throws IOException {
+        response.setContentLength(image.length);
+        OutputStream out = response.getOutputStream();
+        out.write(image);
+        out.flush();
     }
 
     @Autowired
@@ -132,4 +192,26 @@ public class FireworksImageExporterController {
     public void setSearchManager(SearchManager searchManager) {
         this.searchManager = searchManager;
     }
+
+    @Autowired
+    public void setRasterCacheManager(RasterCacheManager rasterCacheManager) {
+        this.rasterCacheManager = rasterCacheManager;
+    }
+
+    @Autowired
+    public void setFireworksLayoutManager(FireworksLayoutManager fireworksLayoutManager) {
+        this.fireworksLayoutManager = fireworksLayoutManager;
+    }
+
+    @Autowired
+    public void setRasterAdmissionScheduler(WeightedAdmissionScheduler rasterAdmissionScheduler) {
+        this.rasterAdmissionScheduler = rasterAdmissionScheduler;
+    }
+
+    @Autowired
+    public void setMeterRegistry(MeterRegistry registry) {
+        this.renderTimer = Timer.builder("contentservice.render.duration").tag("exporter", "fireworks")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(registry);
+    }
 }
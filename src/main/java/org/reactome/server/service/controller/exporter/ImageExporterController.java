@@ -16,7 +16,10 @@ import org.reactome.server.graph.service.SchemaService;
 import org.reactome.server.search.exception.SolrSearcherException;
 import org.reactome.server.service.exception.DiagramExporterException;
 import org.reactome.server.service.exception.NotFoundException;
+import org.reactome.server.service.manager.RasterCacheManager;
 import org.reactome.server.service.manager.SearchManager;
+import org.reactome.server.service.utils.ContentCache;
+import org.reactome.server.service.utils.WeightedAdmissionScheduler;
 import org.reactome.server.tools.diagram.data.graph.Graph;
 import org.reactome.server.tools.diagram.data.layout.Diagram;
 import org.reactome.server.tools.diagram.exporter.common.analysis.AnalysisException;
@@ -35,7 +38,9 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 
 import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.List;
 
 /**
@@ -49,15 +54,13 @@ public class ImageExporterController {
 
     private static final Logger infoLogger = LoggerFactory.getLogger("infoLogger");
 
-    private static final Object RASTER_SEMAPHORE = new Object();
-    private static final int MAX_RASTER_SIZE = 120000000; //60000000;
-    private static int CURRENT_RASTER_SIZE = 0;
-
     private DatabaseObjectService databaseObjectService;
     private DiagramService diagramService;
     private RasterExporter rasterExporter;
     private ReactionExporter reactionExporter;
     private SearchManager searchManager;
+    private RasterCacheManager rasterCacheManager;
+    private WeightedAdmissionScheduler rasterAdmissionScheduler;
 
     @Operation(
             summary = "Exports a given pathway diagram to the specified image format (png, jpg, jpeg, svg, gif)",
@@ -76,7 +79,8 @@ public class ImageExporterController {
                     @Content(mediaType = "image/gif"),
             }),
             @ApiResponse(responseCode = "404", description = "Stable Identifier does not match with any of the available diagrams."),
-            @ApiResponse(responseCode = "500", description = "Could not deserialize diagram file.")
+            @ApiResponse(responseCode = "500", description = "Could not deserialize diagram file."),
+            @ApiResponse(responseCode = "503", description = "Service is too busy to export the image. Please retry after the time specified in the Retry-After header.")
     })
     @RequestMapping(value = "/diagram/{identifier}.{ext:.*}", method = RequestMethod.GET, produces = {"image/png", "image/jpg", "image/jpeg", "image/svg+xml", "image/gif"})
     public void diagramImage(@Parameter(description = "Event identifier (it can be a pathway with diagram, a subpathway or a reaction)", required = true, example = "R-HSA-177929")
@@ -118,53 +122,61 @@ public class ImageExporterController {
         //NO PDF for the time being
         if (ext.equalsIgnoreCase("pdf")) throw new IllegalArgumentException("Unsupported file extension pdf");
 
-        int size = result.getSize() * (int) Math.ceil(quality * 0.3);
         boolean isSVG = ext.equalsIgnoreCase("svg");
-        try {
-            if (!isSVG) {
-                synchronized (RASTER_SEMAPHORE) {
-                    while ((CURRENT_RASTER_SIZE + size) >= MAX_RASTER_SIZE) RASTER_SEMAPHORE.wait();
-                    CURRENT_RASTER_SIZE += size;
-                }
+        String type = isSVG ? "svg+xml" : ext.toLowerCase();
+
+        List<String> toSelect = result.getEvents();
+        if (sel != null) toSelect.addAll(sel);
+
+        // Images are fully defined by the export arguments (analysis results are immutable for a given token)
+        ContentCache cache = rasterCacheManager.getDiagramCache(token);
+        String key = ContentCache.key(rasterCacheManager.getDBVersion(), result.getDiagramStId(), ext.toLowerCase(),
+                quality, flg, flgInteractors, toSelect, title, margin, ehld, diagramProfile,
+                token, resource, analysisProfile, expColumn);
+        byte[] image = cache.get(key);
+        if (image != null) {
+            try {
+                response.addHeader("Content-Type", "image/" + type);
+                writeImage(image, response);
+            } catch (IOException e) {
+                throw new RuntimeException(e.getMessage()); //This won't generate a 400, but a 500 instead (@see GlobalExceptionHandler.handleUnclassified)
             }
+            return;
+        }
 
-            final RasterArgs args = new RasterArgs(result.getDiagramStId(), ext);
-            args.setProfiles(new ColorProfiles(diagramProfile, analysisProfile, null));
-
-            List<String> toSelect = result.getEvents();
-            if (sel != null) toSelect.addAll(sel);
-            args.setSelected(toSelect);
+        final RasterArgs args = new RasterArgs(result.getDiagramStId(), ext);
+        args.setProfiles(new ColorProfiles(diagramProfile, analysisProfile, null));
+        args.setSelected(toSelect);
 
-            if (flg != null && !flg.isEmpty()) {
-                try {
-                    args.setFlags(searchManager.getDiagramFlagging(result.getDiagramStId(), flg, flgInteractors));
-                } catch (SolrSearcherException e) {
-                    //Nothing to be flagged
-                }
+        if (flg != null && !flg.isEmpty()) {
+            try {
+                args.setFlags(searchManager.getDiagramFlagging(result.getDiagramStId(), flg, flgInteractors));
+            } catch (SolrSearcherException e) {
+                //Nothing to be flagged
             }
+        }
 
-            args.setWriteTitle(title);
-            args.setQuality(quality);
-            args.setEhld(ehld);
-            args.setMargin(margin);
-            args.setToken(token);
-            args.setResource(resource);
-            args.setColumn(expColumn);
+        args.setWriteTitle(title);
+        args.setQuality(quality);
+        args.setEhld(ehld);
+        args.setMargin(margin);
+        args.setToken(token);
+        args.setResource(resource);
+        args.setColumn(expColumn);
+
+        long size = (long) result.getSize() * (int) Math.ceil(quality * 0.3);
+        try (WeightedAdmissionScheduler.Permit permit = isSVG ? null : rasterAdmissionScheduler.acquire(size)) {
+            ByteArrayOutputStream os = new ByteArrayOutputStream();
+            rasterExporter.export(args, os);
+            image = os.toByteArray();
+            cache.put(key, image);
 
-            String type = isSVG ? "svg+xml" : ext.toLowerCase();
             response.addHeader("Content-Type", "image/" + type);
-            rasterExporter.export(args, response.getOutputStream());
+            writeImage(image, response);
         } catch (IndexOutOfBoundsException e) { //When the output stream is closed, it throws this exception
             //Nothing here
         } catch (InterruptedException | IOException e) {
             throw new RuntimeException(e.getMessage()); //This won't generate a 400, but a 500 instead (@see GlobalExceptionHandler.handleUnclassified)
-        } finally {
-            if (!isSVG) {
-                synchronized (RASTER_SEMAPHORE) {
-                    CURRENT_RASTER_SIZE -= size;
-                    RASTER_SEMAPHORE.notify();
-                }
-            }
         }
     }
 
@@ -180,7 +192,8 @@ public class ImageExporterController {
                     @Content(mediaType = "image/gif"),
             }),
             @ApiResponse(responseCode = "404", description = "Stable Identifier does not match with any of the reactions."),
-            @ApiResponse(responseCode = "500", description = "Could not deserialize diagram file.")
+            @ApiResponse(responseCode = "500", description = "Could not deserialize diagram file."),
+            @ApiResponse(responseCode = "503", description = "Service is too busy to export the image. Please retry after the time specified in the Retry-After header.")
             }
     )
 //    @ApiResponses({
@@ -247,15 +260,24 @@ public class ImageExporterController {
         args.setMargin(margin);
         args.setWriteTitle(title);
 
-        try {
-            String type = ext.equalsIgnoreCase("svg") ? "svg+xml" : ext.toLowerCase();
+        boolean isSVG = ext.equalsIgnoreCase("svg");
+        long size = (long) (diagram.getMaxX() - diagram.getMinX()) * (diagram.getMaxY() - diagram.getMinY()) * (int) Math.ceil(quality * 0.3);
+        try (WeightedAdmissionScheduler.Permit permit = isSVG ? null : rasterAdmissionScheduler.acquire(size)) {
+            String type = isSVG ? "svg+xml" : ext.toLowerCase();
             response.addHeader("Content-Type", "image/" + type);
             rasterExporter.export(diagram, graph, args, null, response.getOutputStream());
-        } catch (IOException | TranscoderException | AnalysisException e) {
+        } catch (IOException | TranscoderException | AnalysisException | InterruptedException e) {
             throw new RuntimeException(e.getMessage()); //This won't generate a 400, but a 500 instead (@see GlobalExceptionHandler.handleUnclassified)
         }
     }
 
+    private void writeImage(byte[] image, HttpServletResponse response) throws IOException {
+        response.setContentLength(image.length);
+        OutputStream out = response.getOutputStream();
+        out.write(image);
+        out.flush();
+    }
+
     private ReactionLikeEvent getReactionLikeEvent(String id) {
         ReactionLikeEvent rle;
         try {
@@ -292,6 +314,16 @@ public class ImageExporterController {
         this.searchManager = searchManager;
     }
 
+    @Autowired
+    public void setRasterCacheManager(RasterCacheManager rasterCacheManager) {
+        this.rasterCacheManager = rasterCacheManager;
+    }
+
+    @Autowired
+    public void setRasterAdmissionScheduler(WeightedAdmissionScheduler rasterAdmissionScheduler) {
+        this.rasterAdmissionScheduler = rasterAdmissionScheduler;
+    }
+
     @Autowired
     public void setSchemaService(SchemaService schemaService) {
         ReactomeCompartmentFactory.setSchemaService(schemaService);
@@ -7,19 +7,17 @@ import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
-import org.apache.commons.io.IOUtils;
 import org.reactome.server.graph.domain.model.ReactionLikeEvent;
 import org.reactome.server.graph.domain.result.DiagramResult;
-import org.reactome.server.graph.exception.CustomQueryException;
-import org.reactome.server.graph.service.AdvancedDatabaseObjectService;
 import org.reactome.server.graph.service.DatabaseObjectService;
 import org.reactome.server.graph.service.DiagramService;
-import org.reactome.server.graph.service.util.DatabaseObjectUtils;
 import org.reactome.server.search.exception.SolrSearcherException;
 import org.reactome.server.service.exception.DiagramExporterException;
 import org.reactome.server.service.exception.NotFoundException;
 import org.reactome.server.service.manager.ExportManager;
+import org.reactome.server.service.manager.IdentifierDictionaryManager;
 import org.reactome.server.service.manager.SearchManager;
+import org.reactome.server.service.utils.FileResponseUtils;
 import org.reactome.server.tools.diagram.exporter.common.Decorator;
 import org.reactome.server.tools.diagram.exporter.common.profiles.factory.DiagramJsonDeserializationException;
 import org.reactome.server.tools.diagram.exporter.common.profiles.factory.DiagramJsonNotFoundException;
@@ -29,11 +27,10 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.OutputStream;
 import java.util.*;
 
 /**
@@ -51,7 +48,7 @@ public class PptxExporterController {
     public static final String PPT_FILE_EXTENSION = ".pptx";
 
     private DatabaseObjectService databaseObjectService;
-    private AdvancedDatabaseObjectService ados;
+    private IdentifierDictionaryManager identifierDictionaryManager;
     private DiagramService diagramService;
     private ExportManager exportManager;
     private SearchManager searchManager;
@@ -74,6 +71,7 @@ public class PptxExporterController {
                                          @RequestParam(value = "flgInteractors", required = false, defaultValue = "true") Boolean flgInteractors,
                                          @Parameter(description = "Highlight element(s) selection in the diagram. CSV line.")
                                          @RequestParam(value = "sel", required = false) List<String> sel,
+                                         HttpServletRequest request,
                                          HttpServletResponse response) throws DiagramJsonNotFoundException, DiagramJsonDeserializationException, DiagramProfileException, IOException {
 
         DiagramResult result = diagramService.getDiagramResult(identifier);
@@ -84,14 +82,14 @@ public class PptxExporterController {
         Decorator decorator = new Decorator();
 
         List<Long> toSelect = new ArrayList<>();
-        if (sel != null) toSelect.addAll(getDatabaseIdentifiers(sel));
-        toSelect.addAll(getDatabaseIdentifiers(result.getEvents()));
+        if (sel != null) toSelect.addAll(identifierDictionaryManager.getDatabaseIdentifiers(sel));
+        toSelect.addAll(identifierDictionaryManager.getDatabaseIdentifiers(result.getEvents()));
         decorator.setSelected(toSelect);
 
         if (flg != null && !flg.isEmpty()) {
             try {
                 Collection<String> flag = searchManager.getDiagramFlagging(result.getDiagramStId(), flg, flgInteractors);
-                decorator.setFlags(getDatabaseIdentifiers(flag));
+                decorator.setFlags(identifierDictionaryManager.getDatabaseIdentifiers(flag));
             } catch (SolrSearcherException e) {
                 //Nothing to be flagged
             }
@@ -99,19 +97,7 @@ public class PptxExporterController {
 
         File pptx = exportManager.getDiagramPPTX(result.getDiagramStId(), diagramProfile, decorator, response);
 
-        // when returning a FileSystemResource using Spring, then the file won't be deleted because it still has the
-        // reference to the file and then we cannot delete. Writing the file directly in the response allows us to
-        // delete only the temporary file.
-        try (FileInputStream in = new FileInputStream(pptx)) {
-            OutputStream out = response.getOutputStream();
-            IOUtils.copy(in, out);
-            out.flush();
-        }
-
-        // deleting the file in case it is decorated.
-        if (decorator.isDecorated() && !pptx.delete()) {
-            infoLogger.error("Could not delete the temporary file {}", pptx.getPath());
-        }
+        sendPPTX(pptx, decorator, request, response);
     }
 
     @Hidden
@@ -132,6 +118,7 @@ public class PptxExporterController {
                                           @RequestParam(value = "flgInteractors", required = false, defaultValue = "true") Boolean flgInteractors,
                                           @Parameter(description = "Highlight element(s) selection in the diagram. CSV line.")
                                           @RequestParam(value = "sel", required = false) List<String> sel,
+                                          HttpServletRequest request,
                                           HttpServletResponse response) throws Exception {
         // IMPORTANT: Downloading the file on Swagger does not work - https://github.com/swagger-api/swagger-ui/issues/2132
         // for this reason we are keeping this method as APIIgnore
@@ -141,13 +128,13 @@ public class PptxExporterController {
 
         DiagramResult result = diagramService.getDiagramResult(identifier);
         List<Long> toSelect = new ArrayList<>();
-        if (sel != null) toSelect.addAll(getDatabaseIdentifiers(sel));
+        if (sel != null) toSelect.addAll(identifierDictionaryManager.getDatabaseIdentifiers(sel));
         decorator.setSelected(toSelect);
 
         if (flg != null && !flg.isEmpty()) {
             try {
                 Collection<String> flag = searchManager.getDiagramFlagging(result.getDiagramStId(), flg, flgInteractors);
-                decorator.setFlags(getDatabaseIdentifiers(flag));
+                decorator.setFlags(identifierDictionaryManager.getDatabaseIdentifiers(flag));
             } catch (SolrSearcherException e) {
                 //Nothing to be flagged
             }
@@ -156,18 +143,22 @@ public class PptxExporterController {
         ReactionLikeEvent rle = getReactionLikeEvent(identifier);
         File pptx = exportManager.getReactionPPTX(rle, diagramProfile, decorator, response);
 
-        // when returning a FileSystemResource using Spring, then the file won't be deleted because it still has the
-        // reference to the file and then we cannot delete. Writing the file directly in the response allows us to
-        // delete only the temporary file.
-        try (FileInputStream in = new FileInputStream(pptx)) {
-            OutputStream out = response.getOutputStream();
-            IOUtils.copy(in, out);
-            out.flush();
-        }
+        sendPPTX(pptx, decorator, request, response);
+    }
 
-        // deleting the file in case it is decorated.
-        if (decorator.isDecorated() && !pptx.delete()) {
-            infoLogger.error("Could not delete the temporary file {}", pptx.getPath());
+    /**
+     * Undecorated files are kept to be reused, so they are handed to the container (sendfile when available). The
+     * decorated ones are written straight away and deleted afterwards, even if the client disconnects in between.
+     */
+    private void sendPPTX(File pptx, Decorator decorator, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (!decorator.isDecorated()) {
+            FileResponseUtils.send(pptx, request, response);
+            return;
+        }
+        try {
+            FileResponseUtils.transfer(pptx, response);
+        } finally {
+            exportManager.deleteTemporaryPPTX(pptx);
         }
     }
 
@@ -182,45 +173,14 @@ public class PptxExporterController {
         return rle;
     }
 
-    /**
-     * Transforms stable identifiers (and old stable identifiers) to database identifiers. It keeps database identifiers
-     *
-     * @param identifiers a list of identifiers that can mix stable identifiers, database identifiers and old stable identifiers
-     * @return The provided 'identifiers' list with the stable identifiers transformed to database identifiers
-     */
-    private List<Long> getDatabaseIdentifiers(Collection<String> identifiers) {
-        List<String> aux = new ArrayList<>();
-
-        List<Long> rtn = new ArrayList<>();
-        for (String identifier : identifiers) {
-            String id = DatabaseObjectUtils.getIdentifier(identifier);
-            if (DatabaseObjectUtils.isStId(id)) aux.add(id);
-            else if (DatabaseObjectUtils.isDbId(id)) rtn.add(Long.valueOf(id));
-        }
-
-        //language=cypher
-        String query = "" +
-                "MATCH (d:DatabaseObject) " +
-                "WHERE d.stId IN $identifiers " +
-                "RETURN d.dbId ";
-        Map<String, Object> params = new HashMap<>();
-        params.put("identifiers", aux);
-        try {
-            rtn.addAll(ados.getCustomQueryResults(Long.class, query, params));
-        } catch (CustomQueryException e) {
-            //Nothing here
-        }
-        return rtn;
-    }
-
     @Autowired
     public void setDatabaseObjectService(DatabaseObjectService databaseObjectService) {
         this.databaseObjectService = databaseObjectService;
     }
 
     @Autowired
-    public void setAdos(AdvancedDatabaseObjectService ados) {
-        this.ados = ados;
+    public void setIdentifierDictionaryManager(IdentifierDictionaryManager identifierDictionaryManager) {
+        this.identifierDictionaryManager = identifierDictionaryManager;
     }
 
     @Autowired
@@ -0,0 +1,44 @@
+package org.reactome.server.service.controller.exporter;
+
+import org.reactome.server.service.manager.SbxxBatchExportManager;
+import org.reactome.server.service.model.exporter.BatchExportStatus;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+/**
+ * Administration endpoint for the SBML and SBGN batch export. It is part of the management endpoints, so it is only
+ * available through JMX unless "sbxxexport" is added to management.endpoints.web.exposure.include
+ * <p>
+ * GET shows the progress, POST starts the job (optionally with the number of "threads") and DELETE cancels it
+ */
+@Component
+@Endpoint(id = "sbxxexport")
+public class SbxxBatchExportEndpoint {
+
+    private SbxxBatchExportManager sbxxBatchExportManager;
+
+    @ReadOperation
+    public BatchExportStatus status() {
+        return sbxxBatchExportManager.getStatus();
+    }
+
+    @WriteOperation
+    public BatchExportStatus start(@Nullable Integer threads) {
+        return sbxxBatchExportManager.start(threads);
+    }
+
+    @DeleteOperation
+    public BatchExportStatus cancel() {
+        return sbxxBatchExportManager.cancel();
+    }
+
+    @Autowired
+    public void setSbxxBatchExportManager(SbxxBatchExportManager sbxxBatchExportManager) {
+        this.sbxxBatchExportManager = sbxxBatchExportManager;
+    }
+}
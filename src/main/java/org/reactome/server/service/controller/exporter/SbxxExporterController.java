@@ -6,28 +6,35 @@ import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
-import org.apache.commons.io.IOUtils;
-import org.gk.persistence.MySQLAdaptor;
-import org.reactome.sbml.rel.SbmlConverterForRel;
 import org.reactome.server.graph.domain.model.Event;
-import org.reactome.server.graph.service.AdvancedDatabaseObjectService;
 import org.reactome.server.graph.service.DatabaseObjectService;
-import org.reactome.server.graph.service.GeneralService;
 import org.reactome.server.service.exception.DiagramExporterException;
 import org.reactome.server.service.exception.MissingSBXXException;
 import org.reactome.server.service.exception.NotFoundException;
 import org.reactome.server.service.manager.ExportManager;
-import org.reactome.server.tools.diagram.exporter.sbgn.SbgnConverter;
+import org.reactome.server.service.utils.BoundedAsyncExecutor;
+import org.reactome.server.service.utils.FileResponseUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import java.io.*;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * @author Antonio Fabregat (fabregat@ebi.ac.uk)
@@ -42,106 +49,82 @@ public class SbxxExporterController {
     private static final String SBML_FILE_EXTENSION = ".sbml";
     private static final String SBGN_FILE_EXTENSION = ".sbgn";
 
-    private GeneralService generalService;
+    @Value("${sbxx.timeout:600000}")
+    private Long sbxxTimeout;
+
     private DatabaseObjectService databaseObjectService;
-    private AdvancedDatabaseObjectService advancedDatabaseObjectService;
     private ExportManager exportManager;
-
-    // For the time being use the relational database to export layout information for SBML
-    // This should be updated to use JSON and Neo4j in the future
-    private MySQLAdaptor mysqlDba;
+    private BoundedAsyncExecutor sbxxExecutor;
 
     @Operation(summary = "Exports a given pathway or reaction to SBGN")
     @ApiResponses({
             @ApiResponse(responseCode = "404", description = "Identifier not found"),
             @ApiResponse(responseCode = "422", description = "Identifier does not correspond to a pathway or reaction"),
-            @ApiResponse(responseCode = "500", description = "Internal Server Error")
+            @ApiResponse(responseCode = "500", description = "Internal Server Error"),
+            @ApiResponse(responseCode = "503", description = "Service is too busy to export the event. Please retry after the time specified in the Retry-After header.")
     })
     @RequestMapping(value = "/event/{identifier}.sbgn", method = RequestMethod.GET)
-    public synchronized void eventSBGN(@Parameter(description = "DbId or StId of the requested pathway or reaction", required = true, example = "R-HSA-5205682")
-                                       @PathVariable String identifier,
-                                       HttpServletResponse response) throws Exception {
+    public DeferredResult<ResponseEntity<FileSystemResource>> eventSBGN(@Parameter(description = "DbId or StId of the requested pathway or reaction", required = true, example = "R-HSA-5205682")
+                                                          @PathVariable String identifier,
+                                                          HttpServletRequest request,
+                                                          HttpServletResponse response) throws IOException {
         Event event = getEvent(identifier);
         String fileName = event.getStId() + SBGN_FILE_EXTENSION;
         response.setContentType("application/sbgn+xml");
         response.setHeader("Content-Disposition", "attachment; filename=\"" + fileName + "\"");
-        try (InputStream sbgn = getSBGN(event, fileName)) {
-            OutputStream out = response.getOutputStream();
-            IOUtils.copy(sbgn, out);
-            out.flush();
-        }
-    }
-
-    private InputStream getSBGN(Event event, String fileName) throws FileNotFoundException {
-        InputStream sbgn;
         try {
             File file = exportManager.getCachedFile(event, fileName);
-            sbgn = new FileInputStream(file);
             infoLogger.info("Exporting the event {} to SBGN retrieved from previously generated file", event.getStId());
-        } catch (MissingSBXXException | IOException e) {
-            SbgnConverter converter = new SbgnConverter(exportManager.getDiagram(event));
-            sbgn = exportManager.saveSBGN(converter.getSbgn(), fileName);
-            infoLogger.info("Exporting the event {} to SBGN", event.getStId());
+            FileResponseUtils.send(file, request, response);
+            return null; //The request has already been handled
+        } catch (MissingSBXXException | FileNotFoundException | NoSuchFileException e) {
+            // Also generated again when the file has been removed in the meantime (nothing has been sent yet)
+            CompletableFuture<File> sbgn = exportManager.getSBXXFile(fileName, () -> exportManager.generateSBGN(event, fileName));
+            return sendWhenReady(sbgn, "application/sbgn+xml", fileName);
         }
-        return sbgn;
     }
 
-
     @Hidden //Only kept here to keep backwards compatibility with the previous URI (ATTENTION: to ".xml")
     @RequestMapping(value = "/sbml/{identifier}.xml", method = RequestMethod.GET)
-    public synchronized void eventSBMLOld(@PathVariable String identifier, HttpServletResponse response) throws Exception {
-        eventSBML(identifier, response);
+    public DeferredResult<ResponseEntity<FileSystemResource>> eventSBMLOld(@PathVariable String identifier, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        return eventSBML(identifier, request, response);
     }
 
     @Operation(summary = "Exports a given pathway or reaction to SBML")
     @ApiResponses({
             @ApiResponse(responseCode = "404", description = "Identifier not found"),
             @ApiResponse(responseCode = "422", description = "Identifier does not correspond to a pathway or reaction"),
-            @ApiResponse(responseCode = "500", description = "Internal Server Error")
+            @ApiResponse(responseCode = "500", description = "Internal Server Error"),
+            @ApiResponse(responseCode = "503", description = "Service is too busy to export the event. Please retry after the time specified in the Retry-After header.")
     })
     @RequestMapping(value = "/event/{identifier}.sbml", method = RequestMethod.GET)
-    public synchronized void eventSBML(@Parameter(description = "DbId or StId of the requested pathway or reaction", required = true, example = "R-HSA-68616")
-                                       @PathVariable String identifier,
-                                       HttpServletResponse response) throws Exception {
+    public DeferredResult<ResponseEntity<FileSystemResource>> eventSBML(@Parameter(description = "DbId or StId of the requested pathway or reaction", required = true, example = "R-HSA-68616")
+                                                          @PathVariable String identifier,
+                                                          HttpServletRequest request,
+                                                          HttpServletResponse response) throws IOException {
         Event event = getEvent(identifier);
         String fileName = event.getStId() + SBML_FILE_EXTENSION;
         response.setContentType("application/sbml+xml");
         response.setHeader("Content-Disposition", "attachment; filename=\"" + fileName + "\"");
-        try (InputStream sbml = getSBML(event, fileName)) {
-            OutputStream out = response.getOutputStream();
-            IOUtils.copy(sbml, out);
-            out.flush();
-        }
-    }
-
-    private InputStream getSBML(Event event, String fileName) throws FileNotFoundException {
-        InputStream sbml;
         try {
             File file = exportManager.getCachedFile(event, fileName);
-            sbml = new FileInputStream(file);
             infoLogger.info("Exporting the event {} to SBML retrieved from previously generated file", event.getStId());
-        } catch (MissingSBXXException | IOException e) {
-            //SbmlConverter converter = new SbmlConverter(event, generalService.getDBInfo().getVersion(), advancedDatabaseObjectService);
-            SbmlConverterForRel converter = new SbmlConverterForRel(event.getStId(),
-                    generalService.getDBInfo().getVersion(),
-                    advancedDatabaseObjectService);
-            converter.setDBA(this.mysqlDba);
-            converter.convert();
-            String content = converter.toString();
-            sbml = exportManager.saveSBML(content, fileName);
-            infoLogger.info("Exporting the event {} to SBML", event.getStId());
-            generalService.clearCache();
+            FileResponseUtils.send(file, request, response);
+            return null; //The request has already been handled
+        } catch (MissingSBXXException | FileNotFoundException | NoSuchFileException e) {
+            // Also generated again when the file has been removed in the meantime (nothing has been sent yet)
+            CompletableFuture<File> sbml = exportManager.getSBXXFile(fileName, () -> exportManager.generateSBML(event, fileName));
+            return sendWhenReady(sbml, "application/sbml+xml", fileName);
         }
-        return sbml;
     }
 
-    @Autowired
-    public void setMySQLDBA(MySQLAdaptor dba) {
-        this.mysqlDba = dba;
-        if (dba != null) {
-            infoLogger.info("Starting a dumb thread to keep MySQLAdaptor connected to avoid reconnection exception.");
-            dba.initDumbThreadForConnection(); // To keep the DBA running to avoid connection error
-        }
+    // The file is sent once the request is dispatched back, never from the converting thread, which might still be
+    // running when the request has already timed out
+    private DeferredResult<ResponseEntity<FileSystemResource>> sendWhenReady(CompletableFuture<File> file, String contentType, String fileName) {
+        return sbxxExecutor.toDeferredResult(sbxxTimeout, file.thenApply(f -> ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(contentType))
+                .header("Content-Disposition", "attachment; filename=\"" + fileName + "\"")
+                .body(new FileSystemResource(f))));
     }
 
     private Event getEvent(String id) {
@@ -155,11 +138,6 @@ public class SbxxExporterController {
         return event;
     }
 
-    @Autowired
-    public void setGeneralService(GeneralService generalService) {
-        this.generalService = generalService;
-    }
-
     @Autowired
     public void setDatabaseObjectService(DatabaseObjectService databaseObjectService) {
         this.databaseObjectService = databaseObjectService;
@@ -167,12 +145,12 @@ public class SbxxExporterController {
 
 
     @Autowired
-    public void setAdvancedDatabaseObjectService(AdvancedDatabaseObjectService advancedDatabaseObjectService) {
-        this.advancedDatabaseObjectService = advancedDatabaseObjectService;
+    public void setExportManager(ExportManager exportManager) {
+        this.exportManager = exportManager;
     }
 
     @Autowired
-    public void setExportManager(ExportManager exportManager) {
-        this.exportManager = exportManager;
+    public void setSbxxExecutor(@Qualifier("sbxxExecutor") BoundedAsyncExecutor sbxxExecutor) {
+        this.sbxxExecutor = sbxxExecutor;
     }
 }
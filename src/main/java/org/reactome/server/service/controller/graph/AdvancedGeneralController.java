@@ -19,6 +19,9 @@ import org.springframework.web.bind.annotation.ResponseBody;
 
 import java.lang.reflect.InvocationTargetException;
 
+import static org.reactome.server.service.config.BinaryMessageConverter.APPLICATION_CBOR;
+import static org.reactome.server.service.config.BinaryMessageConverter.APPLICATION_SMILE;
+
 /**
  * Created by:
  *
@@ -40,7 +43,7 @@ public class AdvancedGeneralController {
     // ---------------------- Methods with RelationshipDirection and Relationships -------------------------------------
 
     @Operation(summary = "Retrieves a DatabaseObject", description = "DatabaseObject will be filled with all properties and direct relationships of specified direction. Direction can be INCOMING, OUTGOING or UNDIRECTED")
-    @RequestMapping(value = "/detail/{id}/direction/{direction}", method = RequestMethod.GET, produces = "application/json")
+    @RequestMapping(value = "/detail/{id}/direction/{direction}", method = RequestMethod.GET, produces = {"application/json", APPLICATION_CBOR, APPLICATION_SMILE})
     @ResponseBody
     public DatabaseObject findById(@Parameter(description = "DbId or StId of a DatabaseObject", example = "R-HSA-199420", required = true) @PathVariable String id,
                                    @Parameter(description = "Direction of mapped relationships", example = "OUTGOING", required = true) @PathVariable RelationshipDirection direction) {
@@ -63,7 +66,7 @@ public class AdvancedGeneralController {
     }
 
     @Operation(summary = "Retrieves a DatabaseObject", description ="DatabaseObject will be filled with all properties and direct relationships of specified direction and relationship names. Direction can be INCOMING, OUTGOING or UNDIRECTED")
-    @RequestMapping(value = "/detail/{id}/direction/{direction}/relationships/{relationships}", method = RequestMethod.GET, produces = "application/json")
+    @RequestMapping(value = "/detail/{id}/direction/{direction}/relationships/{relationships}", method = RequestMethod.GET, produces = {"application/json", APPLICATION_CBOR, APPLICATION_SMILE})
     @ResponseBody
     public DatabaseObject findById(@Parameter(description = "DbId or StId of a DatabaseObject", example = "R-HSA-109581", required = true) @PathVariable String id,
                                    @Parameter(description = "Direction of mapped relationships", example = "OUTGOING", required = true) @PathVariable RelationshipDirection direction,
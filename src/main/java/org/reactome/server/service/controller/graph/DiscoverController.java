@@ -16,6 +16,9 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 
+import static org.reactome.server.service.config.BinaryMessageConverter.APPLICATION_CBOR;
+import static org.reactome.server.service.config.BinaryMessageConverter.APPLICATION_SMILE;
+
 /**
  * @author Florian Korninger (florian.korninger@ebi.ac.uk)
  * @author Antonio Fabregat (fabregat@ebi.ac.uk)
@@ -41,7 +44,7 @@ public class DiscoverController {
             @ApiResponse(responseCode = "406", description = "Not acceptable according to the accept headers sent in the request"),
             @ApiResponse(responseCode = "500", description = "Internal Server Error")
     })
-    @RequestMapping(value = "/discover/{identifier}", method = RequestMethod.GET, produces = "application/json")
+    @RequestMapping(value = "/discover/{identifier}", method = RequestMethod.GET, produces = {"application/json", APPLICATION_CBOR, APPLICATION_SMILE})
     @ResponseBody
     public SchemaDataSet eventDiscovery(@Parameter(description = "An event identifier", example = "R-HSA-446203",required = true) @PathVariable String identifier) throws ClassNotFoundException {
         SchemaDataSet dataSet;
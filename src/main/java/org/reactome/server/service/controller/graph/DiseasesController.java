@@ -18,6 +18,9 @@ import java.util.Collection;
 import java.util.List;
 import java.util.stream.Collectors;
 
+import static org.reactome.server.service.config.BinaryMessageConverter.APPLICATION_CBOR;
+import static org.reactome.server.service.config.BinaryMessageConverter.APPLICATION_SMILE;
+
 /**
  * @author Antonio Fabregat <fabregat@ebi.ac.uk>
  */
@@ -37,7 +40,7 @@ public class DiseasesController {
             @ApiResponse(responseCode = "406", description = "Not acceptable according to the accept headers sent in the request"),
             @ApiResponse(responseCode = "500", description = "Internal Server Error"),
     })
-    @RequestMapping(value = "/diseases", method = RequestMethod.GET, produces = "application/json")
+    @RequestMapping(value = "/diseases", method = RequestMethod.GET, produces = {"application/json", APPLICATION_CBOR, APPLICATION_SMILE})
     @ResponseBody
     public Collection<Disease> getDiseases() {
         infoLogger.info("Request for all diseases");
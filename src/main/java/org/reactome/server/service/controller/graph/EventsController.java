@@ -2,41 +2,40 @@ package org.reactome.server.service.controller.graph;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
+import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.ExampleObject;
+import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
-import org.reactome.server.analysis.core.data.AnalysisData;
-import org.reactome.server.analysis.core.model.PathwayHierarchy;
-import org.reactome.server.analysis.core.model.PathwayNode;
-import org.reactome.server.analysis.core.model.SpeciesNode;
-import org.reactome.server.analysis.core.model.SpeciesNodeFactory;
-import org.reactome.server.analysis.core.result.AnalysisStoredResult;
 import org.reactome.server.analysis.core.result.PathwayNodeSummary;
-import org.reactome.server.analysis.core.result.utils.TokenUtils;
 import org.reactome.server.graph.domain.model.Event;
-import org.reactome.server.graph.domain.model.Species;
 import org.reactome.server.graph.domain.result.EventProjection;
 import org.reactome.server.graph.domain.result.EventProjectionWrapper;
 import org.reactome.server.graph.service.EventsService;
-import org.reactome.server.graph.service.HierarchyService;
-import org.reactome.server.graph.service.SpeciesService;
 import org.reactome.server.graph.service.helper.PathwayBrowserNode;
 import org.reactome.server.service.exception.NotFoundException;
-import org.reactome.server.service.model.graph.AnalysedPathwayBrowserNode;
-import org.reactome.server.service.model.graph.SizedPathwayBrowserNode;
+import org.reactome.server.service.manager.AnalysisResultManager;
+import org.reactome.server.service.manager.EventHierarchyManager;
+import org.reactome.server.service.model.graph.AnalysedPathwayBrowserTree;
+import org.reactome.server.service.utils.PrecompressedResponseFilter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
 
-import javax.annotation.Nullable;
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import java.time.Instant;
+import java.io.IOException;
 import java.util.*;
-import java.util.function.Function;
 import java.util.stream.Collectors;
 
+import static org.reactome.server.service.config.BinaryMessageConverter.APPLICATION_CBOR;
+import static org.reactome.server.service.config.BinaryMessageConverter.APPLICATION_SMILE;
+
 /**
  * @author Antonio Fabregat <fabregat@ebi.ac.uk>
  * @author Florian Korninger (florian.korninger@ebi.ac.uk)
@@ -49,21 +48,15 @@ public class EventsController {
 
     private static final Logger infoLogger = LoggerFactory.getLogger("infoLogger");
 
-    private final HierarchyService eventHierarchyService;
-    private final SpeciesService speciesService;
     private final EventsService eventsService;
-    private final AnalysisData analysisData;
-    private final TokenUtils tokenUtils;
-    private final Map<SpeciesNode, PathwayHierarchy> pathwayHierarchies;
+    private final EventHierarchyManager eventHierarchyManager;
+    private final AnalysisResultManager analysisResultManager;
 
     @Autowired
-    public EventsController(HierarchyService eventHierarchyService, SpeciesService speciesService, EventsService eventsService, AnalysisData analysisData, TokenUtils tokenUtils) {
-        this.eventHierarchyService = eventHierarchyService;
-        this.speciesService = speciesService;
+    public EventsController(EventsService eventsService, EventHierarchyManager eventHierarchyManager, AnalysisResultManager analysisResultManager) {
         this.eventsService = eventsService;
-        this.analysisData = analysisData;
-        this.tokenUtils = tokenUtils;
-        this.pathwayHierarchies = analysisData.getPathwayHierarchies();
+        this.eventHierarchyManager = eventHierarchyManager;
+        this.analysisResultManager = analysisResultManager;
     }
 
     @Operation(
@@ -75,7 +68,7 @@ public class EventsController {
             @ApiResponse(responseCode = "406", description = "Not acceptable according to the accept headers sent in the request"),
             @ApiResponse(responseCode = "500", description = "Internal Server Error")
     })
-    @RequestMapping(value = "/event/{id}/ancestors", method = RequestMethod.GET, produces = "application/json")
+    @RequestMapping(value = "/event/{id}/ancestors", method = RequestMethod.GET, produces = {"application/json", APPLICATION_CBOR, APPLICATION_SMILE})
     @ResponseBody
     public Collection<Collection<EventProjection>> getEventAncestors(@Parameter(description = "The event for which the ancestors are requested", example = "R-HSA-5673001", required = true)
                                                                      @PathVariable String id) {
@@ -88,77 +81,74 @@ public class EventsController {
 
     @Operation(summary = "The full event hierarchy for a given species", description = "Events (pathways and reactions) in Reactome are organised in a hierarchical structure for every species. By following all 'hasEvent' relationships, this method retrieves the full event hierarchy for any given species. The result is a list of tree structures, one for each TopLevelPathway. Every event in these trees is represented by a PathwayBrowserNode. The latter contains the stable identifier, the name, the species, the url, the type, and the diagram of the particular event.")
     @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "The event hierarchy", content = @Content(array = @ArraySchema(schema = @Schema(implementation = PathwayBrowserNode.class)))),
             @ApiResponse(responseCode = "404", description = "Species does not match with any in current data"),
             @ApiResponse(responseCode = "406", description = "Not acceptable according to the accept headers sent in the request"),
             @ApiResponse(responseCode = "500", description = "Internal Server Error")
     })
-    @RequestMapping(value = "/eventsHierarchy/{species}", method = RequestMethod.GET, produces = "application/json")
+    @RequestMapping(value = "/eventsHierarchy/{species}", method = RequestMethod.GET, produces = {"application/json", APPLICATION_CBOR, APPLICATION_SMILE})
     @ResponseBody
-    public Collection<PathwayBrowserNode> getEventHierarchy(@Parameter(description = "Allowed species filter: SpeciesName (eg: Homo sapiens) SpeciesTaxId (eg: 9606)", example = "9606", required = true)
-                                                            @PathVariable String species,
-
-                                                            @Parameter(description = "Only get pathways", example = "false")
-                                                            @RequestParam(required = false, defaultValue = "false") Boolean pathwaysOnly,
-
-                                                            @Parameter(description = "The <a href=\"/dev/analysis\" target=\"_blank\">analysis</a> token with the results to be overlaid on top of the given pathways overview")
-                                                            @RequestParam(value = "token", required = false) String token,
-
-                                                            @Parameter(description = "The <a href=\"/dev/analysis\" target=\"_blank\">analysis</a> resource for which the results will be overlaid on top of the given pathways overview")
-                                                            @RequestParam(value = "resource", required = false, defaultValue = "TOTAL") String resource,
-
-                                                            @Parameter(name = "interactors", description = "Include interactors", example = "false")
-                                                            @RequestParam(required = false, defaultValue = "false") Boolean interactors,
-
-                                                            @Parameter(name = "importableOnly", description = "Filters resources to only includes importable ones")
-                                                            @RequestParam(required = false, defaultValue = "false") Boolean importableOnly,
-
-                                                            HttpServletResponse response) {
-        Instant start = Instant.now();
-        Collection<PathwayBrowserNode> pathwayBrowserNodes;
-        Species speciesData = speciesService.getSpecies(species);
-        SpeciesNode speciesNode = SpeciesNodeFactory.getSpeciesNode(speciesData);
-        PathwayHierarchy hierarchy = pathwayHierarchies.get(speciesNode);
-
-        if (pathwaysOnly) {
-            pathwayBrowserNodes = hierarchy.getChildren().stream()
-                    .map(SizedPathwayBrowserNode::new)
-                    .collect(Collectors.toCollection(TreeSet::new));
-        } else {
-            pathwayBrowserNodes = eventHierarchyService.getEventHierarchy(species, false);
-            Map<String, PathwayNode> stIdToNode = new HashMap<>();
-            hierarchy.getChildren().forEach(child ->
-                    buildMapFromTree(stIdToNode, child, PathwayNode::getStId, PathwayNode::getChildren)
-            );
-            pathwayBrowserNodes = pathwayBrowserNodes.stream()
-                    .map(SizedPathwayBrowserNode::new)
-                    .peek(node -> node.initSize(stIdToNode))
-                    .collect(Collectors.toList());
-        }
+    public Object getEventHierarchy(@Parameter(description = "Allowed species filter: SpeciesName (eg: Homo sapiens) SpeciesTaxId (eg: 9606)", example = "9606", required = true)
+                                    @PathVariable String species,
+
+                                    @Parameter(description = "Only get pathways", example = "false")
+                                    @RequestParam(required = false, defaultValue = "false") Boolean pathwaysOnly,
+
+                                    @Parameter(description = "The <a href=\"/dev/analysis\" target=\"_blank\">analysis</a> token with the results to be overlaid on top of the given pathways overview")
+                                    @RequestParam(value = "token", required = false) String token,
+
+                                    @Parameter(description = "The <a href=\"/dev/analysis\" target=\"_blank\">analysis</a> resource for which the results will be overlaid on top of the given pathways overview")
+                                    @RequestParam(value = "resource", required = false, defaultValue = "TOTAL") String resource,
 
+                                    @Parameter(name = "interactors", description = "Include interactors", example = "false")
+                                    @RequestParam(required = false, defaultValue = "false") Boolean interactors,
 
-        if (pathwayBrowserNodes == null || pathwayBrowserNodes.isEmpty())
-            throw new NotFoundException("No event hierarchy found for given species: " + species);
+                                    @Parameter(name = "importableOnly", description = "Filters resources to only includes importable ones")
+                                    @RequestParam(required = false, defaultValue = "false") Boolean importableOnly,
+
+                                    HttpServletRequest request,
+                                    HttpServletResponse response) throws IOException {
+        EventHierarchyManager.Hierarchy hierarchy = eventHierarchyManager.getHierarchy(species, pathwaysOnly);
         response.setHeader("Content-Disposition", "inline; swaggerDownload=\"attachment\"; filename=\"" + species + ".json\"");
         infoLogger.info("Request for full event hierarchy");
 
         if (token != null) {
-            AnalysisStoredResult result = tokenUtils.getFromToken(token);
-            Map<String, PathwayNodeSummary> stIdToNodeData = result.getPathways().stream().collect(Collectors.toMap(PathwayNodeSummary::getStId, Function.identity()));
-            pathwayBrowserNodes = pathwayBrowserNodes.stream()
-                    .map(node -> (SizedPathwayBrowserNode) node)
-                    .map(AnalysedPathwayBrowserNode::new)
-                    .peek(node -> node.initAnalysis(stIdToNodeData, resource, interactors, importableOnly))
-                    .collect(Collectors.toList());
+            Map<String, PathwayNodeSummary> summaries = analysisResultManager.getResult(token).getSummaries();
+            return AnalysedPathwayBrowserTree.overlay(hierarchy.getTree(), summaries, resource, interactors, importableOnly);
+        } else if (acceptsJson(request)) {
+            // The hierarchy without analysis is already serialised (and compressed)
+            sendHierarchy(hierarchy, request, response);
+            return null;
         }
 
-        return pathwayBrowserNodes;
+        return hierarchy.getTree();
     }
 
-    private static <K, N> void buildMapFromTree(@Nullable Map<K, N> map, N node, Function<N, K> keyFunction, Function<N, Collection<N>> childrenFunction) {
-        if (map == null) map = new HashMap<>();
-        map.put(keyFunction.apply(node), node);
-        Map<K, N> finalMap = map;
-        childrenFunction.apply(node).forEach(child -> buildMapFromTree(finalMap, child, keyFunction, childrenFunction));
+    private void sendHierarchy(EventHierarchyManager.Hierarchy hierarchy, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE + ";charset=UTF-8");
+        response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        byte[] content = hierarchy.getJson();
+        if (PrecompressedResponseFilter.acceptsGzip(request)) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+            content = hierarchy.getGzip();
+        }
+        response.setContentLength(content.length);
+        response.getOutputStream().write(content);
+        response.flushBuffer();
+    }
+
+    // JSON (or */*) is acceptable and none of the binary formats is preferred. Otherwise the converters negotiate
+    private static boolean acceptsJson(HttpServletRequest request) {
+        String accept = request.getHeader(HttpHeaders.ACCEPT);
+        if (accept == null) return true;
+        List<MediaType> mediaTypes = MediaType.parseMediaTypes(accept);
+        MediaType.sortBySpecificityAndQuality(mediaTypes);
+        for (MediaType mediaType : mediaTypes) {
+            if (mediaType.getQualityValue() == 0) continue;
+            if (mediaType.includes(MediaType.APPLICATION_JSON)) return true;
+            if (mediaType.isCompatibleWith(MediaType.valueOf(APPLICATION_CBOR)) || mediaType.isCompatibleWith(MediaType.valueOf(APPLICATION_SMILE))) return false;
+        }
+        return false;
     }
 
     @ApiResponses({
@@ -166,7 +156,7 @@ public class EventsController {
             @ApiResponse(responseCode = "406", description = "Not acceptable according to the accept headers sent in the request"),
             @ApiResponse(responseCode = "500", description = "Internal Server Error")
     })
-    @RequestMapping(value = "/event/{id}/in-depth", method = RequestMethod.GET, produces = "application/json")
+    @RequestMapping(value = "/event/{id}/in-depth", method = RequestMethod.GET, produces = {"application/json", APPLICATION_CBOR, APPLICATION_SMILE})
     @ResponseBody
     public Event getEventInDepth(
             @Parameter(description = "The complex for which subunits are requested", example = "R-HSA-9612973", required = true)
@@ -15,6 +15,9 @@ import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.RestController;
 
+import static org.reactome.server.service.config.BinaryMessageConverter.APPLICATION_CBOR;
+import static org.reactome.server.service.config.BinaryMessageConverter.APPLICATION_SMILE;
+
 /**
  * @author Florian Korninger (florian.korninger@ebi.ac.uk)
  * @author Antonio Fabregat (fabregat@ebi.ac.uk)
@@ -55,7 +58,7 @@ public class GeneralController {
     }
 
     @Hidden
-    @RequestMapping(value = "/database/info", method = RequestMethod.GET, produces = "application/json")
+    @RequestMapping(value = "/database/info", method = RequestMethod.GET, produces = {"application/json", APPLICATION_CBOR, APPLICATION_SMILE})
     @ResponseBody
     public DBInfo getChecksum() {
         infoLogger.info("Request for DatabaseInfo");
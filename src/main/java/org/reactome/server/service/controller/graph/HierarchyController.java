@@ -16,6 +16,9 @@ import org.springframework.web.bind.annotation.*;
 import java.util.Collection;
 import java.util.Set;
 
+import static org.reactome.server.service.config.BinaryMessageConverter.APPLICATION_CBOR;
+import static org.reactome.server.service.config.BinaryMessageConverter.APPLICATION_SMILE;
+
 /**
  * Created by:
  *
@@ -36,7 +39,7 @@ public class HierarchyController {
 
     @Operation(summary = "Retrieves a sub graph for given id",
             description = "Sub graph will be created following all outgoing relationships of type: hasEvent, input, output, hasCandidate, hasMember, hasComponent, repeatedUnit. PathwayBrowserNode contains: stId, name, species, url, type, diagram.")
-    @RequestMapping(value = "/detail/{id}/getSubGraph", method = RequestMethod.GET, produces = "application/json")
+    @RequestMapping(value = "/detail/{id}/getSubGraph", method = RequestMethod.GET, produces = {"application/json", APPLICATION_CBOR, APPLICATION_SMILE})
     @ResponseBody
     public PathwayBrowserNode getSubGraph(@Parameter(description = "DbId or StId of a PhysicalEntity", example = "R-HSA-109581", required = true) @PathVariable String id) {
         PathwayBrowserNode pathwayBrowserNode = eventHierarchyService.getSubHierarchy(id);
@@ -48,7 +51,7 @@ public class HierarchyController {
 
     @Operation(summary = "Retrieves a full reverse graph for given id",
             description = "Reverse sub graph will be created following all incoming relationships of type: hasEvent, input, output, hasCandidate, hasMember, hasComponent, repeatedUnit, regulatedBy, regulator, physicalEntity, requiredInputComponent, entityFunctionalStatus, activeUnit, catalystActivity. PathwayBrowserNode contains: stId, name, species, url, type, diagram.")
-    @RequestMapping(value = "/detail/{id}/getReverseGraph", method = RequestMethod.GET, produces = "application/json")
+    @RequestMapping(value = "/detail/{id}/getReverseGraph", method = RequestMethod.GET, produces = {"application/json", APPLICATION_CBOR, APPLICATION_SMILE})
     @ResponseBody
     public PathwayBrowserNode getReverseSubGraph(@Parameter(description = "DbId or StId of a PhysicalEntity", example = "R-HSA-199420", required = true) @PathVariable String id,
                                                  @Parameter(description = "Direct Participants are proteins or molecules, direcly involved in Reactions.", example = "false") @RequestParam(required = false) Boolean directParticipants,
@@ -63,7 +66,7 @@ public class HierarchyController {
             summary = "Retrieves a locations in PWB graph for given id",
             description = "This method retrieves multiple trees, where each root is a TopLevelPathway. Each leaf is a copy of the initially searched entry with a unique url pointing to a location in the PWB. Initial graph will be created following all incoming relationships of type: hasEvent, input, output, hasCandidate, hasMember, hasComponent, repeatedUnit, regulatedBy, regulator, physicalEntity, requiredInputComponent, entityFunctionalStatus, activeUnit, catalystActivity. PathwayBrowserNode contains: stId, name, species, url, type, diagram."
     )
-    @RequestMapping(value = "/detail/{id}/locationsInPWB", method = RequestMethod.GET, produces = "application/json")
+    @RequestMapping(value = "/detail/{id}/locationsInPWB", method = RequestMethod.GET, produces = {"application/json", APPLICATION_CBOR, APPLICATION_SMILE})
     @ResponseBody
     public Collection<PathwayBrowserNode> getPWBGraph(@Parameter(description = "DbId or StId of a PhysicalEntity", example = "R-HSA-199420", required = true) @PathVariable String id,
                                                       @Parameter(description = "Direct Participants are proteins or molecules, direcly involved in Reactions.", example = "false") @RequestParam(required = false) Boolean directParticipants,
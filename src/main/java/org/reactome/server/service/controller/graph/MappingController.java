@@ -16,6 +16,9 @@ import org.springframework.web.bind.annotation.*;
 
 import java.util.Collection;
 
+import static org.reactome.server.service.config.BinaryMessageConverter.APPLICATION_CBOR;
+import static org.reactome.server.service.config.BinaryMessageConverter.APPLICATION_SMILE;
+
 /**
  * @author Antonio Fabregat (fabregat@ebi.ac.uk)
  */
@@ -36,7 +39,7 @@ public class MappingController {
             @ApiResponse(responseCode = "404", description = "No reactions found for the submitted identifier/resource"),
             @ApiResponse(responseCode = "500", description = "Internal Server Error")
     })
-    @RequestMapping(value = "/mapping/{resource}/{identifier}/reactions", method = RequestMethod.GET, produces = "application/json")
+    @RequestMapping(value = "/mapping/{resource}/{identifier}/reactions", method = RequestMethod.GET, produces = {"application/json", APPLICATION_CBOR, APPLICATION_SMILE})
     @ResponseBody
     public Collection<ReactionLikeEvent> getReactionsLikeEvent(@Parameter(description = "The <a href='/content/schema/objects/ReferenceDatabase'>resource</a> <b>name</b> for which the identifier is submitted", example = "UniProt", required = true)
                                                                @PathVariable String resource,
@@ -66,7 +69,7 @@ public class MappingController {
             @ApiResponse(responseCode = "404", description = "No pathways found for the submitted identifier/resource"),
             @ApiResponse(responseCode = "500", description = "Internal Server Error")
     })
-    @RequestMapping(value = "/mapping/{resource}/{identifier}/pathways", method = RequestMethod.GET, produces = "application/json")
+    @RequestMapping(value = "/mapping/{resource}/{identifier}/pathways", method = RequestMethod.GET, produces = {"application/json", APPLICATION_CBOR, APPLICATION_SMILE})
     @ResponseBody
     public Collection<Pathway> getPathways(@Parameter(description = "The <a href='/content/schema/objects/ReferenceDatabase'>resource</a> <b>name</b> for which the identifier is submitted", example = "UniProt", required = true)
                                            @PathVariable String resource,
@@ -6,16 +6,26 @@ import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.reactome.server.graph.domain.model.DatabaseObject;
 import org.reactome.server.graph.service.OrthologyService;
+import org.reactome.server.service.config.CustomMessageConverter;
 import org.reactome.server.service.exception.ErrorInfo;
 import org.reactome.server.service.exception.NotFoundException;
+import org.reactome.server.service.utils.BulkLookupWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
 import java.util.*;
 import java.util.stream.Collectors;
 
+import static org.reactome.server.service.config.BinaryMessageConverter.APPLICATION_CBOR;
+import static org.reactome.server.service.config.BinaryMessageConverter.APPLICATION_SMILE;
+import static org.reactome.server.service.utils.JsonStreamWriter.APPLICATION_NDJSON;
+import static org.reactome.server.service.utils.JsonStreamWriter.acceptsNDJSON;
+
 /**
  * @author Antonio Fabregat <fabregat@ebi.ac.uk>
  */
@@ -30,13 +40,19 @@ public class OrthologyController {
     @Autowired
     private OrthologyService orthologyService;
 
+    @Autowired
+    private CustomMessageConverter customMessageConverter;
+
+    @Autowired
+    private BulkLookupWriter bulkLookupWriter;
+
     @Operation(summary = "The orthology for a given event or entity", description ="Reactome uses the set of manually curated human reactions to computationally infer reactions in twenty evolutionarily divergent eukaryotic species for which high-quality whole-genome sequence data are available, and hence a comprehensive and high-quality set of protein predictions exists. Thus, this method retrieves the orthology for any given event or entity in the specified species. <a href=\"//www.reactome.org/pages/documentation/electronically-inferred-events/\" target=\"_blank\">Here</a> you can find more information about the computationally inferred events.")
     @ApiResponses({
             @ApiResponse(responseCode = "404", description = "Species does not match with any in current data"),
             @ApiResponse(responseCode = "406", description = "Not acceptable according to the accept headers sent in the request"),
             @ApiResponse(responseCode = "500", description = "Internal Server Error")
     })
-    @RequestMapping(value = "/orthology/{id}/species/{speciesId}", method = RequestMethod.GET, produces = "application/json")
+    @RequestMapping(value = "/orthology/{id}/species/{speciesId}", method = RequestMethod.GET, produces = {"application/json", APPLICATION_CBOR, APPLICATION_SMILE})
     @ResponseBody
     public DatabaseObject getOrthology(@Parameter(description = "The event for which the orthology is requested", example = "R-HSA-6799198", required = true)
                                        @PathVariable String id,
@@ -48,23 +64,42 @@ public class OrthologyController {
         return orthology.iterator().next(); //here we only retrieve the first one
     }
 
-    @Operation(summary = "The orthologies of a given set of events or entities", description ="Reactome uses the set of manually curated human reactions to computationally infer reactions in twenty evolutionarily divergent eukaryotic species for which high-quality whole-genome sequence data are available, and hence a comprehensive and high-quality set of protein predictions exists. Thus, this method retrieves the orthologies for any given set of events or entities in the specified species. <a href=\"/documentation/inferred-events/\" target=\"_blank\">Here</a> you can find more information about the computationally inferred events.")
+    @Operation(summary = "The orthologies of a given set of events or entities", description ="Reactome uses the set of manually curated human reactions to computationally infer reactions in twenty evolutionarily divergent eukaryotic species for which high-quality whole-genome sequence data are available, and hence a comprehensive and high-quality set of protein predictions exists. Thus, this method retrieves the orthologies for any given set of events or entities in the specified species. <a href=\"/documentation/inferred-events/\" target=\"_blank\">Here</a> you can find more information about the computationally inferred events. Only requests containing up to 20 events or entities are processed unless requested with 'Accept: application/x-ndjson' (bulk mode), when up to 20000 of them are processed in batches and every orthology is streamed as a single entry map as newline delimited JSON as soon as every batch is retrieved. If a batch fails once some entries have been sent, the stream ends with an error line (same format as the error responses).")
     @ApiResponses({
             @ApiResponse(responseCode = "404", description = "Species does not match with any in current data"),
             @ApiResponse(responseCode = "406", description = "Not acceptable according to the accept headers sent in the request"),
             @ApiResponse(responseCode = "500", description = "Internal Server Error")
     })
-    @RequestMapping(value = "/orthologies/ids/species/{speciesId}", method = RequestMethod.POST, consumes = "text/plain", produces = "application/json")
+    @RequestMapping(value = "/orthologies/ids/species/{speciesId}", method = RequestMethod.POST, consumes = "text/plain", produces = {"application/json", APPLICATION_CBOR, APPLICATION_SMILE, APPLICATION_NDJSON})
     @ResponseBody
     public Map<Object, DatabaseObject> getOrthologies(@Parameter(description = "The species for which the orthology is requested", example = "49633", required = true)
                                                       @PathVariable Long speciesId,
                                                       @io.swagger.v3.oas.annotations.parameters.RequestBody(description = "The <b>events</b> or <b>entities</b> for which the orthology is requested", required = true)
-                                                      @RequestBody String post) {
-        Collection<Object> ids = new ArrayList<>();
+                                                      @RequestBody String post,
+                                                      HttpServletRequest request,
+                                                      HttpServletResponse response) throws IOException {
+        List<String> identifiers = new ArrayList<>();
         for (String id : post.split(",|;|\\n|\\t")) {
-            ids.add(id.trim());
+            identifiers.add(id.trim());
+        }
+        if (acceptsNDJSON(request)) {
+            infoLogger.info("Bulk request for orthology of {} Entries and species: {}", identifiers.size(), speciesId);
+            BulkLookupWriter.BatchLoader<Map<Object, DatabaseObject>> loader = batch -> getOrthologies(new ArrayList<>(batch), speciesId).entrySet().stream()
+                    .map(e -> Collections.singletonMap(e.getKey(), e.getValue()))
+                    .collect(Collectors.toList());
+            if (!bulkLookupWriter.write(identifiers, loader, customMessageConverter.getObjectWriter(request), request, response))
+                throw new NotFoundException("No orthologies found");
+            return null;
         }
+        Collection<Object> ids = new ArrayList<>(identifiers);
         if (ids.size() > 20) ids = ids.stream().skip(0).limit(20).collect(Collectors.toSet());
+        Map<Object, DatabaseObject> orthologies = getOrthologies(ids, speciesId);
+        if (orthologies.isEmpty()) throw new NotFoundException("No orthologies found");
+        infoLogger.info("Request for orthology of Entries with ids: {} and species: {}", ids, speciesId);
+        return orthologies;
+    }
+
+    private Map<Object, DatabaseObject> getOrthologies(Collection<Object> ids, Long speciesId) {
         Map<Object, DatabaseObject> orthologies = new HashMap<>();
         final Map<Object, Collection<DatabaseObject>> aux = orthologyService.getOrthologies(ids, speciesId);
         aux.keySet().forEach(key -> {
@@ -72,8 +107,6 @@ public class OrthologyController {
                 orthologies.put(key, aux.get(key).iterator().next()); //Only the first one is kept
             } catch (NullPointerException | NoSuchElementException ex){/* Nothing here */}
         });
-        if (orthologies.isEmpty()) throw new NotFoundException("No orthologies found");
-        infoLogger.info("Request for orthology of Entries with ids: {} and species: {}", ids, speciesId);
         return orthologies;
     }
 }
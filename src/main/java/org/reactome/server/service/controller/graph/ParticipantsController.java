@@ -16,6 +16,9 @@ import org.springframework.web.bind.annotation.*;
 
 import java.util.Collection;
 
+import static org.reactome.server.service.config.BinaryMessageConverter.APPLICATION_CBOR;
+import static org.reactome.server.service.config.BinaryMessageConverter.APPLICATION_SMILE;
+
 /**
  * @author Antonio Fabregat <fabregat@ebi.ac.uk>
  */
@@ -43,7 +46,7 @@ public class ParticipantsController {
             @ApiResponse(responseCode = "406", description = "Not acceptable according to the accept headers sent in the request"),
             @ApiResponse(responseCode = "500", description = "Internal Server Error")
     })
-    @RequestMapping(value = "/participants/{id}", method = RequestMethod.GET, produces = "application/json")
+    @RequestMapping(value = "/participants/{id}", method = RequestMethod.GET, produces = {"application/json", APPLICATION_CBOR, APPLICATION_SMILE})
     @ResponseBody
     public Collection<Participant> getParticipants(@Parameter(description = "DbId or StId of an Event", example = "5205685", required = true) @PathVariable String id) {
         Collection<Participant> participants = participantService.getParticipants(id);
@@ -60,7 +63,7 @@ public class ParticipantsController {
             @ApiResponse(responseCode = "406", description = "Not acceptable according to the accept headers sent in the request"),
             @ApiResponse(responseCode = "500", description = "Internal Server Error")
     })
-    @RequestMapping(value = "/participants/{id}/participatingPhysicalEntities", method = RequestMethod.GET, produces = "application/json")
+    @RequestMapping(value = "/participants/{id}/participatingPhysicalEntities", method = RequestMethod.GET, produces = {"application/json", APPLICATION_CBOR, APPLICATION_SMILE})
     @ResponseBody
     public Collection<PhysicalEntity> getParticipatingPhysicalEntities(@Parameter(description = "The event for which the participating PhysicalEntities are requested", example = "R-HSA-5205685", required = true) @PathVariable String id) {
         Collection<PhysicalEntity> participants = participantService.getParticipatingPhysicalEntities(id);
@@ -77,7 +80,7 @@ public class ParticipantsController {
             @ApiResponse(responseCode = "406", description = "Not acceptable according to the accept headers sent in the request"),
             @ApiResponse(responseCode = "500", description = "Internal Server Error")
     })
-    @RequestMapping(value = "/participants/{id}/referenceEntities", method = RequestMethod.GET, produces = "application/json")
+    @RequestMapping(value = "/participants/{id}/referenceEntities", method = RequestMethod.GET, produces = {"application/json", APPLICATION_CBOR, APPLICATION_SMILE})
     @ResponseBody
     public Collection<ReferenceEntity> getParticipatingReferenceEntities(@Parameter(description = "The event for which the participating ReferenceEntities are requested", example = "5205685", required = true) @PathVariable String id) {
         Collection<ReferenceEntity> participants = participantService.getParticipatingReferenceEntities(id);
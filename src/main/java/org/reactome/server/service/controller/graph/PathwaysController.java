@@ -27,6 +27,9 @@ import java.util.Collection;
 import java.util.HashSet;
 import java.util.stream.Collectors;
 
+import static org.reactome.server.service.config.BinaryMessageConverter.APPLICATION_CBOR;
+import static org.reactome.server.service.config.BinaryMessageConverter.APPLICATION_SMILE;
+
 /**
  * @author Florian Korninger (florian.korninger@ebi.ac.uk)
  * @author Antonio Fabregat (fabregat@ebi.ac.uk)
@@ -53,7 +56,7 @@ public class PathwaysController {
             @ApiResponse(responseCode = "404", description = "No contained events found in the given event"),
             @ApiResponse(responseCode = "500", description = "Internal Server Error")
     })
-    @RequestMapping(value = "/pathway/{id}/containedEvents", method = RequestMethod.GET, produces = "application/json")
+    @RequestMapping(value = "/pathway/{id}/containedEvents", method = RequestMethod.GET, produces = {"application/json", APPLICATION_CBOR, APPLICATION_SMILE})
     @ResponseBody
     public Collection<Event> getContainedEvents(@Parameter(description = "The event for which the contained events are requested", example = "R-HSA-5673001", required = true) @PathVariable String id) {
         Collection<Event> containedEvents = pathwaysService.getContainedEvents(id);
@@ -87,7 +90,7 @@ public class PathwaysController {
             @ApiResponse(responseCode = "404", description = "No TopLevelPathways were found for species"),
             @ApiResponse(responseCode = "500", description = "Internal Server Error")
     })
-    @RequestMapping(value = "/pathways/top/{species:.+}", method = RequestMethod.GET, produces = "application/json")
+    @RequestMapping(value = "/pathways/top/{species:.+}", method = RequestMethod.GET, produces = {"application/json", APPLICATION_CBOR, APPLICATION_SMILE})
     @ResponseBody
     public Collection<? extends Pathway> getTopLevelPathways(@Parameter(description = "Specifies the species by the taxonomy identifier (eg: 9606) or species name (eg: 'Homo+sapiens')", example = "9606", required = true)
                                                              @PathVariable String species) throws UnsupportedEncodingException {
@@ -106,7 +109,7 @@ public class PathwaysController {
             @ApiResponse(responseCode = "404", description = "Identifier is not present in any pathways"),
             @ApiResponse(responseCode = "500", description = "Internal Server Error")
     })
-    @RequestMapping(value = "/pathways/low/entity/{id}", method = RequestMethod.GET, produces = "application/json")
+    @RequestMapping(value = "/pathways/low/entity/{id}", method = RequestMethod.GET, produces = {"application/json", APPLICATION_CBOR, APPLICATION_SMILE})
     @ResponseBody
     public Collection<Pathway> getPathwaysFor(@Parameter(description = "The entity that has to be present in the pathways", example = "R-HSA-199420", required = true) @PathVariable String id,
                                               @Parameter(description = "The species for which the pathways are requested. Taxonomy identifier (eg: 9606) or species name (eg: 'Homo sapiens')", example = "9606") @RequestParam(required = false) String species) {
@@ -124,7 +127,7 @@ public class PathwaysController {
             @ApiResponse(responseCode = "404", description = "Identifier (in any of its forms) is not present in any pathways"),
             @ApiResponse(responseCode = "500", description = "Internal Server Error")
     })
-    @RequestMapping(value = "/pathways/low/entity/{id}/allForms", method = RequestMethod.GET, produces = "application/json")
+    @RequestMapping(value = "/pathways/low/entity/{id}/allForms", method = RequestMethod.GET, produces = {"application/json", APPLICATION_CBOR, APPLICATION_SMILE})
     @ResponseBody
     public Collection<Pathway> getPathwaysForAllFormsOf(@Parameter(description = "The entity (in any of its forms) that has to be present in the pathways", example = "R-HSA-199420", required = true) @PathVariable String id,
                                                         @Parameter(description = "The species for which the pathways are requested. Taxonomy identifier (eg: 9606) or species name (eg: 'Homo sapiens')", example = "9606") @RequestParam(required = false) String species) {
@@ -142,7 +145,7 @@ public class PathwaysController {
             @ApiResponse(responseCode = "404", description = "Identifier is not present in any pathways with diagram"),
             @ApiResponse(responseCode = "500", description = "Internal Server Error")
     })
-    @RequestMapping(value = "/pathways/low/diagram/entity/{id}", method = RequestMethod.GET, produces = "application/json")
+    @RequestMapping(value = "/pathways/low/diagram/entity/{id}", method = RequestMethod.GET, produces = {"application/json", APPLICATION_CBOR, APPLICATION_SMILE})
     @ResponseBody
     public Collection<Pathway> getPathwaysWithDiagramFor(@Parameter(description = "The entity that has to be present in the pathways", example = "R-HSA-199420", required = true) @PathVariable String id,
                                                          @Parameter(description = "The species for which the pathways are requested. Taxonomy identifier (eg: 9606) or species name (eg: 'Homo sapiens')", example = "9606") @RequestParam(required = false) String species) {
@@ -160,7 +163,7 @@ public class PathwaysController {
             @ApiResponse(responseCode = "404", description = "Identifier (in any of its forms) is not present in any pathways with diagram"),
             @ApiResponse(responseCode = "500", description = "Internal Server Error")
     })
-    @RequestMapping(value = "/pathways/low/diagram/entity/{id}/allForms", method = RequestMethod.GET, produces = "application/json")
+    @RequestMapping(value = "/pathways/low/diagram/entity/{id}/allForms", method = RequestMethod.GET, produces = {"application/json", APPLICATION_CBOR, APPLICATION_SMILE})
     @ResponseBody
     public Collection<Pathway> getPathwaysWithDiagramForAllFormsOf(@Parameter(description = "The entity (in any of its forms) that has to be present in the pathways", example = "R-HSA-199420", required = true) @PathVariable String id,
                                                                    @Parameter(description = "The species for which the pathways are requested. Taxonomy identifier (eg: 9606) or species name (eg: 'Homo sapiens')", example = "9606") @RequestParam(required = false) String species) {
@@ -177,7 +180,7 @@ public class PathwaysController {
             summary = "A list of lower level pathways with diagram containing any form of a given identifier",
             description = "This method traverses the event hierarchy and retrieves the list of all lower level pathways that have a diagram and contain the given PhysicalEntity in any of its variant forms. These variant forms include for example different post-translationally modified versions of a single protein, or the same chemical in different compartments."
     )
-    @RequestMapping(value = "/pathways/low/diagram/identifier/{identifier}/allForms", method = RequestMethod.GET, produces = "application/json")
+    @RequestMapping(value = "/pathways/low/diagram/identifier/{identifier}/allForms", method = RequestMethod.GET, produces = {"application/json", APPLICATION_CBOR, APPLICATION_SMILE})
     @ResponseBody
     public Collection<Pathway> getLowerLevelPathwaysForIdentifier(@Parameter(description = "The entity (in any of its forms) that has to be present in the pathways", example = "PTEN", required = true) @PathVariable String identifier,
                                                                   @Parameter(description = "The species for which the pathways are requested. Taxonomy identifier (eg: 9606) or species name (eg: 'Homo sapiens'", example = "9606") @RequestParam(required = false) String species) {
@@ -189,7 +192,7 @@ public class PathwaysController {
 
     @Hidden
     @Operation(summary = "A list of diagram entities plus pathways from the provided list containing the specified identifier", description = "This method traverses the content and checks not only for the main identifier but also for all the cross-references to find the flag targets")
-    @RequestMapping(value = "/diagram/{pathwayId}/entities/{identifier}", method = RequestMethod.GET, produces = "application/json")
+    @RequestMapping(value = "/diagram/{pathwayId}/entities/{identifier}", method = RequestMethod.GET, produces = {"application/json", APPLICATION_CBOR, APPLICATION_SMILE})
     @ResponseBody
     public Collection<SimpleDatabaseObject> getEntitiesInDiagramForIdentifier(@Parameter(description = "The pathway to find items to flag", example = "R-HSA-446203")
                                                                               @PathVariable String pathwayId,
@@ -216,7 +219,7 @@ public class PathwaysController {
 
     @Hidden
     @Operation(summary = "All Reactome top level pathways", description = "This method retrieves a list containing only curated top level pathways for the given species")
-    @RequestMapping(value = "/pathways/top/{species}/curated", method = RequestMethod.GET, produces = "application/json")
+    @RequestMapping(value = "/pathways/top/{species}/curated", method = RequestMethod.GET, produces = {"application/json", APPLICATION_CBOR, APPLICATION_SMILE})
     @ResponseBody
     public Collection<? extends Pathway> getCuratedTopLevelPathways(@Parameter(description = "Specifies the species by SpeciesName (eg: Homo sapiens) or SpeciesTaxId (eg: 9606)", example = "9606") @PathVariable String species) {
         Collection<TopLevelPathway> topLevelPathways = topLevelPathwayService.getCuratedTopLevelPathways(species);
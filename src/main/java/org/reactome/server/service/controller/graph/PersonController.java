@@ -20,6 +20,9 @@ import org.springframework.web.bind.annotation.*;
 import java.lang.reflect.InvocationTargetException;
 import java.util.Collection;
 
+import static org.reactome.server.service.config.BinaryMessageConverter.APPLICATION_CBOR;
+import static org.reactome.server.service.config.BinaryMessageConverter.APPLICATION_SMILE;
+
 /**
  * Created by:
  *
@@ -46,7 +49,7 @@ public class PersonController {
             @ApiResponse(responseCode = "404", description = "Given name does not exactly match with any in current data"),
             @ApiResponse(responseCode = "500", description = "Internal Server Error")
     })
-    @RequestMapping(value = "/people/name/{name}/exact", method = RequestMethod.GET, produces = "application/json")
+    @RequestMapping(value = "/people/name/{name}/exact", method = RequestMethod.GET, produces = {"application/json", APPLICATION_CBOR, APPLICATION_SMILE})
     @ResponseBody
     public Collection<Person> findPersonByName(@Parameter(description = "Person's first and last name", example = "Steve Jupe", required = true) @PathVariable String name) {
         Collection<Person> persons = personService.findPersonByName(name);
@@ -64,7 +67,7 @@ public class PersonController {
             @ApiResponse(responseCode = "404", description = "Given name does not partly match with any in current data"),
             @ApiResponse(responseCode = "500", description = "Internal Server Error")
     })
-    @RequestMapping(value = "/people/name/{name}", method = RequestMethod.GET, produces = "application/json")
+    @RequestMapping(value = "/people/name/{name}", method = RequestMethod.GET, produces = {"application/json", APPLICATION_CBOR, APPLICATION_SMILE})
     @ResponseBody
     public Collection<Person> queryPersonByName(@Parameter(description = "Person's first or last name", example = "Steve Jupe", required = true) @PathVariable String name) {
         Collection<Person> persons = personService.queryPersonByName(name);
@@ -79,7 +82,7 @@ public class PersonController {
             @ApiResponse(responseCode = "404", description = "OrcidId or DbId does not match with any in current data"),
             @ApiResponse(responseCode = "500", description = "Internal Server Error")
     })
-    @RequestMapping(value = "/person/{id}", method = RequestMethod.GET, produces = "application/json")
+    @RequestMapping(value = "/person/{id}", method = RequestMethod.GET, produces = {"application/json", APPLICATION_CBOR, APPLICATION_SMILE})
     @ResponseBody
     public Person findPerson(@Parameter(description = "Person identifier: Can be OrcidId or DbId", example = "0000-0001-5807-0069", required = true) @PathVariable String id) {
         Person person = personService.findPerson(id);
@@ -114,7 +117,7 @@ public class PersonController {
             @ApiResponse(responseCode = "406", description = "Not acceptable according to the accept headers sent in the request"),
             @ApiResponse(responseCode = "500", description = "Internal Server Error")
     })
-    @RequestMapping(value = "/person/{id}/publications", method = RequestMethod.GET, produces = "application/json")
+    @RequestMapping(value = "/person/{id}/publications", method = RequestMethod.GET, produces = {"application/json", APPLICATION_CBOR, APPLICATION_SMILE})
     @ResponseBody
     public Collection<Publication> getPublicationsOfPerson(@Parameter(description = "Person identifier: Can be OrcidId or DbId", example = "0000-0001-5807-0069", required = true) @PathVariable String id) {
         Collection<Publication> publications = personService.getPublicationsOfPerson(id);
@@ -131,7 +134,7 @@ public class PersonController {
             @ApiResponse(responseCode = "406", description = "Not acceptable according to the accept headers sent in the request"),
             @ApiResponse(responseCode = "500", description = "Internal Server Error")
     })
-    @RequestMapping(value = "/person/{id}/authoredPathways", method = RequestMethod.GET, produces = "application/json")
+    @RequestMapping(value = "/person/{id}/authoredPathways", method = RequestMethod.GET, produces = {"application/json", APPLICATION_CBOR, APPLICATION_SMILE})
     @ResponseBody
     public Collection<SimpleEventProjection> getAuthoredPathways(@Parameter(description = "Person identifier: Can be OrcidId or DbId", example = "0000-0001-5807-0069", required = true) @PathVariable String id) {
         Collection<SimpleEventProjection> pathways = personService.getAuthoredPathways(id);
@@ -26,6 +26,9 @@ import java.util.Collection;
 import java.util.List;
 import java.util.stream.Collectors;
 
+import static org.reactome.server.service.config.BinaryMessageConverter.APPLICATION_CBOR;
+import static org.reactome.server.service.config.BinaryMessageConverter.APPLICATION_SMILE;
+
 /**
  * @author Florian Korninger <florian.korninger@ebi.ac.uk>
  * @author Antonio Fabregat <fabregat@ebi.ac.uk>
@@ -56,7 +59,7 @@ public class PhysicalEntityController {
             @ApiResponse(responseCode = "406", description = "Not acceptable according to the accept headers sent in the request"),
             @ApiResponse(responseCode = "500", description = "Internal Server Error")
     })
-    @RequestMapping(value = "/entity/{id}/otherForms", method = RequestMethod.GET, produces = "application/json")
+    @RequestMapping(value = "/entity/{id}/otherForms", method = RequestMethod.GET, produces = {"application/json", APPLICATION_CBOR, APPLICATION_SMILE})
     @ResponseBody
     public Collection<PhysicalEntity> getOtherFormsOf(@Parameter(description = "DbId or StId of a PhysicalEntity", example = "R-HSA-199420", required = true) @PathVariable String id) {
         Collection<PhysicalEntity> physicalEntities = physicalEntityService.getOtherFormsOf(id);
@@ -72,7 +75,7 @@ public class PhysicalEntityController {
             @ApiResponse(responseCode = "406", description = "Not acceptable according to the accept headers sent in the request"),
             @ApiResponse(responseCode = "500", description = "Internal Server Error")
     })
-    @RequestMapping(value = "/entity/{id}/componentOf", method = RequestMethod.GET, produces = "application/json")
+    @RequestMapping(value = "/entity/{id}/componentOf", method = RequestMethod.GET, produces = {"application/json", APPLICATION_CBOR, APPLICATION_SMILE})
     @ResponseBody
     public Collection<ComponentOf> getComponentsOf(@Parameter(example = "R-HSA-199420", required = true) @PathVariable String id) {
         Collection<ComponentOf> componentOfs = advancedLinkageService.getComponentsOf(id);
@@ -91,7 +94,7 @@ public class PhysicalEntityController {
             @ApiResponse(responseCode = "406", description = "Not acceptable according to the accept headers sent in the request"),
             @ApiResponse(responseCode = "500", description = "Internal Server Error")
     })
-    @RequestMapping(value = "/complex/{id}/subunits", method = RequestMethod.GET, produces = "application/json")
+    @RequestMapping(value = "/complex/{id}/subunits", method = RequestMethod.GET, produces = {"application/json", APPLICATION_CBOR, APPLICATION_SMILE})
     @ResponseBody
     public Collection<PhysicalEntity> getComplexSubunits(@Parameter(description = "The complex for which subunits are requested", example = "R-HSA-5674003", required = true)
                                                          @PathVariable String id,
@@ -114,7 +117,7 @@ public class PhysicalEntityController {
             @ApiResponse(responseCode = "406", description = "Not acceptable according to the accept headers sent in the request"),
             @ApiResponse(responseCode = "500", description = "Internal Server Error")
     })
-    @RequestMapping(value = "/entity/{id}/in-depth", method = RequestMethod.GET, produces = "application/json")
+    @RequestMapping(value = "/entity/{id}/in-depth", method = RequestMethod.GET, produces = {"application/json", APPLICATION_CBOR, APPLICATION_SMILE})
     @ResponseBody
     public PhysicalEntity getPhysicalEntityInDepth(
             @Parameter(description = "The complex for which subunits are requested", example = "R-HSA-5674003", required = true)
@@ -138,7 +141,7 @@ public class PhysicalEntityController {
             @ApiResponse(responseCode = "406", description = "Not acceptable according to the accept headers sent in the request"),
             @ApiResponse(responseCode = "500", description = "Internal Server Error")
     })
-    @RequestMapping(value = "/complexes/{resource}/{identifier}", method = RequestMethod.GET, produces = "application/json")
+    @RequestMapping(value = "/complexes/{resource}/{identifier}", method = RequestMethod.GET, produces = {"application/json", APPLICATION_CBOR, APPLICATION_SMILE})
     @ResponseBody
     public Collection<Complex> getComplexesFor(@Parameter(description = "The resource of the identifier for complexes are requested", example = "UniProt", required = true)
                                                @PathVariable String resource,
@@ -154,7 +157,7 @@ public class PhysicalEntityController {
 
     @Hidden
     @Operation(summary = "The list of ReferenceMolecule objects", description = "It retrieves the list of reference molecules for which there are annotations in Reactome")
-    @RequestMapping(value = "/referenceMolecules", method = RequestMethod.GET, produces = "application/json")
+    @RequestMapping(value = "/referenceMolecules", method = RequestMethod.GET, produces = {"application/json", APPLICATION_CBOR, APPLICATION_SMILE})
     @ResponseBody
     public Collection<ReferenceMolecule> getReferenceMolecules() {
         infoLogger.info("Request total list of ReferenceMolecules");
@@ -173,7 +176,7 @@ public class PhysicalEntityController {
 
     @Hidden
     @Operation(summary = "The list of ReferenceSequence objects", description = "It retrieves the list of reference sequences for which there are annotations in Reactome")
-    @RequestMapping(value = "/referenceSequences", method = RequestMethod.GET, produces = "application/json")
+    @RequestMapping(value = "/referenceSequences", method = RequestMethod.GET, produces = {"application/json", APPLICATION_CBOR, APPLICATION_SMILE})
     @ResponseBody
     public Collection<ReferenceSequence> getReferenceSequences(@Parameter(description = "Page number", example = "1")
                                                                @RequestParam Integer page,
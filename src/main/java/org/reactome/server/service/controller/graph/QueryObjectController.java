@@ -16,22 +16,30 @@ import org.reactome.server.graph.service.DatabaseObjectService;
 import org.reactome.server.graph.service.helper.EnhancedQueryOptions;
 import org.reactome.server.graph.service.helper.RelationshipDirection;
 import org.reactome.server.graph.service.util.DatabaseObjectUtils;
+import org.reactome.server.service.config.CustomMessageConverter;
 import org.reactome.server.service.controller.graph.util.ControllerUtils;
 import org.reactome.server.service.exception.NotFoundException;
 import org.reactome.server.service.exception.NotFoundTextPlainException;
+import org.reactome.server.service.manager.IdentifierDictionaryManager;
 import org.reactome.server.service.model.graph.SummaryEntity;
+import org.reactome.server.service.utils.BulkLookupWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.*;
 import java.util.stream.Collectors;
 
+import static org.reactome.server.service.config.BinaryMessageConverter.APPLICATION_CBOR;
+import static org.reactome.server.service.config.BinaryMessageConverter.APPLICATION_SMILE;
+import static org.reactome.server.service.utils.JsonStreamWriter.APPLICATION_NDJSON;
+import static org.reactome.server.service.utils.JsonStreamWriter.acceptsNDJSON;
+
 /**
  * @author Florian Korninger (florian.korninger@ebi.ac.uk)
  * @author Antonio Fabregat (fabregat@ebi.ac.uk)
@@ -50,13 +58,22 @@ public class QueryObjectController {
     @Autowired
     private AdvancedDatabaseObjectService advancedDatabaseObjectService;
 
+    @Autowired
+    private IdentifierDictionaryManager identifierDictionaryManager;
+
+    @Autowired
+    private CustomMessageConverter customMessageConverter;
+
+    @Autowired
+    private BulkLookupWriter bulkLookupWriter;
+
     @Operation(summary = "An entry in Reactome knowledgebase", description = "This method queries for an entry in Reactome knowledgebase based on the given identifier, i.e. stable id or database id. It is worth mentioning that the retrieved database object has all its properties and direct relationships (relationships of depth 1) filled.")
     @ApiResponses({
             @ApiResponse(responseCode = "404", description = "Identifier does not match with any in current data (depth 1)"),
             @ApiResponse(responseCode = "406", description = "Not acceptable according to the accept headers sent in the request"),
             @ApiResponse(responseCode = "500", description = "Internal Server Error")
     })
-    @RequestMapping(value = "/query/{id}", method = RequestMethod.GET, produces = "application/json")
+    @RequestMapping(value = "/query/{id}", method = RequestMethod.GET, produces = {"application/json", APPLICATION_CBOR, APPLICATION_SMILE})
     @ResponseBody
     public DatabaseObject findById(@Parameter(description = "DbId or StId of the requested database object", example = "R-HSA-1640170", required = true)
                                    @PathVariable String id) {
@@ -84,12 +101,12 @@ public class QueryObjectController {
         return ControllerUtils.getProperty(databaseObject, attributeName);
     }
 
-    @Operation(summary = "A list of entries in Reactome knowledgebase", description = "This method queries for a set of entries in Reactome knowledgebase based on the given list of identifiers. The provided list of identifiers can include stable ids, database ids or a mixture of both. It should be underlined that any duplicated ids are eliminated while only requests containing up to 20 ids are processed.")
+    @Operation(summary = "A list of entries in Reactome knowledgebase", description = "This method queries for a set of entries in Reactome knowledgebase based on the given list of identifiers. The provided list of identifiers can include stable ids, database ids or a mixture of both. It should be underlined that any duplicated ids are eliminated while only requests containing up to 20 ids are processed. When requested with 'Accept: application/x-ndjson' (bulk mode), up to 20000 ids are processed in batches and the entries are streamed as newline delimited JSON as soon as every batch is retrieved. If a batch fails once some entries have been sent, the stream ends with an error line (same format as the error responses).")
     @ApiResponses({
             @ApiResponse(responseCode = "404", description = "Identifier does not match with any in current data or invalid attribute name"),
             @ApiResponse(responseCode = "500", description = "Internal Server Error")
     })
-    @RequestMapping(value = "/query/ids", method = RequestMethod.POST, produces = "application/json", consumes = "text/plain")
+    @RequestMapping(value = "/query/ids", method = RequestMethod.POST, produces = {"application/json", APPLICATION_CBOR, APPLICATION_SMILE, APPLICATION_NDJSON}, consumes = "text/plain")
     @ResponseBody
     public Collection<DatabaseObject> findByIds(
             @io.swagger.v3.oas.annotations.parameters.RequestBody(
@@ -97,21 +114,29 @@ public class QueryObjectController {
                     required = true,
                     content = @Content(examples = @ExampleObject("R-HSA-1640170, R-HSA-109581, 199420"))
             )
-            @RequestBody String post) {
-        Collection<Object> ids = new ArrayList<>();
+            @RequestBody String post,
+            HttpServletRequest request,
+            HttpServletResponse response) throws IOException, CustomQueryException {
+        Collection<String> ids = new ArrayList<>();
         for (String id : post.split(",|;|\\n|\\t")) {
             ids.add(id.trim());
         }
+        if (acceptsNDJSON(request)) {
+            infoLogger.info("Bulk request for DatabaseObjects for {} ids", ids.size());
+            if (!bulkLookupWriter.write(ids, batch -> new LinkedHashSet<DatabaseObject>(findByIdentifiers(batch).values()), customMessageConverter.getObjectWriter(request), request, response))
+                throw new NotFoundException("None of the " + ids.size() + " ids have been found in the System");
+            return null;
+        }
         if (ids.size() > 20) ids = ids.stream().skip(0).limit(20).collect(Collectors.toSet());
-        Collection<DatabaseObject> databaseObjects = advancedDatabaseObjectService.findByIds(ids, RelationshipDirection.OUTGOING);
-        if (databaseObjects == null || databaseObjects.isEmpty())
+        Collection<DatabaseObject> databaseObjects = new LinkedHashSet<>(findByIdentifiers(ids).values());
+        if (databaseObjects.isEmpty())
             throw new NotFoundException("Ids: " + ids.toString() + " have not been found in the System");
         infoLogger.info("Request for DatabaseObjects for ids: {}", ids);
         return databaseObjects;
     }
 
-    @Operation(summary = "A list of entries with their mapping to the provided identifiers", description = "This method queries for a set of entries in Reactome knowledgebase based on the given list of identifiers. The provided list of identifiers can include stable ids, database ids, old stable ids or a mixture of all. It should be underlined that any duplicated ids are eliminated while only requests containing up to 20 ids are processed.<br>This method is particularly useful for users that still rely on the previous version of stable identifiers to query this API. Please note that those are no longer part of the retrieved objects.")
-    @RequestMapping(value = "/query/ids/map", method = RequestMethod.POST, produces = "application/json", consumes = "text/plain")
+    @Operation(summary = "A list of entries with their mapping to the provided identifiers", description = "This method queries for a set of entries in Reactome knowledgebase based on the given list of identifiers. The provided list of identifiers can include stable ids, database ids, old stable ids or a mixture of all. It should be underlined that any duplicated ids are eliminated while only requests containing up to 20 ids are processed. When requested with 'Accept: application/x-ndjson' (bulk mode), up to 20000 ids are processed in batches and every entry is streamed as a single entry map as newline delimited JSON as soon as every batch is retrieved. If a batch fails once some entries have been sent, the stream ends with an error line (same format as the error responses).<br>This method is particularly useful for users that still rely on the previous version of stable identifiers to query this API. Please note that those are no longer part of the retrieved objects.")
+    @RequestMapping(value = "/query/ids/map", method = RequestMethod.POST, produces = {"application/json", APPLICATION_CBOR, APPLICATION_SMILE, APPLICATION_NDJSON}, consumes = "text/plain")
     @ResponseBody //TODO: Swagger is not showing the defaultValue
     public Map<String, DatabaseObject> findByIdsMap(
             @io.swagger.v3.oas.annotations.parameters.RequestBody(
@@ -119,22 +144,29 @@ public class QueryObjectController {
                     required = true,
                     content = @Content(examples = @ExampleObject("R-HSA-1640170, R-HSA-109581, 199420"))
             )
-            @RequestBody String post) {
+            @RequestBody String post,
+            HttpServletRequest request,
+            HttpServletResponse response) throws IOException, CustomQueryException {
         Collection<String> ids = new ArrayList<>();
         for (String id : post.split(",|;|\\n|\\t")) ids.add(id.trim());
-        if (ids.size() > 20) ids = ids.stream().skip(0).limit(20).collect(Collectors.toSet());
-        Map<String, DatabaseObject> map = new HashMap<>();
-        for (String id : ids) {
-            DatabaseObject object = advancedDatabaseObjectService.findById(id, RelationshipDirection.OUTGOING);
-            if (object != null) map.put(id, object);
+        if (acceptsNDJSON(request)) {
+            infoLogger.info("Bulk request for DatabaseObjects for {} ids", ids.size());
+            BulkLookupWriter.BatchLoader<Map<String, DatabaseObject>> loader = batch -> findByIdentifiers(batch).entrySet().stream()
+                    .map(e -> Collections.singletonMap(e.getKey(), e.getValue()))
+                    .collect(Collectors.toList());
+            if (!bulkLookupWriter.write(ids, loader, customMessageConverter.getObjectWriter(request), request, response))
+                throw new NotFoundException("None of the " + ids.size() + " ids have been found in the System");
+            return null;
         }
+        if (ids.size() > 20) ids = ids.stream().skip(0).limit(20).collect(Collectors.toSet());
+        Map<String, DatabaseObject> map = findByIdentifiers(ids);
         if (map.isEmpty()) throw new NotFoundException("Ids: " + ids + " have not been found in the System");
         infoLogger.info("Request for DatabaseObjects for ids: {}", ids);
         return map;
     }
 
     @Operation(summary = "More information on an entry in Reactome knowledgebase", description = "Based on the given identifier, i.e. stable id or database id, this method queries for an entry in Reactome knowledgebase providing more information. In particular, the retrieved database object has all its properties and direct relationships (relationships of depth 1) filled, while it also includes any second level relationships regarding regulations and catalysts.")
-    @RequestMapping(value = "/query/enhanced/{id}", method = RequestMethod.GET, produces = "application/json")
+    @RequestMapping(value = "/query/enhanced/{id}", method = RequestMethod.GET, produces = {"application/json", APPLICATION_CBOR, APPLICATION_SMILE})
     @ResponseBody
     public DatabaseObject findOldEnhancedObjectById(
             @Parameter(description = "DbId or StId of the requested database object", example = "R-HSA-60140", required = true)
@@ -147,7 +179,7 @@ public class QueryObjectController {
     }
 
     @Operation(summary = "More information on an entry in Reactome knowledgebase", description = "Based on the given identifier, i.e. stable id or database id, this method queries for an entry in Reactome knowledgebase providing more information. In particular, the retrieved database object has all its properties and direct relationships (relationships of depth 1) filled, while it also includes any second level relationships regarding regulations and catalysts.")
-    @RequestMapping(value = "/query/enhanced/v2/{id}", method = RequestMethod.GET, produces = "application/json")
+    @RequestMapping(value = "/query/enhanced/v2/{id}", method = RequestMethod.GET, produces = {"application/json", APPLICATION_CBOR, APPLICATION_SMILE})
     @ResponseBody
     public DatabaseObject findEnhancedObjectById(
             @Parameter(description = "DbId or StId of the requested database object", example = "R-HSA-60140", required = true)
@@ -181,7 +213,7 @@ public class QueryObjectController {
 
     @Hidden //Kept for backwards compatibility. It can be removed when logs show no activity under this mapping
     @Operation(summary = "More information on an entry in Reactome knowledgebase", description = "Based on the given identifier, i.e. stable id or database id, this method queries for an entry in Reactome knowledgebase providing more information. In particular, the retrieved database object has all its properties and direct relationships (relationships of depth 1) filled, while it also includes any second level relationships regarding regulations and catalysts.")
-    @RequestMapping(value = "/query/{id}/more", method = RequestMethod.GET, produces = "application/json")
+    @RequestMapping(value = "/query/{id}/more", method = RequestMethod.GET, produces = {"application/json", APPLICATION_CBOR, APPLICATION_SMILE})
     @ResponseBody
     public DatabaseObject findMoreObjectById(@Parameter(description = "DbId or StId of the requested database object", example = "R-HSA-60140", required = true)
                                              @PathVariable String id) {
@@ -190,7 +222,7 @@ public class QueryObjectController {
 
     @Hidden
     @Operation(summary = "Retrieves a DatabaseObject", description = "DatabaseObject will only be filled with primitive properties but no relationships")
-    @RequestMapping(value = "/query/abridged/{id}", method = RequestMethod.GET, produces = "application/json")
+    @RequestMapping(value = "/query/abridged/{id}", method = RequestMethod.GET, produces = {"application/json", APPLICATION_CBOR, APPLICATION_SMILE})
     @ResponseBody
     public DatabaseObject findByIdNoRelations(@Parameter(description = "DbId or StId of the requested database object", example = "R-HSA-1640170", required = true)
                                               @PathVariable String id) {
@@ -215,6 +247,29 @@ public class QueryObjectController {
         return ControllerUtils.getProperty(databaseObject, attributeName);
     }
 
+    /**
+     * Resolves the identifiers to database identifiers (see {@link IdentifierDictionaryManager#resolve}) so all the
+     * objects are retrieved at once instead of querying the graph database once per identifier
+     *
+     * @return the objects found (with their direct outgoing relationships) for each of the given identifiers
+     */
+    private Map<String, DatabaseObject> findByIdentifiers(Collection<String> ids) throws CustomQueryException {
+        Map<String, Long> dbIds = identifierDictionaryManager.resolve(ids);
+        Map<String, DatabaseObject> rtn = new LinkedHashMap<>();
+        if (dbIds.isEmpty()) return rtn;
+
+        Collection<Object> toFind = dbIds.values().stream().distinct().map(String::valueOf).collect(Collectors.toList());
+        Collection<DatabaseObject> databaseObjects = advancedDatabaseObjectService.findByIds(toFind, RelationshipDirection.OUTGOING);
+        if (databaseObjects == null) return rtn;
+        Map<Long, DatabaseObject> byDbId = new HashMap<>();
+        for (DatabaseObject databaseObject : databaseObjects) byDbId.put(databaseObject.getDbId(), databaseObject);
+        dbIds.forEach((id, dbId) -> {
+            DatabaseObject databaseObject = byDbId.get(dbId);
+            if (databaseObject != null) rtn.put(id, databaseObject);
+        });
+        return rtn;
+    }
+
     private boolean needsIncomingRelationship(String id) {
         boolean rtn = false;
         try {
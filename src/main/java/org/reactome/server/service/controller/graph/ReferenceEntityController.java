@@ -27,6 +27,8 @@ import java.util.*;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import static org.reactome.server.service.config.BinaryMessageConverter.APPLICATION_CBOR;
+import static org.reactome.server.service.config.BinaryMessageConverter.APPLICATION_SMILE;
 import static org.gk.model.ReactomeJavaConstants.identifier;
 
 /**
@@ -54,7 +56,7 @@ public class ReferenceEntityController {
             @ApiResponse(responseCode = "406", description = "Not acceptable according to the accept headers sent in the request"),
             @ApiResponse(responseCode = "500", description = "Internal Server Error")
     })
-    @RequestMapping(value = "/mapping/{identifier}", method = RequestMethod.GET, produces = "application/json")
+    @RequestMapping(value = "/mapping/{identifier}", method = RequestMethod.GET, produces = {"application/json", APPLICATION_CBOR, APPLICATION_SMILE})
     @ResponseBody
     public Collection<ReferenceEntity> getReferenceEntitiesFor(@Parameter(description = "Identifier for a given entity", example = "15377", required = true) @PathVariable String identifier) {
         Collection<ReferenceEntity> referenceEntities = referenceEntityService.getReferenceEntitiesFor(identifier);
@@ -73,7 +75,7 @@ public class ReferenceEntityController {
             @ApiResponse(responseCode = "406", description = "Not acceptable according to the accept headers sent in the request"),
             @ApiResponse(responseCode = "500", description = "Internal Server Error")
     })
-    @RequestMapping(value = "/mapping/{identifier}/xrefs", method = RequestMethod.GET, produces = "application/json")
+    @RequestMapping(value = "/mapping/{identifier}/xrefs", method = RequestMethod.GET, produces = {"application/json", APPLICATION_CBOR, APPLICATION_SMILE})
     @ResponseBody
     public Collection<CrossReferenceResult> getCrossReferencesFor(
             @Parameter(description = "Identifier for a given entity", example = "P36897", required = true) @PathVariable String identifier,
@@ -96,7 +98,7 @@ public class ReferenceEntityController {
             @ApiResponse(responseCode = "406", description = "Not acceptable according to the accept headers sent in the request"),
             @ApiResponse(responseCode = "500", description = "Internal Server Error")
     })
-    @RequestMapping(value = "/mapping/xrefs", method = RequestMethod.POST, produces = "application/json", consumes = "text/plain")
+    @RequestMapping(value = "/mapping/xrefs", method = RequestMethod.POST, produces = {"application/json", APPLICATION_CBOR, APPLICATION_SMILE}, consumes = "text/plain")
     @ResponseBody
     @JsonInclude
     public Page<Map<String, Collection<CrossReferenceResult>>> getCrossReferencesForList(
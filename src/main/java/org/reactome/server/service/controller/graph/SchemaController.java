@@ -12,14 +12,24 @@ import org.reactome.server.graph.service.GeneralService;
 import org.reactome.server.graph.service.SchemaService;
 import org.reactome.server.graph.service.helper.SchemaNode;
 import org.reactome.server.graph.service.util.DatabaseObjectUtils;
+import org.reactome.server.service.config.CustomMessageConverter;
 import org.reactome.server.service.exception.NotFoundException;
+import org.reactome.server.service.utils.JsonStreamWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
 import java.util.Collection;
 
+import static org.reactome.server.service.config.BinaryMessageConverter.APPLICATION_CBOR;
+import static org.reactome.server.service.config.BinaryMessageConverter.APPLICATION_SMILE;
+import static org.reactome.server.service.utils.JsonStreamWriter.APPLICATION_NDJSON;
+import static org.reactome.server.service.utils.JsonStreamWriter.acceptsNDJSON;
+
 /**
  * @author Florian Korninger (florian.korninger@ebi.ac.uk)
  * @author Antonio Fabregat (fabregat@ebi.ac.uk)
@@ -37,6 +47,8 @@ public class SchemaController {
     private SchemaService schemaService;
     @Autowired
     private GeneralService generalService;
+    @Autowired
+    private CustomMessageConverter customMessageConverter;
 
     @Operation(summary = "A list of entries corresponding to a given schema class", description = "This method retrieves the list of entries in Reactome that belong to the specified schema class. Please take into account that if species is specified to filter the results, schema class needs to be an instance of Event or PhysicalEntity. Additionally, paging is required, while a maximum of 25 entries can be returned per request.")
     @ApiResponses({
@@ -44,7 +56,7 @@ public class SchemaController {
             @ApiResponse(responseCode = "406", description = "Not acceptable according to the accept headers sent in the request"),
             @ApiResponse(responseCode = "500", description = "Internal Server Error")
     })
-    @RequestMapping(value = "/schema/{className}", method = RequestMethod.GET, produces = "application/json")
+    @RequestMapping(value = "/schema/{className}", method = RequestMethod.GET, produces = {"application/json", APPLICATION_CBOR, APPLICATION_SMILE})
     @ResponseBody
     public Collection<DatabaseObject> getDatabaseObjectsForClassName(@Parameter(description = "Schema class name", example = "Pathway", required = true) @PathVariable String className,
                                                                      @Parameter(description = "Allowed species filter: SpeciesName (eg: Homo sapiens) SpeciesTaxId (eg: 9606)", example = "9606") @RequestParam(required = false) String species,
@@ -63,18 +75,20 @@ public class SchemaController {
         return databaseObjects;
     }
 
-    @Operation(summary = "A list of simplified entries corresponding to a given schema class", description = "This method retrieves the list of simplified entries in Reactome that belong to the specified schema class. A simplified entry may be considered as a minimised version of the full database object that includes its database id, stable id, displayName and type. Please take into account that if species is specified to filter the results, schema class needs to be an instance of Event or PhysicalEntity. Also, paging is required, while a maximum of 20000 entries can be returned per request.")
+    @Operation(summary = "A list of simplified entries corresponding to a given schema class", description = "This method retrieves the list of simplified entries in Reactome that belong to the specified schema class. A simplified entry may be considered as a minimised version of the full database object that includes its database id, stable id, displayName and type. Please take into account that if species is specified to filter the results, schema class needs to be an instance of Event or PhysicalEntity. Also, paging is required, while a maximum of 20000 entries can be returned per request. When requested with 'Accept: application/x-ndjson', the entries are returned as newline delimited JSON.")
     @ApiResponses({
             @ApiResponse(responseCode = "404", description = "Schema class does not match with any current data"),
             @ApiResponse(responseCode = "406", description = "Not acceptable according to the accept headers sent in the request"),
             @ApiResponse(responseCode = "500", description = "Internal Server Error")
     })
-    @RequestMapping(value = "/schema/{className}/min", method = RequestMethod.GET, produces = "application/json")
+    @RequestMapping(value = "/schema/{className}/min", method = RequestMethod.GET, produces = {"application/json", APPLICATION_CBOR, APPLICATION_SMILE, APPLICATION_NDJSON})
     @ResponseBody
     public Collection<SimpleDatabaseObject> getSimpleDatabaseObjectByClassName(@Parameter(description = "Schema class name", example = "Pathway", required = true) @PathVariable String className,
                                                                                @Parameter(description = "Allowed species filter: SpeciesName (eg: Homo sapiens) SpeciesTaxId (eg: 9606)", example = "9606") @RequestParam(required = false) String species,
                                                                                @Parameter(description = "Page to be returned", example = "1", required = true) @RequestParam Integer page,
-                                                                               @Parameter(description = "Number of rows returned. Maximum = 20000", example = "20000", required = true) @RequestParam Integer offset) throws ClassNotFoundException {
+                                                                               @Parameter(description = "Number of rows returned. Maximum = 20000", example = "20000", required = true) @RequestParam Integer offset,
+                                                                               HttpServletRequest request,
+                                                                               HttpServletResponse response) throws ClassNotFoundException, IOException {
         if (offset > 20000) offset = 20000;
         Collection<SimpleDatabaseObject> simpleDatabaseObjects;
         if (species == null) {
@@ -85,25 +99,35 @@ public class SchemaController {
         if (simpleDatabaseObjects == null || simpleDatabaseObjects.isEmpty())
             throw new NotFoundException("No entries found for class: " + className);
         infoLogger.info("Request for simple objects of class: {}", className, species);
+        if (acceptsNDJSON(request)) {
+            JsonStreamWriter.writeNDJSON(simpleDatabaseObjects, customMessageConverter.getObjectWriter(request), response);
+            return null;
+        }
         return simpleDatabaseObjects;
     }
 
-    @Operation(summary = "A list of simplified reference objects corresponding to a given schema class", description = "This method retrieves the list of simplified reference objects that belong to the specified schema class. A reference object includes its database id, external identifier, and external database name. Please take into account that schema class needs to be an instance of ReferenceEntity or ExternalOntology. Also, paging is required, while a maximum of 20000 entries can be returned per request.")
+    @Operation(summary = "A list of simplified reference objects corresponding to a given schema class", description = "This method retrieves the list of simplified reference objects that belong to the specified schema class. A reference object includes its database id, external identifier, and external database name. Please take into account that schema class needs to be an instance of ReferenceEntity or ExternalOntology. Also, paging is required, while a maximum of 20000 entries can be returned per request. When requested with 'Accept: application/x-ndjson', the entries are returned as newline delimited JSON.")
     @ApiResponses({
             @ApiResponse(responseCode = "404", description = "Schema class does not match with any current data"),
             @ApiResponse(responseCode = "406", description = "Not acceptable according to the accept headers sent in the request"),
             @ApiResponse(responseCode = "500", description = "Internal Server Error")
     })
-    @RequestMapping(value = "/schema/{className}/reference", method = RequestMethod.GET, produces = "application/json")
+    @RequestMapping(value = "/schema/{className}/reference", method = RequestMethod.GET, produces = {"application/json", APPLICATION_CBOR, APPLICATION_SMILE, APPLICATION_NDJSON})
     @ResponseBody
     public Collection<SimpleReferenceObject> getSimpleReferencesObjectsByClassName(@Parameter(description = "Schema class name. Class needs to an instance of ReferenceEntity or ExternalOntology", example = "ReferenceMolecule", required = true) @PathVariable String className,
                                                                                    @Parameter(description = "Page to be returned", example = "1", required = true) @RequestParam Integer page,
-                                                                                   @Parameter(description = "Number of rows returned. Maximum = 20000", example = "20000", required = true) @RequestParam Integer offset) throws ClassNotFoundException {
+                                                                                   @Parameter(description = "Number of rows returned. Maximum = 20000", example = "20000", required = true) @RequestParam Integer offset,
+                                                                                   HttpServletRequest request,
+                                                                                   HttpServletResponse response) throws ClassNotFoundException, IOException {
         if (offset > 20000) offset = 20000;
         Collection<SimpleReferenceObject> simpleReferenceObjects = schemaService.getSimpleReferencesObjectsByClassName(className, page, offset);
         if (simpleReferenceObjects == null || simpleReferenceObjects.isEmpty())
             throw new NotFoundException("No entries found for class: " + className);
         infoLogger.info("Request for reference objects of class: {}", className);
+        if (acceptsNDJSON(request)) {
+            JsonStreamWriter.writeNDJSON(simpleReferenceObjects, customMessageConverter.getObjectWriter(request), response);
+            return null;
+        }
         return simpleReferenceObjects;
     }
 
@@ -113,7 +137,7 @@ public class SchemaController {
             @ApiResponse(responseCode = "406", description = "Not acceptable according to the accept headers sent in the request"),
             @ApiResponse(responseCode = "500", description = "Internal Server Error")
     })
-    @RequestMapping(value = "/schema/{className}/count", method = RequestMethod.GET, produces = "application/json")
+    @RequestMapping(value = "/schema/{className}/count", method = RequestMethod.GET, produces = {"application/json", APPLICATION_CBOR, APPLICATION_SMILE})
     @ResponseBody
     public Long countEntries(@Parameter(description = "Schema class name", example = "Pathway", required = true) @PathVariable String className,
                              @Parameter(description = "Allowed species filter: SpeciesName (eg: Homo sapiens) SpeciesTaxId (eg: 9606)", example = "9606") @RequestParam(required = false) String species) throws ClassNotFoundException {
@@ -133,7 +157,7 @@ public class SchemaController {
             @ApiResponse(responseCode = "406", description = "Not acceptable according to the accept headers sent in the request"),
             @ApiResponse(responseCode = "500", description = "Internal Server Error")
     })
-    @RequestMapping(value = "/schema/model", method = RequestMethod.GET, produces = {"application/json"})
+    @RequestMapping(value = "/schema/model", method = RequestMethod.GET, produces = {"application/json", APPLICATION_CBOR, APPLICATION_SMILE})
     public SchemaNode getSchemaModel() {
         if (cacheSchema == null) {
             try {
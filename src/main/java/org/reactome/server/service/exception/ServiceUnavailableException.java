@@ -0,0 +1,23 @@
+package org.reactome.server.service.exception;
+
+/**
+ * Thrown when the service is temporarily overloaded and the request cannot be processed. It is answered with
+ * a 503 status code and a "Retry-After" header (@see GlobalExceptionHandler)
+ */
+public final class ServiceUnavailableException extends RuntimeException {
+
+    private final long retryAfter;
+
+    /**
+     * @param message    the reason why the request could not be processed
+     * @param retryAfter number of seconds the client is advised to wait before retrying
+     */
+    public ServiceUnavailableException(String message, long retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+
+    public long getRetryAfter() {
+        return retryAfter;
+    }
+}
@@ -0,0 +1,77 @@
+package org.reactome.server.service.manager;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.reactome.server.analysis.core.result.AnalysisStoredResult;
+import org.reactome.server.analysis.core.result.PathwayNodeSummary;
+import org.reactome.server.analysis.core.result.utils.TokenUtils;
+import org.reactome.server.service.utils.CoalescingCache;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps the most recently used analysis results (already deserialised) together with their pathway summaries indexed
+ * by stable identifier, so the results of a token are only read from disk once while it is being used (i.e. the
+ * events hierarchy overlay is requested for every species the user browses).
+ * <p>
+ * The results can be very different in size, so the cache is bounded by the number of pathway summaries kept
+ * instead of the number of tokens. Results not requested for a while (analysis.cache.ttl, shorter than the lifetime of
+ * the tokens) are discarded, so they are read again the next time, which fails when the analysis service has removed
+ * the token in the meantime. The results are shared, so they must not be modified.
+ */
+@Component
+public class AnalysisResultManager {
+
+    private final CoalescingCache<String, AnalysisResult> cache;
+
+    private TokenUtils tokenUtils;
+
+    @Autowired
+    public AnalysisResultManager(@Value("${analysis.cache.max.pathways:500000}") Long maxPathways,
+                                 @Value("${analysis.cache.ttl:3600000}") Long ttl,   // 1 hour
+                                 MeterRegistry registry) {
+        this.cache = new CoalescingCache<>("analysis-results", maxPathways, AnalysisResult::getWeight, ttl, registry);
+    }
+
+    /**
+     * @param token the analysis token
+     * @return the analysis result for the given token
+     */
+    public AnalysisResult getResult(String token) {
+        return cache.get(token, () -> new AnalysisResult(tokenUtils.getFromToken(token)));
+    }
+
+    public static class AnalysisResult {
+        private final AnalysisStoredResult result;
+        private final Map<String, PathwayNodeSummary> summaries;
+
+        AnalysisResult(AnalysisStoredResult result) {
+            this.result = result;
+            this.summaries = new HashMap<>(result.getPathways().size() * 4 / 3 + 1);
+            for (PathwayNodeSummary pathway : result.getPathways()) summaries.put(pathway.getStId(), pathway);
+        }
+
+        public AnalysisStoredResult getResult() {
+            return result;
+        }
+
+        /**
+         * @return the pathway summaries indexed by stable identifier
+         */
+        public Map<String, PathwayNodeSummary> getSummaries() {
+            return summaries;
+        }
+
+        long getWeight() {
+            return summaries.size() + 1L;
+        }
+    }
+
+    @Autowired
+    public void setTokenUtils(TokenUtils tokenUtils) {
+        this.tokenUtils = tokenUtils;
+    }
+}
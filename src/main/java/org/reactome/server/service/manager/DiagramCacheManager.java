@@ -0,0 +1,128 @@
+package org.reactome.server.service.manager;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.reactome.server.graph.service.GeneralService;
+import org.reactome.server.tools.diagram.data.DiagramFactory;
+import org.reactome.server.tools.diagram.data.exception.DeserializationException;
+import org.reactome.server.tools.diagram.data.layout.Diagram;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the most recently used diagrams already parsed, so the exporters working with the diagram layout (SBGN and
+ * PPTX) do not read and deserialise the same json file for every request. The cache is bounded by the accumulated
+ * size of the json files and it is emptied when the database version changes.
+ * <p>
+ * The cached diagrams are shared, so they have to be used as read only objects.
+ */
+@Component
+public class DiagramCacheManager {
+
+    private final String diagramJsonFolder;
+    private final long maxSize;
+
+    private final LinkedHashMap<String, CachedDiagram> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private long size = 0L;
+    private String version;
+
+    private final Timer parseTimer;
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+
+    private GeneralService generalService;
+
+    @Autowired
+    public DiagramCacheManager(@Value("${diagram.json.folder}") String diagramJsonFolder,
+                               @Value("${diagram.cache.size:268435456}") Long maxSize,    // 256 MB of json
+                               MeterRegistry registry) {
+        this.diagramJsonFolder = diagramJsonFolder;
+        this.maxSize = maxSize;
+
+        this.parseTimer = Timer.builder("contentservice.diagram.parse").register(registry);
+        this.hits = Counter.builder("contentservice.cache.requests").tags("cache", "parsed-diagram", "result", "hit", "tier", "heap").register(registry);
+        this.misses = Counter.builder("contentservice.cache.requests").tags("cache", "parsed-diagram", "result", "miss", "tier", "none").register(registry);
+        this.evictions = Counter.builder("contentservice.cache.evictions").tags("cache", "parsed-diagram", "tier", "heap").register(registry);
+        Gauge.builder("contentservice.cache.size", this, c -> c.size).tags("cache", "parsed-diagram", "tier", "heap").baseUnit("bytes").register(registry);
+    }
+
+    /**
+     * @param stId the stable identifier of a pathway with diagram
+     * @return the parsed diagram
+     */
+    public Diagram getDiagram(String stId) throws IOException, DeserializationException {
+        String current = String.valueOf(generalService.getDBInfo().getVersion());
+        synchronized (cache) {
+            if (!current.equals(version)) {
+                cache.clear();
+                size = 0L;
+                version = current;
+            }
+            CachedDiagram cached = cache.get(stId);
+            if (cached != null) {
+                hits.increment();
+                return cached.diagram;
+            }
+        }
+        misses.increment();
+
+        File file = new File(diagramJsonFolder + "/" + stId + ".json");
+        long start = System.nanoTime();
+        Diagram diagram = DiagramFactory.getDiagram(read(file));
+        parseTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+
+        long weight = file.length();
+        if (weight > maxSize) return diagram;
+        synchronized (cache) {
+            if (!current.equals(version)) return diagram;
+            CachedDiagram previous = cache.put(stId, new CachedDiagram(diagram, weight));
+            if (previous != null) size -= previous.weight;
+            size += weight;
+            Iterator<Map.Entry<String, CachedDiagram>> it = cache.entrySet().iterator();
+            while (size > maxSize && it.hasNext()) {
+                size -= it.next().getValue().weight;
+                it.remove();
+                evictions.increment();
+            }
+        }
+        return diagram;
+    }
+
+    // Diagram files can be big, so they are mapped instead of read through a stream
+    private String read(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return StandardCharsets.UTF_8.decode(buffer).toString();
+        }
+    }
+
+    private static class CachedDiagram {
+        private final Diagram diagram;
+        private final long weight;
+
+        CachedDiagram(Diagram diagram, long weight) {
+            this.diagram = diagram;
+            this.weight = weight;
+        }
+    }
+
+    @Autowired
+    public void setGeneralService(GeneralService generalService) {
+        this.generalService = generalService;
+    }
+}
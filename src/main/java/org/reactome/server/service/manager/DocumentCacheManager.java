@@ -0,0 +1,172 @@
+package org.reactome.server.service.manager;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.reactome.server.graph.domain.model.TopLevelPathway;
+import org.reactome.server.graph.service.GeneralService;
+import org.reactome.server.graph.service.TopLevelPathwayService;
+import org.reactome.server.service.utils.ContentCache;
+import org.reactome.server.tools.event.exporter.DocumentArgs;
+import org.reactome.server.tools.event.exporter.EventExporter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Keeps the PDF documents generated for events without analysis overlay (the vast majority of the requests), so they
+ * are generated once per release and then served from disk. Files are stored under
+ * [diagram.exporter.temp.folder]/[dbVersion]/report/pdf
+ * <p>
+ * Documents are generated lazily when first requested and, optionally, for the top level pathways on startup
+ * (report.cache.prewarm). They are written straight to the cache folder and served from there.
+ * <p>
+ * The server name is part of the documents (links) and of their key, so only the configured servers (report.servers)
+ * are accepted. Any other one (i.e. taken from an arbitrary Host header) is replaced by the first configured server,
+ * which is also the one used to pre-generate the documents.
+ */
+@Component
+public class DocumentCacheManager {
+
+    private static final Logger infoLogger = LoggerFactory.getLogger("infoLogger");
+    private static final Logger threadLogger = LoggerFactory.getLogger("threadLogger");
+
+    private final ContentCache pdfCache;
+    // Concurrent requests for the same document wait for the one being generated instead of generating it again
+    private final Map<String, CompletableFuture<File>> inProgress = new ConcurrentHashMap<>();
+
+    @Value("${report.cache.prewarm:false}")
+    private Boolean prewarm;
+    @Value("${report.cache.prewarm.species:9606}")
+    private String prewarmSpecies;
+    @Value("${report.servers:https://reactome.org}")
+    private String[] servers;
+
+    private GeneralService generalService;
+    private TopLevelPathwayService topLevelPathwayService;
+    private EventExporter eventExporter;
+
+    @Autowired
+    public DocumentCacheManager(@Value("${diagram.exporter.temp.folder}") String tempFolder,
+                                @Value("${report.cache.disk.size:4294967296}") Long diskSize,    // 4 GB
+                                MeterRegistry registry) {
+        this.pdfCache = new ContentCache("pdf", 0L, diskSize, () -> getFolder(tempFolder), registry);
+    }
+
+    /**
+     * @param requested the server name of the request (protocol and host)
+     * @return the given server name if it is one of the configured servers or the first configured one otherwise
+     */
+    public String getServerName(String requested) {
+        for (String server : servers) {
+            if (server.trim().equalsIgnoreCase(requested)) return server.trim();
+        }
+        return servers[0].trim();
+    }
+
+    /**
+     * @param serverName as provided by {@link #getServerName(String)}
+     * @return the key of the document for the given arguments (only the undecorated documents are cached)
+     */
+    public String getKey(String stId, int level, String diagramProfile, String serverName) {
+        return ContentCache.key(getDBVersion(), stId, level, diagramProfile.toLowerCase(), serverName);
+    }
+
+    /**
+     * @return the cached document for the given key or null if it has not been generated yet
+     */
+    public File getDocument(String key) {
+        return pdfCache.getFile(key);
+    }
+
+    /**
+     * Generates the document for the given arguments (no analysis overlay) into the cache. When the document is
+     * already being generated, it waits for it instead.
+     *
+     * @return the cached document
+     */
+    public File generateDocument(String key, DocumentArgs args) throws Exception {
+        CompletableFuture<File> future = new CompletableFuture<>();
+        CompletableFuture<File> running = inProgress.putIfAbsent(key, future);
+        if (running != null) {
+            try {
+                return running.get();
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+            }
+        }
+
+        try {
+            File document = pdfCache.put(key, os -> eventExporter.export(args, null, os));
+            if (document == null) throw new IOException("The generated document does not fit in the cache");
+            future.complete(document);
+            return document;
+        } catch (Exception e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inProgress.remove(key);
+        }
+    }
+
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void prewarm() {
+        if (!prewarm) return;
+        long start = System.currentTimeMillis();
+        int generated = 0;
+        String serverName = servers[0].trim();
+        Collection<TopLevelPathway> pathways = topLevelPathwayService.getTopLevelPathways(prewarmSpecies);
+        for (TopLevelPathway pathway : pathways) {
+            String key = getKey(pathway.getStId(), 1, "Modern", serverName);
+            if (getDocument(key) != null) continue;
+            DocumentArgs args = new DocumentArgs(pathway.getStId())
+                    .setServerName(serverName)
+                    .setDiagramProfile("Modern")
+                    .setSpecies(pathway.getSpecies().get(0).getDbId())
+                    .setMaxLevel(1);
+            try {
+                generateDocument(key, args);
+                generated++;
+            } catch (Exception e) {
+                threadLogger.warn("Could not pre-generate the PDF document for " + pathway.getStId(), e);
+            }
+        }
+        infoLogger.info("PDF documents cache pre-warmed with {} new documents in {}ms", generated, System.currentTimeMillis() - start);
+    }
+
+    private String getDBVersion() {
+        return String.valueOf(generalService.getDBInfo().getVersion());
+    }
+
+    private File getFolder(String tempFolder) {
+        if (!tempFolder.endsWith("/")) tempFolder += "/";
+        return new File(tempFolder + getDBVersion() + "/report/pdf");
+    }
+
+    @Autowired
+    public void setGeneralService(GeneralService generalService) {
+        this.generalService = generalService;
+    }
+
+    @Autowired
+    public void setTopLevelPathwayService(TopLevelPathwayService topLevelPathwayService) {
+        this.topLevelPathwayService = topLevelPathwayService;
+    }
+
+    @Autowired
+    public void setEventExporter(EventExporter eventExporter) {
+        this.eventExporter = eventExporter;
+    }
+}
@@ -0,0 +1,248 @@
+package org.reactome.server.service.manager;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.reactome.server.analysis.core.data.AnalysisData;
+import org.reactome.server.analysis.core.model.PathwayHierarchy;
+import org.reactome.server.analysis.core.model.PathwayNode;
+import org.reactome.server.analysis.core.model.SpeciesNode;
+import org.reactome.server.analysis.core.model.SpeciesNodeFactory;
+import org.reactome.server.graph.domain.model.Species;
+import org.reactome.server.graph.service.GeneralService;
+import org.reactome.server.graph.service.HierarchyService;
+import org.reactome.server.graph.service.SpeciesService;
+import org.reactome.server.graph.service.helper.PathwayBrowserNode;
+import org.reactome.server.service.config.CustomMessageConverter;
+import org.reactome.server.service.exception.NotFoundException;
+import org.reactome.server.service.model.graph.PathwayBrowserTree;
+import org.reactome.server.service.model.graph.SizedPathwayBrowserNode;
+import org.reactome.server.service.utils.CoalescingCache;
+import org.reactome.server.service.utils.PrecompressedResponseFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps the events hierarchy of every species (with and without reactions) as it is served without an analysis
+ * token: the flyweight tree (see {@link PathwayBrowserTree}), its JSON serialisation and the gzip compressed version of it. They only change
+ * per release, so they are built once (when the application starts or the first time they are requested) and the
+ * requests are served without querying the graph database.
+ * <p>
+ * The trees are shared by all the requests and they are never modified (analysis results are kept apart).
+ */
+@Component
+public class EventHierarchyManager {
+
+    private static final Logger infoLogger = LoggerFactory.getLogger("infoLogger");
+    private static final Logger errorLogger = LoggerFactory.getLogger("errorLogger");
+
+    @Value("${events.hierarchy.prewarm:true}")
+    private Boolean prewarm;
+
+    private final int cacheSize;
+    private final CoalescingCache<List<Object>, Hierarchy> cache;
+    private final Timer buildTimer;
+    private final MeterRegistry registry;
+
+    // Species as requested (name, taxonomy id or database identifier) to species, for the current version
+    private final Map<String, Species> speciesByAlias = new ConcurrentHashMap<>();
+    private volatile String speciesVersion;
+
+    // Bytes kept per species (one position per variant), reported as a gauge tagged with the species name
+    private final Map<String, AtomicLongArray> memory = new ConcurrentHashMap<>();
+
+    private GeneralService generalService;
+    private SpeciesService speciesService;
+    private HierarchyService hierarchyService;
+    private AnalysisData analysisData;
+    private CustomMessageConverter customMessageConverter;
+
+    @Autowired
+    public EventHierarchyManager(@Value("${events.hierarchy.cache.size:100}") Integer cacheSize, MeterRegistry registry) {
+        this.cacheSize = cacheSize;
+        this.cache = new CoalescingCache<>("events-hierarchy", cacheSize, registry);
+        this.buildTimer = Timer.builder("contentservice.hierarchy.build").register(registry);
+        this.registry = registry;
+    }
+
+    /**
+     * @param species      species name, taxonomy identifier or database identifier
+     * @param pathwaysOnly whether the reactions are excluded
+     * @return the events hierarchy for the given species
+     * @throws NotFoundException when the species does not exist or has no events
+     */
+    public Hierarchy getHierarchy(String species, boolean pathwaysOnly) {
+        String version = String.valueOf(generalService.getDBInfo().getVersion());
+        Species target = getSpecies(version, species);
+        if (target == null) throw new NotFoundException("No event hierarchy found for given species: " + species);
+        return cache.get(Arrays.asList(version, target.getDbId(), pathwaysOnly), () -> build(target, pathwaysOnly));
+    }
+
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void prewarm() {
+        if (!prewarm) return;
+        String version = String.valueOf(generalService.getDBInfo().getVersion());
+        // Main species only (the ones with curated or inferred pathways)
+        List<Species> main = speciesService.getSpecies();
+        // Two variants per species: prewarming more than fits in the cache would evict the first ones
+        int fit = cacheSize / 2;
+        if (main.size() > fit) {
+            errorLogger.warn("Only the events hierarchies of {} out of {} main species fit in the cache (events.hierarchy.cache.size={})", fit, main.size(), cacheSize);
+            main = main.subList(0, fit);
+        }
+        for (Species s : main) {
+            String alias = s.getDisplayName();
+            getSpecies(version, alias);
+            // The same species is usually requested by taxonomy or database identifier
+            if (s.getTaxId() != null) speciesByAlias.putIfAbsent(s.getTaxId(), s);
+            speciesByAlias.putIfAbsent(String.valueOf(s.getDbId()), s);
+            for (boolean pathwaysOnly : new boolean[]{true, false}) {
+                try {
+                    getHierarchy(alias, pathwaysOnly);
+                } catch (NotFoundException e) {
+                    // Nothing to keep for this species
+                } catch (RuntimeException e) {
+                    errorLogger.error("Could not build the events hierarchy for " + alias, e);
+                }
+            }
+        }
+    }
+
+    private Species getSpecies(String version, String alias) {
+        if (!version.equals(speciesVersion)) {
+            synchronized (speciesByAlias) {
+                if (!version.equals(speciesVersion)) {
+                    speciesByAlias.clear();
+                    memory.values().forEach(m -> {
+                        m.set(0, 0L);
+                        m.set(1, 0L);
+                    });
+                    speciesVersion = version;
+                }
+            }
+        }
+        return speciesByAlias.computeIfAbsent(alias, a -> speciesService.getSpecies(a));
+    }
+
+    private Hierarchy build(Species species, boolean pathwaysOnly) {
+        long start = System.nanoTime();
+        SpeciesNode speciesNode = SpeciesNodeFactory.getSpeciesNode(species);
+        PathwayHierarchy hierarchy = analysisData.getPathwayHierarchies().get(speciesNode);
+
+        Collection<? extends PathwayBrowserNode> nodes = null;
+        Map<String, PathwayNode> stIdToNode = new HashMap<>();
+        if (pathwaysOnly) {
+            if (hierarchy != null) {
+                nodes = hierarchy.getChildren().stream()
+                        .map(SizedPathwayBrowserNode::new)
+                        .collect(Collectors.toCollection(TreeSet::new));
+            }
+        } else {
+            nodes = hierarchyService.getEventHierarchy(species.getDisplayName(), false);
+            if (hierarchy != null) hierarchy.getChildren().forEach(child -> addNodes(stIdToNode, child));
+        }
+        if (nodes == null || nodes.isEmpty()) {
+            throw new NotFoundException("No event hierarchy found for given species: " + species.getDisplayName());
+        }
+        PathwayBrowserTree tree = new PathwayBrowserTree(nodes, stIdToNode, customMessageConverter.getObjectMapper());
+
+        byte[] json, gzip;
+        try {
+            json = customMessageConverter.getDefaultObjectWriter().writeValueAsBytes(tree);
+            gzip = PrecompressedResponseFilter.gzip(json);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        long elapsed = System.nanoTime() - start;
+        buildTimer.record(elapsed, TimeUnit.NANOSECONDS);
+        memory.computeIfAbsent(species.getDisplayName(), this::registerMemoryGauge).set(pathwaysOnly ? 1 : 0, json.length + gzip.length);
+        infoLogger.info("Events hierarchy for {} (pathwaysOnly={}) built in {}ms: {} nodes, {} bytes ({} gzip)",
+                species.getDisplayName(), pathwaysOnly, TimeUnit.NANOSECONDS.toMillis(elapsed), tree.size(), json.length, gzip.length);
+        return new Hierarchy(tree, json, gzip);
+    }
+
+    private AtomicLongArray registerMemoryGauge(String speciesName) {
+        AtomicLongArray rtn = new AtomicLongArray(2);
+        Gauge.builder("contentservice.hierarchy.memory", rtn, m -> m.get(0) + m.get(1))
+                .tag("species", speciesName)
+                .baseUnit("bytes")
+                .description("Serialised events hierarchy kept for the species (JSON and gzip, both variants)")
+                .register(registry);
+        return rtn;
+    }
+
+    private static void addNodes(Map<String, PathwayNode> map, PathwayNode root) {
+        Deque<PathwayNode> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            PathwayNode node = stack.pop();
+            map.put(node.getStId(), node);
+            node.getChildren().forEach(stack::push);
+        }
+    }
+
+    public static class Hierarchy {
+        private final PathwayBrowserTree tree;
+        private final byte[] json;
+        private final byte[] gzip;
+
+        Hierarchy(PathwayBrowserTree tree, byte[] json, byte[] gzip) {
+            this.tree = tree;
+            this.json = json;
+            this.gzip = gzip;
+        }
+
+        public PathwayBrowserTree getTree() {
+            return tree;
+        }
+
+        public byte[] getJson() {
+            return json;
+        }
+
+        public byte[] getGzip() {
+            return gzip;
+        }
+    }
+
+    @Autowired
+    public void setGeneralService(GeneralService generalService) {
+        this.generalService = generalService;
+    }
+
+    @Autowired
+    public void setSpeciesService(SpeciesService speciesService) {
+        this.speciesService = speciesService;
+    }
+
+    @Autowired
+    public void setHierarchyService(HierarchyService hierarchyService) {
+        this.hierarchyService = hierarchyService;
+    }
+
+    @Autowired
+    public void setAnalysisData(AnalysisData analysisData) {
+        this.analysisData = analysisData;
+    }
+
+    @Autowired
+    public void setCustomMessageConverter(CustomMessageConverter customMessageConverter) {
+        this.customMessageConverter = customMessageConverter;
+    }
+}
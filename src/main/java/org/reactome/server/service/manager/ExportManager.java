@@ -1,19 +1,25 @@
 package org.reactome.server.service.manager;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.apache.commons.io.FileUtils;
-import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.gk.persistence.MySQLAdaptor;
+import org.reactome.sbml.rel.SbmlConverterForRel;
 import org.reactome.server.graph.domain.model.DatabaseObject;
 import org.reactome.server.graph.domain.model.Event;
 import org.reactome.server.graph.domain.model.Pathway;
 import org.reactome.server.graph.domain.model.ReactionLikeEvent;
 import org.reactome.server.graph.domain.result.DiagramResult;
+import org.reactome.server.graph.service.AdvancedDatabaseObjectService;
 import org.reactome.server.graph.service.DatabaseObjectService;
 import org.reactome.server.graph.service.DiagramService;
 import org.reactome.server.graph.service.GeneralService;
 import org.reactome.server.service.controller.exporter.PptxExporterController;
 import org.reactome.server.service.exception.MissingSBXXException;
-import org.reactome.server.tools.diagram.data.DiagramFactory;
+import org.reactome.server.service.exception.ServiceUnavailableException;
+import org.reactome.server.service.utils.BoundedAsyncExecutor;
 import org.reactome.server.tools.diagram.data.exception.DeserializationException;
 import org.reactome.server.tools.diagram.data.layout.Diagram;
 import org.reactome.server.tools.diagram.exporter.common.Decorator;
@@ -21,20 +27,36 @@ import org.reactome.server.tools.diagram.exporter.common.profiles.factory.Diagra
 import org.reactome.server.tools.diagram.exporter.common.profiles.factory.DiagramJsonNotFoundException;
 import org.reactome.server.tools.diagram.exporter.common.profiles.factory.DiagramProfileException;
 import org.reactome.server.tools.diagram.exporter.common.profiles.service.DiagramExporterService;
+import org.reactome.server.tools.diagram.exporter.sbgn.SbgnConverter;
 import org.reactome.server.tools.reaction.exporter.ReactionExporter;
 import org.sbgn.SbgnUtil;
 import org.sbgn.bindings.Sbgn;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
 import javax.servlet.http.HttpServletResponse;
 import javax.xml.bind.JAXBException;
 import java.io.*;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
 import java.nio.charset.Charset;
-import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * @author Guilherme S Viteri (gviteri@ebi.ac.uk)
@@ -46,29 +68,54 @@ public class ExportManager {
     private static final Logger infoLogger = LoggerFactory.getLogger("infoLogger");
     private static final Logger errorLogger = LoggerFactory.getLogger("errorLogger");
 
+    private static final String PPTX_TEMP_FOLDER = "tmp";
+
     @Value("${diagram.json.folder}")
     private String diagramJsonFolder;
 
     @Value("${diagram.exporter.temp.folder}")
     private String diagramExporterTempFolder;
 
+    @Value("${pptx.temp.ttl:3600000}")
+    private Long temporaryTtl;
+
+    @Value("${sbml.cache.clear.interval:50}")
+    private Integer cacheClearInterval;
+
+    @Value("${sbml.cache.clear.heap:0.75}")
+    private Double cacheClearHeapRatio;
+
     private DiagramExporterService diagramExporterService = new DiagramExporterService();
     private GeneralService generalService;
     private DatabaseObjectService databaseObjectService;
+    private AdvancedDatabaseObjectService advancedDatabaseObjectService;
     private DiagramService diagramService;
     private ReactionExporter reactionExporter;
+    private DiagramCacheManager diagramCacheManager;
+    private BoundedAsyncExecutor sbxxExecutor;
+
+    // For the time being use the relational database to export layout information for SBML
+    // This should be updated to use JSON and Neo4j in the future
+    private MySQLAdaptor mysqlDba;
+    // The relational database adaptor is shared, so SBML conversions are run one at a time
+    private final Object sbmlConversionLock = new Object();
+    private int conversionsSinceCacheClear = 0;
+    private long collectionsAtLastCheck = 0;
+    private Counter intervalCacheClears;
+    private Counter heapCacheClears;
+
+    private Counter temporaryOrphans;
+    private Counter failedTemporaryDeletes;
+    private final AtomicLong temporaryFiles = new AtomicLong();
+    private final AtomicLong temporaryBytes = new AtomicLong();
+
+    // Conversions in progress, so concurrent requests for the same file wait for the same conversion
+    private final Map<String, CompletableFuture<File>> conversions = new ConcurrentHashMap<>();
 
     //The reaction will be layed out from the graph database only when object is an instance of 'ReactionLikeEvent'.
     //In any other case, an existing diagram json will be retrieved and converted to PPTX with the original requirements.
     public File getDiagramPPTX(String stId, String colorProfile, Decorator decorator, HttpServletResponse response) throws DiagramJsonNotFoundException, DiagramJsonDeserializationException, DiagramProfileException {
-        if (!diagramExporterTempFolder.endsWith("/")) diagramExporterTempFolder += "/";
-
-        File outputFolder = new File(diagramExporterTempFolder + generalService.getDBInfo().getVersion() + "/pptx/" + colorProfile.toLowerCase());
-        if (!outputFolder.exists()) {
-            infoLogger.debug("Creating the directory tree for storing pptx files");
-            if (!outputFolder.mkdirs())
-                infoLogger.error("Could not create the folder for the given DBVersion and profile");
-        }
+        File outputFolder = getPPTXFolder(colorProfile.toLowerCase());
 
         String fileName = stId + PptxExporterController.PPT_FILE_EXTENSION;
         File pptxFile = new File(outputFolder.getAbsolutePath() + "/" + fileName);
@@ -83,7 +130,17 @@ public class ExportManager {
             return pptxFile;
         } else {
             infoLogger.debug("Export Diagram {} based on StableId {}", pptxFile.getName(), stId);
-            File newFile = diagramExporterService.exportToPPTX(stId, diagramJsonFolder, colorProfile, outputFolder.getPath(), decorator);
+            File targetFolder = decorator.isDecorated() ? createTemporaryPPTXFolder() : outputFolder;
+            File newFile = null;
+            if (!decorator.isDecorated()) {
+                // The parsed diagram is shared, so it is only used when it is not going to be decorated
+                try {
+                    newFile = diagramExporterService.exportToPPTX(stId, diagramCacheManager.getDiagram(stId), colorProfile, targetFolder.getPath(), decorator);
+                } catch (IOException | DeserializationException e) {
+                    // The exporter below reports the problem with the diagram file
+                }
+            }
+            if (newFile == null) newFile = diagramExporterService.exportToPPTX(stId, diagramJsonFolder, colorProfile, targetFolder.getPath(), decorator);
             response.setContentType("application/vnd.openxmlformats-officedocument.presentationml.presentation");
             response.setHeader("Content-Disposition", "attachment; filename=\"" + pptxFileName + "\"");
             return newFile;
@@ -91,14 +148,7 @@ public class ExportManager {
     }
 
     public File getReactionPPTX(ReactionLikeEvent rle, String colorProfile, Decorator decorator, HttpServletResponse response) throws DiagramJsonDeserializationException, DiagramProfileException {
-        if (!diagramExporterTempFolder.endsWith("/")) diagramExporterTempFolder += "/";
-
-        File outputFolder = new File(diagramExporterTempFolder + generalService.getDBInfo().getVersion() + "/pptx/" + colorProfile.toLowerCase());
-        if (!outputFolder.exists()) {
-            infoLogger.debug("Creating the directory tree for storing pptx files");
-            if (!outputFolder.mkdirs())
-                infoLogger.error("Could not create the folder for the given DBVersion and profile");
-        }
+        File outputFolder = getPPTXFolder(colorProfile.toLowerCase());
 
         String stId = rle.getStId();
         String fileName = stId + PptxExporterController.PPT_FILE_EXTENSION;
@@ -115,13 +165,73 @@ public class ExportManager {
         } else {
             infoLogger.debug("Export Diagram {} based on StableId {}", pptxFile.getName(), stId);
             Diagram diagram = reactionExporter.getReactionDiagram(reactionExporter.getReactionLayout(rle));
-            File newFile = diagramExporterService.exportToPPTX(stId, diagram, colorProfile, outputFolder.getPath(), decorator);
+            File targetFolder = decorator.isDecorated() ? createTemporaryPPTXFolder() : outputFolder;
+            File newFile = diagramExporterService.exportToPPTX(stId, diagram, colorProfile, targetFolder.getPath(), decorator);
             response.setContentType("application/vnd.openxmlformats-officedocument.presentationml.presentation");
             response.setHeader("Content-Disposition", "attachment; filename=\"" + pptxFileName + "\"");
             return newFile;
         }
     }
 
+    /**
+     * Decorated exports are only sent once, so each of them is written in its own temporary folder (not to collide
+     * with the undecorated version of the same diagram) and removed straight after being sent
+     *
+     * @param pptx the decorated file previously generated
+     */
+    public void deleteTemporaryPPTX(File pptx) {
+        File folder = pptx.getParentFile();
+        if (!PPTX_TEMP_FOLDER.equals(folder.getParentFile().getName())) return; //Not a temporary export
+        if (!FileUtils.deleteQuietly(folder)) {
+            failedTemporaryDeletes.increment();
+            errorLogger.error("Could not delete the temporary folder {}", folder.getPath());
+        }
+    }
+
+    /**
+     * Removes the temporary PPTX files left behind (i.e. the server was stopped while sending them) and updates the
+     * temporary folder metrics
+     */
+    @Scheduled(initialDelayString = "${pptx.temp.sweep:600000}", fixedDelayString = "${pptx.temp.sweep:600000}")
+    public void cleanTemporaryPPTX() {
+        File[] folders = getPPTXFolder(PPTX_TEMP_FOLDER).listFiles(File::isDirectory);
+        if (folders == null) return;
+        long limit = System.currentTimeMillis() - temporaryTtl;
+        long files = 0L, bytes = 0L, orphans = 0L;
+        for (File folder : folders) {
+            if (folder.lastModified() < limit) {
+                if (FileUtils.deleteQuietly(folder)) orphans++;
+                else failedTemporaryDeletes.increment();
+            } else {
+                Collection<File> content = FileUtils.listFiles(folder, null, false);
+                files += content.size();
+                for (File file : content) bytes += file.length();
+            }
+        }
+        temporaryOrphans.increment(orphans);
+        temporaryFiles.set(files);
+        temporaryBytes.set(bytes);
+        if (orphans > 0) infoLogger.info("{} orphan temporary PPTX exports removed", orphans);
+    }
+
+    private File getPPTXFolder(String name) {
+        if (!diagramExporterTempFolder.endsWith("/")) diagramExporterTempFolder += "/";
+
+        File outputFolder = new File(diagramExporterTempFolder + generalService.getDBInfo().getVersion() + "/pptx/" + name);
+        if (!outputFolder.exists()) {
+            infoLogger.debug("Creating the directory tree for storing pptx files");
+            if (!outputFolder.mkdirs() && !outputFolder.exists())
+                infoLogger.error("Could not create the folder for the given DBVersion and profile");
+        }
+        return outputFolder;
+    }
+
+    private File createTemporaryPPTXFolder() {
+        File folder = new File(getPPTXFolder(PPTX_TEMP_FOLDER), UUID.randomUUID().toString());
+        if (!folder.mkdirs()) infoLogger.error("Could not create the temporary folder {}", folder.getPath());
+        return folder;
+    }
+
     /**
      * Query the graph database in order to the get the display name that will be used to in the file name.
      * In an unlikely case of empty display name this method will return the stable identifier.
@@ -161,56 +271,184 @@ public class ExportManager {
         throw new MissingSBXXException(String.format("'%s' file has not been previously generated for '%s'", fileName, event.getStId()));
     }
 
-    public InputStream saveSBML(String sbml, String sbmlFileName) throws FileNotFoundException {
-        File outputFolder = new File(diagramExporterTempFolder + generalService.getDBInfo().getVersion() + "/sbml");
-        if (!outputFolder.exists()) {
-            infoLogger.debug("Creating the directory tree for storing SBML files");
-            if (!outputFolder.mkdirs())
-                infoLogger.error("Could not create the folder for the given DBVersion");
+    /**
+     * Runs the conversion for the given file in the SBML/SBGN executor. When the same file is already being
+     * converted, no new conversion is queued and the future of the ongoing one is returned instead.
+     *
+     * @param fileName   the name of the file to be generated (used to identify the conversion)
+     * @param conversion generates and saves the file
+     * @return the future generated file
+     * @throws ServiceUnavailableException when there are too many conversions waiting
+     */
+    public CompletableFuture<File> getSBXXFile(String fileName, Callable<File> conversion) {
+        CompletableFuture<File> future = new CompletableFuture<>();
+        CompletableFuture<File> running = conversions.putIfAbsent(fileName, future);
+        if (running != null) {
+            infoLogger.debug("Waiting for the ongoing conversion of {}", fileName);
+            return running;
+        }
+        try {
+            sbxxExecutor.execute(conversion).whenComplete((file, ex) -> {
+                conversions.remove(fileName, future);
+                if (ex == null) future.complete(file);
+                else future.completeExceptionally(ex);
+            });
+        } catch (ServiceUnavailableException e) {
+            conversions.remove(fileName, future);
+            throw e;
         }
+        return future;
+    }
 
-        File file = new File(outputFolder.getAbsolutePath() + "/" + sbmlFileName);
-        if (!file.exists()) {
+    /**
+     * Same as {@link #getSBXXFile} but the conversion runs in the calling thread (i.e. a worker of the batch export)
+     * instead of the bounded executor of the requests. Requests for the same file wait for it and vice versa.
+     *
+     * @param fileName   the name of the file to be generated (used to identify the conversion)
+     * @param conversion generates and saves the file
+     * @return the generated file
+     */
+    public File convertSBXXFile(String fileName, Callable<File> conversion) throws Exception {
+        CompletableFuture<File> future = new CompletableFuture<>();
+        CompletableFuture<File> running = conversions.putIfAbsent(fileName, future);
+        if (running != null) {
             try {
-                FileUtils.writeStringToFile(file, sbml, Charset.defaultCharset());
-            } catch (IOException e) {
-                errorLogger.error(e.getMessage());
+                return running.get();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof Exception) throw (Exception) e.getCause();
+                throw e;
             }
-        } else {
-            errorLogger.error("Trying to write a SBML file that already exists");
         }
-        return new FileInputStream(file);
+        try {
+            File file = conversion.call();
+            conversions.remove(fileName, future);
+            future.complete(file);
+            return file;
+        } catch (Exception | LinkageError e) {
+            conversions.remove(fileName, future);
+            future.completeExceptionally(e);
+            throw e;
+        }
     }
 
-    public InputStream saveSBGN(Sbgn sbgn, String sgbnFileName) throws FileNotFoundException {
-        File outputFolder = new File(diagramExporterTempFolder + generalService.getDBInfo().getVersion() + "/sbgn");
-        if (!outputFolder.exists()) {
-            infoLogger.debug("Creating the directory tree for storing SBGN files");
-            if (!outputFolder.mkdirs())
-                infoLogger.error("Could not create the folder for the given DBVersion");
+    /**
+     * Converts the given event to SBGN and stores the result in the SBGN folder of the current release
+     *
+     * @return the generated file
+     */
+    public File generateSBGN(Event event, String fileName) throws IOException, JAXBException {
+        SbgnConverter converter = new SbgnConverter(getDiagram(event));
+        infoLogger.info("Exporting the event {} to SBGN", event.getStId());
+        return saveSBGN(converter.getSbgn(), fileName);
+    }
+
+    /**
+     * Converts the given event to SBML and stores the result in the SBML folder of the current release
+     *
+     * @return the generated file
+     */
+    public File generateSBML(Event event, String fileName) throws IOException {
+        String content;
+        synchronized (sbmlConversionLock) {
+            //SbmlConverter converter = new SbmlConverter(event, generalService.getDBInfo().getVersion(), advancedDatabaseObjectService);
+            SbmlConverterForRel converter = new SbmlConverterForRel(event.getStId(),
+                    generalService.getDBInfo().getVersion(),
+                    advancedDatabaseObjectService);
+            converter.setDBA(this.mysqlDba);
+            converter.convert();
+            content = converter.toString();
+            clearCacheIfNeeded();
         }
+        infoLogger.info("Exporting the event {} to SBML", event.getStId());
+        return saveSBML(content, fileName);
+    }
 
-        File file = new File(outputFolder.getAbsolutePath() + "/" + sgbnFileName);
-        if (!file.exists()) {
-            try {
-                SbgnUtil.writeToFile(sbgn, file);
-            } catch (JAXBException e) {
-                errorLogger.error(e.getMessage());
-            }
-        } else {
-            errorLogger.error("Trying to write a SBGN file that already exists");
+    /**
+     * The SBML conversion loads a big number of objects through the graph core services and the converter does not
+     * allow scoping them apart, so they can only be released by clearing the graph core cache, which is global: every
+     * other concurrent request cold-starts afterwards. That is why it is only cleared once every
+     * [sbml.cache.clear.interval] conversions or when a garbage collection leaves the heap above [sbml.cache.clear.heap]
+     */
+    private void clearCacheIfNeeded() {
+        conversionsSinceCacheClear++;
+        // The usage right after a conversion includes the garbage not collected yet, so only the usage left by the
+        // garbage collections since the previous check is taken into account
+        long collections = getCollectionCount();
+        double heapUsage = getHeapUsageAfterCollection();
+        boolean heap = collections > collectionsAtLastCheck && heapUsage > cacheClearHeapRatio;
+        collectionsAtLastCheck = collections;
+        if (heap || conversionsSinceCacheClear >= cacheClearInterval) {
+            generalService.clearCache();
+            (heap ? heapCacheClears : intervalCacheClears).increment();
+            infoLogger.info("Graph cache cleared after {} SBML conversions (heap usage after the last collection {}%)", conversionsSinceCacheClear, Math.round(heapUsage * 100));
+            conversionsSinceCacheClear = 0;
         }
-        return new FileInputStream(file);
+    }
+
+    private static long getCollectionCount() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .mapToLong(GarbageCollectorMXBean::getCollectionCount)
+                .filter(count -> count > 0)
+                .sum();
+    }
+
+    /**
+     * @return the highest usage ratio of the heap pools after their last garbage collection (the pools are only read)
+     */
+    private static double getHeapUsageAfterCollection() {
+        return ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(pool -> pool.getType() == MemoryType.HEAP)
+                .map(MemoryPoolMXBean::getCollectionUsage)
+                .filter(usage -> usage != null && usage.getMax() > 0)
+                .mapToDouble(usage -> (double) usage.getUsed() / usage.getMax())
+                .max().orElse(0);
+    }
+
+    public File saveSBML(String sbml, String sbmlFileName) throws IOException {
+        File file = new File(getSBXXFolder("sbml"), sbmlFileName);
+        File tmp = File.createTempFile(sbmlFileName, ".tmp", file.getParentFile());
+        try {
+            FileUtils.writeStringToFile(tmp, sbml, Charset.defaultCharset());
+            moveAtomically(tmp, file);
+        } finally {
+            if (tmp.exists() && !tmp.delete()) errorLogger.error("Could not delete the temporary file {}", tmp.getPath());
+        }
+        return file;
+    }
+
+    public File saveSBGN(Sbgn sbgn, String sgbnFileName) throws IOException, JAXBException {
+        File file = new File(getSBXXFolder("sbgn"), sgbnFileName);
+        File tmp = File.createTempFile(sgbnFileName, ".tmp", file.getParentFile());
+        try {
+            SbgnUtil.writeToFile(sbgn, tmp);
+            moveAtomically(tmp, file);
+        } finally {
+            if (tmp.exists() && !tmp.delete()) errorLogger.error("Could not delete the temporary file {}", tmp.getPath());
+        }
+        return file;
+    }
+
+    // Files are written to a temporary file first and then moved, so concurrent readers never see a partial file
+    private void moveAtomically(File source, File target) throws IOException {
+        Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private File getSBXXFolder(String format) {
+        if (!diagramExporterTempFolder.endsWith("/")) diagramExporterTempFolder += "/";
+        File outputFolder = new File(diagramExporterTempFolder + generalService.getDBInfo().getVersion() + "/" + format);
+        if (!outputFolder.exists()) {
+            infoLogger.debug("Creating the directory tree for storing {} files", format.toUpperCase());
+            if (!outputFolder.mkdirs() && !outputFolder.exists())
+                infoLogger.error("Could not create the folder for the given DBVersion");
+        }
+        return outputFolder;
     }
 
     public Diagram getDiagram(Event event) {
         if (event instanceof Pathway) {
             DiagramResult result = diagramService.getDiagramResult(event.getStId());
-            String diagram = result.getDiagramStId();
             try {
-                File aux = new File(diagramJsonFolder + "/" + diagram + ".json");
-                String json = IOUtils.toString(new FileInputStream(aux), StandardCharsets.UTF_8);
-                return DiagramFactory.getDiagram(json);
+                return diagramCacheManager.getDiagram(result.getDiagramStId());
             } catch (IOException | DeserializationException e) {
                 errorLogger.error(e.getMessage(), e);
                 return null;
@@ -231,13 +469,47 @@ public class ExportManager {
         this.databaseObjectService = databaseObjectService;
     }
 
+    @Autowired
+    public void setAdvancedDatabaseObjectService(AdvancedDatabaseObjectService advancedDatabaseObjectService) {
+        this.advancedDatabaseObjectService = advancedDatabaseObjectService;
+    }
+
+    @Autowired
+    public void setMeterRegistry(MeterRegistry registry) {
+        this.intervalCacheClears = Counter.builder("contentservice.graph.cache.clears").tags("source", "sbml", "trigger", "interval").register(registry);
+        this.heapCacheClears = Counter.builder("contentservice.graph.cache.clears").tags("source", "sbml", "trigger", "heap").register(registry);
+        this.temporaryOrphans = Counter.builder("contentservice.pptx.temp.orphans").register(registry);
+        this.failedTemporaryDeletes = Counter.builder("contentservice.pptx.temp.delete.failures").register(registry);
+        Gauge.builder("contentservice.pptx.temp.files", temporaryFiles, AtomicLong::get).register(registry);
+        Gauge.builder("contentservice.pptx.temp.size", temporaryBytes, AtomicLong::get).baseUnit("bytes").register(registry);
+    }
+
+    @Autowired
+    public void setMySQLDBA(MySQLAdaptor dba) {
+        this.mysqlDba = dba;
+        if (dba != null) {
+            infoLogger.info("Starting a dumb thread to keep MySQLAdaptor connected to avoid reconnection exception.");
+            dba.initDumbThreadForConnection(); // To keep the DBA running to avoid connection error
+        }
+    }
+
     @Autowired
     public void setDiagramService(DiagramService diagramService) {
         this.diagramService = diagramService;
     }
 
+    @Autowired
+    public void setDiagramCacheManager(DiagramCacheManager diagramCacheManager) {
+        this.diagramCacheManager = diagramCacheManager;
+    }
+
     @Autowired
     public void setReactionExporter(ReactionExporter reactionExporter) {
         this.reactionExporter = reactionExporter;
     }
+
+    @Autowired
+    public void setSbxxExecutor(@Qualifier("sbxxExecutor") BoundedAsyncExecutor sbxxExecutor) {
+        this.sbxxExecutor = sbxxExecutor;
+    }
 }
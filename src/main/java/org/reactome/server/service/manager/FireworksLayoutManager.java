@@ -0,0 +1,77 @@
+package org.reactome.server.service.manager;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.reactome.server.graph.domain.model.Species;
+import org.reactome.server.graph.service.GeneralService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Provides the dimensions of the species pathways overview layouts, so the cost of rendering them can be estimated
+ * before the rendering starts. Dimensions are read once per species and database version.
+ */
+@Component
+public class FireworksLayoutManager {
+
+    private static final Logger errorLogger = LoggerFactory.getLogger("errorLogger");
+
+    private final String fireworksJsonFolder;
+    private final Map<String, Long> areas = new ConcurrentHashMap<>();
+    private String version;
+
+    private GeneralService generalService;
+
+    @Autowired
+    public FireworksLayoutManager(@Value("${fireworks.json.folder}") String fireworksJsonFolder) {
+        this.fireworksJsonFolder = fireworksJsonFolder;
+    }
+
+    /**
+     * @param species the species of the pathways overview
+     * @return the area of the overview layout or Long.MAX_VALUE if it cannot be calculated
+     */
+    public long getArea(Species species) {
+        String current = String.valueOf(generalService.getDBInfo().getVersion());
+        synchronized (areas) {
+            if (!current.equals(version)) {
+                areas.clear();
+                version = current;
+            }
+        }
+        return areas.computeIfAbsent(species.getDisplayName().replace(" ", "_"), this::readArea);
+    }
+
+    private long readArea(String name) {
+        File file = new File(fireworksJsonFolder + "/" + name + ".json");
+        try {
+            JsonNode nodes = new ObjectMapper().readTree(file).path("nodes");
+            double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE, maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+            for (JsonNode node : nodes) {
+                double x = node.path("x").asDouble(), y = node.path("y").asDouble();
+                minX = Math.min(minX, x);
+                maxX = Math.max(maxX, x);
+                minY = Math.min(minY, y);
+                maxY = Math.max(maxY, y);
+            }
+            if (nodes.size() == 0) return Long.MAX_VALUE;
+            return (long) Math.ceil(maxX - minX) * (long) Math.ceil(maxY - minY);
+        } catch (IOException e) {
+            errorLogger.error("Could not read the pathways overview layout " + file.getPath(), e);
+            return Long.MAX_VALUE;
+        }
+    }
+
+    @Autowired
+    public void setGeneralService(GeneralService generalService) {
+        this.generalService = generalService;
+    }
+}
@@ -0,0 +1,293 @@
+package org.reactome.server.service.manager;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.reactome.server.graph.exception.CustomQueryException;
+import org.reactome.server.graph.service.AdvancedDatabaseObjectService;
+import org.reactome.server.graph.service.GeneralService;
+import org.reactome.server.graph.service.util.DatabaseObjectUtils;
+import org.reactome.server.service.exception.ServiceUnavailableException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps the stable identifier to database identifier translation of the current release in memory, so the code paths
+ * translating the identifiers for every request (i.e. selection and flagging in the PPTX export) do not query the
+ * graph database each time.
+ * <p>
+ * Stable identifiers following the "R-XXX-NNNN" pattern are packed into a long and stored in an open addressing map of
+ * primitives (about 16 bytes per entry at most). The rest, if any, are kept in a regular map. The dictionary is loaded
+ * when the application starts (or the first time it is needed) and reloaded when the database version changes. A load
+ * that fails is not kept, so it is retried the next time the dictionary is needed (the requests in between are
+ * answered with a {@link ServiceUnavailableException}).
+ * <p>
+ * Old stable identifiers are not kept in the dictionary (they are rarely used), so they are looked up on demand. Since
+ * every current stable identifier is in the dictionary, identifiers following the current pattern that are not found
+ * there are not looked up in the graph database.
+ */
+@Component
+public class IdentifierDictionaryManager {
+
+    private static final Logger infoLogger = LoggerFactory.getLogger("infoLogger");
+    private static final Logger errorLogger = LoggerFactory.getLogger("errorLogger");
+
+    private static final long RETRY_AFTER = 10L;
+    private static final Pattern CURRENT_STID = Pattern.compile("R-[A-Z]{3}-\\d+");
+
+    @Value("${identifier.dictionary.prewarm:true}")
+    private Boolean prewarm;
+
+    private volatile Dictionary dictionary;
+
+    private GeneralService generalService;
+    private AdvancedDatabaseObjectService ados;
+
+    private Timer loadTimer;
+    private Counter hits;
+    private Counter misses;
+    private Counter queries;
+
+    /**
+     * Transforms stable identifiers (and versioned stable identifiers) to database identifiers. It keeps database
+     * identifiers and ignores the stable identifiers that are not part of the current release
+     *
+     * @param identifiers a list of identifiers that can mix stable identifiers and database identifiers
+     * @return The provided 'identifiers' list with the stable identifiers transformed to database identifiers
+     */
+    public List<Long> getDatabaseIdentifiers(Collection<String> identifiers) {
+        Dictionary dictionary = getDictionary();
+        List<Long> rtn = new ArrayList<>(identifiers.size());
+        for (String identifier : identifiers) {
+            String id = DatabaseObjectUtils.getIdentifier(identifier);
+            if (DatabaseObjectUtils.isStId(id)) {
+                long dbId = dictionary.get(id);
+                if (dbId != Dictionary.NOT_FOUND) {
+                    rtn.add(dbId);
+                    hits.increment();
+                } else {
+                    misses.increment();
+                }
+            } else if (DatabaseObjectUtils.isDbId(id)) {
+                rtn.add(Long.valueOf(id));
+            }
+        }
+        return rtn;
+    }
+
+    /**
+     * Resolves identifiers of any kind (stable identifiers, versioned stable identifiers, database identifiers and old
+     * stable identifiers) to database identifiers. Current stable identifiers are translated with the dictionary and
+     * the rest (i.e. old stable identifiers) are looked up in the graph database, all of them in a single query.
+     *
+     * @param identifiers a list of identifiers that can mix any kind of identifier
+     * @return the database identifier of every given identifier found (identifiers not found are not included)
+     * @throws CustomQueryException when the old stable identifiers could not be looked up
+     */
+    public Map<String, Long> resolve(Collection<String> identifiers) throws CustomQueryException {
+        Dictionary dictionary = getDictionary();
+        Map<String, Long> rtn = new LinkedHashMap<>();
+        Map<String, List<String>> pending = new HashMap<>();
+        for (String identifier : identifiers) {
+            String id = DatabaseObjectUtils.getIdentifier(identifier);
+            if (DatabaseObjectUtils.isDbId(id)) {
+                rtn.put(identifier, Long.valueOf(id));
+                continue;
+            }
+            long dbId = dictionary.get(id);
+            if (dbId != Dictionary.NOT_FOUND) {
+                rtn.put(identifier, dbId);
+                hits.increment();
+            } else {
+                misses.increment();
+                if (!CURRENT_STID.matcher(id).matches()) pending.computeIfAbsent(id, i -> new ArrayList<>()).add(identifier);
+            }
+        }
+        if (!pending.isEmpty()) {
+            findByOldStIds(pending.keySet()).forEach((oldStId, dbId) -> pending.get(oldStId).forEach(identifier -> rtn.put(identifier, dbId)));
+        }
+        return rtn;
+    }
+
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void prewarm() {
+        if (!prewarm) return;
+        try {
+            getDictionary();
+        } catch (ServiceUnavailableException e) {
+            //Already logged, it will be loaded again when needed
+        }
+    }
+
+    private Dictionary getDictionary() {
+        String version = String.valueOf(generalService.getDBInfo().getVersion());
+        Dictionary current = dictionary;
+        if (current != null && current.version.equals(version)) return current;
+        synchronized (this) {
+            current = dictionary;
+            if (current == null || !current.version.equals(version)) {
+                current = load(version);
+                dictionary = current;
+            }
+        }
+        return current;
+    }
+
+    private Map<String, Long> findByOldStIds(Collection<String> oldStIds) throws CustomQueryException {
+        //language=cypher
+        String query = "" +
+                "MATCH (d:DatabaseObject) " +
+                "WHERE d.oldStId IN $oldStIds " +
+                "RETURN d.oldStId + ' ' + toString(d.dbId) ";
+        Map<String, Long> rtn = new HashMap<>();
+        queries.increment();
+        for (String entry : ados.getCustomQueryResults(String.class, query, Map.of("oldStIds", new ArrayList<>(oldStIds)))) {
+            int i = entry.indexOf(' ');
+            rtn.put(entry.substring(0, i), Long.parseLong(entry.substring(i + 1)));
+        }
+        return rtn;
+    }
+
+    private Dictionary load(String version) throws ServiceUnavailableException {
+        //language=cypher
+        String query = "" +
+                "MATCH (d:DatabaseObject) " +
+                "WHERE d.stId IS NOT NULL " +
+                "RETURN d.stId + ' ' + toString(d.dbId) ";
+        long start = System.nanoTime();
+        Collection<String> entries;
+        try {
+            entries = ados.getCustomQueryResults(String.class, query, Map.of());
+        } catch (CustomQueryException e) {
+            errorLogger.error("Could not load the identifiers dictionary for version " + version, e);
+            throw new ServiceUnavailableException("The identifiers could not be resolved. Please try again later", RETRY_AFTER);
+        }
+        Dictionary rtn = new Dictionary(version, entries.size());
+        for (String entry : entries) {
+            int i = entry.indexOf(' ');
+            rtn.put(entry.substring(0, i), Long.parseLong(entry.substring(i + 1)));
+        }
+        long elapsed = System.nanoTime() - start;
+        loadTimer.record(elapsed, TimeUnit.NANOSECONDS);
+        infoLogger.info("Identifiers dictionary for version {} loaded: {} entries ({} bytes) in {}ms", version, rtn.size(), rtn.getMemory(), TimeUnit.NANOSECONDS.toMillis(elapsed));
+        return rtn;
+    }
+
+    private static final class Dictionary {
+        private static final long NOT_FOUND = -1L;
+        private static final long EMPTY = 0L;
+
+        private final String version;
+        private final long[] keys;
+        private final long[] values;
+        private final int mask;
+        private final Map<String, Long> others = new HashMap<>();
+        private int size = 0;
+
+        Dictionary(String version, int expected) {
+            this.version = version;
+            int capacity = Integer.highestOneBit(Math.max(expected, 8) * 2 - 1) << 1; // load factor below 0.5
+            this.keys = new long[capacity];
+            this.values = new long[capacity];
+            this.mask = capacity - 1;
+        }
+
+        void put(String stId, long dbId) {
+            long key = encode(stId);
+            if (key == EMPTY) {
+                if (others.put(stId, dbId) == null) size++;
+                return;
+            }
+            int i = index(key);
+            while (keys[i] != EMPTY && keys[i] != key) i = (i + 1) & mask;
+            if (keys[i] == EMPTY) size++;
+            keys[i] = key;
+            values[i] = dbId;
+        }
+
+        long get(String stId) {
+            long key = encode(stId);
+            if (key == EMPTY) return others.getOrDefault(stId, NOT_FOUND);
+            int i = index(key);
+            while (keys[i] != EMPTY) {
+                if (keys[i] == key) return values[i];
+                i = (i + 1) & mask;
+            }
+            return NOT_FOUND;
+        }
+
+        int size() {
+            return size;
+        }
+
+        /**
+         * @return approximated number of bytes used by the dictionary
+         */
+        long getMemory() {
+            return (keys.length + values.length) * 8L + others.size() * 96L;
+        }
+
+        private int index(long key) {
+            key ^= key >>> 33;
+            key *= 0xff51afd7ed558ccdL;
+            key ^= key >>> 33;
+            return (int) key & mask;
+        }
+
+        /**
+         * Packs "R-XXX-NNNN" in a long: 15 bits for the three letters (never 0) and 48 bits for the number
+         *
+         * @return the packed identifier or EMPTY if the identifier does not follow the pattern
+         */
+        private static long encode(String stId) {
+            int length = stId.length();
+            if (length < 7 || length > 20 || stId.charAt(0) != 'R' || stId.charAt(1) != '-' || stId.charAt(5) != '-') return EMPTY;
+            long key = 0L;
+            for (int i = 2; i < 5; i++) {
+                char c = stId.charAt(i);
+                if (c < 'A' || c > 'Z') return EMPTY;
+                key = (key << 5) | (c - 'A' + 1);
+            }
+            long number = 0L;
+            for (int i = 6; i < length; i++) {
+                char c = stId.charAt(i);
+                if (c < '0' || c > '9') return EMPTY;
+                number = number * 10 + (c - '0');
+            }
+            if (number >= (1L << 48) || stId.charAt(6) == '0') return EMPTY; // one key per identifier
+            return (key << 48) | number;
+        }
+    }
+
+    @Autowired
+    public void setMeterRegistry(MeterRegistry registry) {
+        this.loadTimer = Timer.builder("contentservice.identifiers.load").register(registry);
+        this.hits = Counter.builder("contentservice.identifiers.lookups").tag("result", "hit").register(registry);
+        this.misses = Counter.builder("contentservice.identifiers.lookups").tag("result", "miss").register(registry);
+        this.queries = Counter.builder("contentservice.identifiers.queries").description("Old stable identifiers lookups in the graph database").register(registry);
+        Gauge.builder("contentservice.identifiers.size", this, m -> m.dictionary == null ? 0 : m.dictionary.size()).register(registry);
+        Gauge.builder("contentservice.identifiers.memory", this, m -> m.dictionary == null ? 0 : m.dictionary.getMemory()).baseUnit("bytes").register(registry);
+    }
+
+    @Autowired
+    public void setGeneralService(GeneralService generalService) {
+        this.generalService = generalService;
+    }
+
+    @Autowired
+    public void setAdos(AdvancedDatabaseObjectService ados) {
+        this.ados = ados;
+    }
+}
@@ -0,0 +1,73 @@
+package org.reactome.server.service.manager;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.reactome.server.graph.service.GeneralService;
+import org.reactome.server.service.utils.ContentCache;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+
+/**
+ * Keeps the images previously rendered by the exporters, so repeated requests with the same arguments are served
+ * from memory or disk instead of rasterising the diagram again. Files are stored under
+ * [diagram.exporter.temp.folder]/[dbVersion]/raster/[cacheName] so a new release never serves stale images.
+ * <p>
+ * Diagram and fireworks images with an analysis overlay are kept apart, so the analysis tokens (one per user) do not
+ * evict the images without overlay, and they expire in line with the analysis tokens.
+ */
+@Component
+public class RasterCacheManager {
+
+    private final ContentCache diagramCache;
+    private final ContentCache diagramAnalysisCache;
+    private final ContentCache fireworksCache;
+    private final ContentCache fireworksAnalysisCache;
+
+    private GeneralService generalService;
+
+    @Autowired
+    public RasterCacheManager(@Value("${diagram.exporter.temp.folder}") String tempFolder,
+                              @Value("${raster.cache.heap.size:67108864}") Long heapSize,      // 64 MB
+                              @Value("${raster.cache.disk.size:2147483648}") Long diskSize,    // 2 GB
+                              @Value("${raster.cache.token.heap.size:16777216}") Long tokenHeapSize,     // 16 MB
+                              @Value("${raster.cache.token.disk.size:536870912}") Long tokenDiskSize,    // 512 MB
+                              @Value("${raster.cache.token.ttl:604800000}") Long tokenTtl,               // 7 days
+                              MeterRegistry registry) {
+        this.diagramCache = new ContentCache("diagram", heapSize, diskSize, () -> getFolder(tempFolder, "diagram"), registry);
+        this.diagramAnalysisCache = new ContentCache("diagram-analysis", tokenHeapSize, tokenDiskSize, tokenTtl, () -> getFolder(tempFolder, "diagram-analysis"), registry);
+        this.fireworksCache = new ContentCache("fireworks", heapSize, diskSize, () -> getFolder(tempFolder, "fireworks"), registry);
+        this.fireworksAnalysisCache = new ContentCache("fireworks-analysis", tokenHeapSize, tokenDiskSize, tokenTtl, () -> getFolder(tempFolder, "fireworks-analysis"), registry);
+    }
+
+    /**
+     * @param token the analysis token overlaid on the image (if any)
+     * @return the cache for diagram images with or without analysis overlay
+     */
+    public ContentCache getDiagramCache(String token) {
+        return token == null || token.isEmpty() ? diagramCache : diagramAnalysisCache;
+    }
+
+    /**
+     * @param token the analysis token overlaid on the image (if any)
+     * @return the cache for fireworks images with or without analysis overlay
+     */
+    public ContentCache getFireworksCache(String token) {
+        return token == null || token.isEmpty() ? fireworksCache : fireworksAnalysisCache;
+    }
+
+    public String getDBVersion() {
+        return String.valueOf(generalService.getDBInfo().getVersion());
+    }
+
+    private File getFolder(String tempFolder, String cacheName) {
+        if (!tempFolder.endsWith("/")) tempFolder += "/";
+        return new File(tempFolder + getDBVersion() + "/raster/" + cacheName);
+    }
+
+    @Autowired
+    public void setGeneralService(GeneralService generalService) {
+        this.generalService = generalService;
+    }
+}
@@ -0,0 +1,206 @@
+package org.reactome.server.service.manager;
+
+import org.reactome.server.graph.domain.model.Event;
+import org.reactome.server.graph.exception.CustomQueryException;
+import org.reactome.server.graph.service.AdvancedDatabaseObjectService;
+import org.reactome.server.graph.service.DatabaseObjectService;
+import org.reactome.server.graph.service.GeneralService;
+import org.reactome.server.service.exception.MissingSBXXException;
+import org.reactome.server.service.model.exporter.BatchExportStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Exports every pathway and reaction of the current release to SBML and SBGN, storing the files where
+ * {@link ExportManager#getCachedFile} looks for them ([diagram.exporter.temp.folder]/[dbVersion]/sbml|sbgn), so the
+ * requests after a release are served from disk.
+ * <p>
+ * The job is resumable: files already generated (by a previous run or by a request) are skipped.
+ */
+@Component
+public class SbxxBatchExportManager {
+
+    private static final Logger threadLogger = LoggerFactory.getLogger("threadLogger");
+
+    private static final String[] FORMATS = {".sbml", ".sbgn"};
+    private static final int PROGRESS_INTERVAL = 500;
+
+    @Value("${sbxx.batch.threads:4}")
+    private Integer defaultThreads;
+
+    private GeneralService generalService;
+    private DatabaseObjectService databaseObjectService;
+    private AdvancedDatabaseObjectService advancedDatabaseObjectService;
+    private ExportManager exportManager;
+
+    private BatchExportStatus status;
+    private ExecutorService sbmlWorker;
+    private ExecutorService sbgnWorkers;
+
+    /**
+     * Starts the batch export unless there is one already running. The SBML conversions are run one at a time (see
+     * {@link ExportManager#generateSBML}), so every event is looked up and converted to SBML by a single worker, which
+     * hands the event over to the SBGN workers.
+     *
+     * @param threads number of SBGN workers (null to use the default value)
+     * @return the status of the running job
+     */
+    public synchronized BatchExportStatus start(Integer threads) {
+        if (status != null && status.isRunning()) return status;
+
+        int n = (threads == null || threads < 1) ? defaultThreads : threads;
+        List<String> identifiers = getEventIdentifiers();
+        BatchExportStatus current = new BatchExportStatus(String.valueOf(generalService.getDBInfo().getVersion()), n, (long) identifiers.size() * FORMATS.length);
+        ExecutorService sbml = Executors.newSingleThreadExecutor(daemon("sbxx-batch-sbml"));
+        ExecutorService sbgn = Executors.newFixedThreadPool(n, daemon("sbxx-batch-sbgn"));
+        threadLogger.info("SBML/SBGN batch export started for {} events with {} SBGN workers", identifiers.size(), n);
+        for (String stId : identifiers) {
+            sbml.execute(() -> export(stId, current, sbgn));
+        }
+        sbml.shutdown();
+
+        Thread monitor = new Thread(() -> {
+            try {
+                while (!sbml.awaitTermination(1, TimeUnit.MINUTES)) threadLogger.info("SBML/SBGN batch export: {}", current);
+                sbgn.shutdown(); //No more events are handed over
+                while (!sbgn.awaitTermination(1, TimeUnit.MINUTES)) threadLogger.info("SBML/SBGN batch export: {}", current);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            current.finish();
+            threadLogger.info("SBML/SBGN batch export {}: {}", current.getState().toString().toLowerCase(), current);
+        }, "sbxx-batch-monitor");
+        monitor.setDaemon(true);
+        monitor.start();
+
+        this.status = current;
+        this.sbmlWorker = sbml;
+        this.sbgnWorkers = sbgn;
+        return current;
+    }
+
+    private static ThreadFactory daemon(String name) {
+        AtomicInteger count = new AtomicInteger();
+        return r -> {
+            Thread thread = new Thread(r, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * @return the status of the last job or null if no job has been run
+     */
+    public synchronized BatchExportStatus getStatus() {
+        return status;
+    }
+
+    /**
+     * Stops the running job. The conversions in progress are finished and the rest are discarded
+     *
+     * @return the status of the cancelled job
+     */
+    @PreDestroy
+    public synchronized BatchExportStatus cancel() {
+        if (status != null && status.isRunning()) {
+            status.cancel();
+            sbmlWorker.shutdownNow();
+            sbgnWorkers.shutdownNow();
+        }
+        return status;
+    }
+
+    private void export(String stId, BatchExportStatus status, ExecutorService sbgn) {
+        if (!status.isRunning()) return;
+        Event event;
+        try {
+            event = databaseObjectService.findById(stId);
+        } catch (Exception | LinkageError e) {
+            for (String format : FORMATS) failed(stId + format, e.getMessage(), status);
+            return;
+        }
+        if (event == null) {
+            for (String format : FORMATS) failed(stId + format, "the event does not exist", status);
+            return;
+        }
+        try {
+            sbgn.execute(() -> export(event, stId + ".sbgn", status));
+        } catch (RejectedExecutionException e) {
+            return; //The job has been cancelled
+        }
+        export(event, stId + ".sbml", status);
+    }
+
+    // Goes through the conversions of ExportManager, so a request for the same file waits for this one and vice versa
+    private void export(Event event, String fileName, BatchExportStatus status) {
+        if (!status.isRunning()) return;
+        try {
+            exportManager.getCachedFile(event, fileName);
+            status.skipped();
+        } catch (MissingSBXXException e) {
+            try {
+                exportManager.convertSBXXFile(fileName, () -> fileName.endsWith(".sbml")
+                        ? exportManager.generateSBML(event, fileName)
+                        : exportManager.generateSBGN(event, fileName));
+                status.converted();
+            } catch (Exception | LinkageError ex) {
+                failed(fileName, ex.getMessage(), status);
+            }
+        }
+        if (status.getProcessed() % PROGRESS_INTERVAL == 0) threadLogger.info("SBML/SBGN batch export: {}", status);
+    }
+
+    private void failed(String fileName, String reason, BatchExportStatus status) {
+        status.failed();
+        threadLogger.warn("Could not export {}: {}", fileName, reason);
+    }
+
+    private List<String> getEventIdentifiers() {
+        String query = "" +
+                "MATCH (e:Event) " +
+                "WHERE (e:Pathway OR e:ReactionLikeEvent) AND e.stId IS NOT NULL " +
+                "RETURN e.stId " +
+                "ORDER BY e.stId";
+        try {
+            Collection<String> identifiers = advancedDatabaseObjectService.getCustomQueryResults(String.class, query, Map.of());
+            return new ArrayList<>(identifiers);
+        } catch (CustomQueryException e) {
+            throw new IllegalStateException("Could not retrieve the events to be exported", e);
+        }
+    }
+
+    @Autowired
+    public void setGeneralService(GeneralService generalService) {
+        this.generalService = generalService;
+    }
+
+    @Autowired
+    public void setDatabaseObjectService(DatabaseObjectService databaseObjectService) {
+        this.databaseObjectService = databaseObjectService;
+    }
+
+    @Autowired
+    public void setAdvancedDatabaseObjectService(AdvancedDatabaseObjectService advancedDatabaseObjectService) {
+        this.advancedDatabaseObjectService = advancedDatabaseObjectService;
+    }
+
+    @Autowired
+    public void setExportManager(ExportManager exportManager) {
+        this.exportManager = exportManager;
+    }
+}
@@ -1,15 +1,17 @@
 package org.reactome.server.service.manager;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import org.reactome.server.graph.domain.model.Species;
-import org.reactome.server.graph.exception.CustomQueryException;
-import org.reactome.server.graph.service.AdvancedDatabaseObjectService;
+import org.reactome.server.graph.service.GeneralService;
 import org.reactome.server.search.domain.DiagramOccurrencesResult;
 import org.reactome.server.search.domain.FireworksOccurrencesResult;
 import org.reactome.server.search.domain.Query;
 import org.reactome.server.search.exception.SolrSearcherException;
 import org.reactome.server.search.service.SearchService;
 import org.reactome.server.service.exception.NotFoundException;
+import org.reactome.server.service.utils.CoalescingCache;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.util.*;
@@ -22,7 +24,18 @@ import java.util.stream.Collectors;
 public class SearchManager {
 
     private SearchService searchService;
-    private AdvancedDatabaseObjectService ados;
+    private SubpathwayReactionIndexManager subpathwayReactionIndexManager;
+    private GeneralService generalService;
+
+    // The same (pathway, term) pairs are flagged over and over from the pathway browser
+    private final CoalescingCache<List<Object>, List<String>> diagramFlaggingCache;
+    private final CoalescingCache<List<Object>, List<String>> fireworksFlaggingCache;
+
+    @Autowired
+    public SearchManager(@Value("${flagging.cache.size:10000}") Integer cacheSize, MeterRegistry registry) {
+        this.diagramFlaggingCache = new CoalescingCache<>("diagram-flagging", cacheSize, registry);
+        this.fireworksFlaggingCache = new CoalescingCache<>("fireworks-flagging", cacheSize, registry);
+    }
 
     public DiagramOccurrencesResult getDiagramOccurrencesResult(String pathway, String query, Boolean includeInteractors) throws SolrSearcherException {
         DiagramOccurrencesResult rtn = new DiagramOccurrencesResult();
@@ -39,21 +52,17 @@ public class SearchManager {
     }
 
     public Collection<String> getDiagramFlagging(String pathway, String query, Boolean includeInteractors) throws SolrSearcherException {
+        List<Object> key = Arrays.asList(getDBVersion(), pathway, query, includeInteractors);
+        return new ArrayList<>(diagramFlaggingCache.get(key, () -> List.copyOf(queryDiagramFlagging(pathway, query, includeInteractors))));
+    }
+
+    private Collection<String> queryDiagramFlagging(String pathway, String query, Boolean includeInteractors) throws SolrSearcherException {
         DiagramOccurrencesResult occ = getDiagramOccurrencesResult(pathway, query, includeInteractors);
         Collection<String> toFlag = occ.getOccurrences() != null ? occ.getOccurrences() : new ArrayList<>();
         if (includeInteractors && occ.getInteractsWith() != null) toFlag.addAll(occ.getInteractsWith());
 
-        try {
-            String q = "" +
-                    "MATCH path=(p:Pathway)-[:hasEvent*]->(rle:ReactionLikeEvent) " +
-                    "WHERE p.stId IN $toFlag AND NONE(x IN NODES(path) WHERE (x:Pathway) AND x.hasDiagram) " +
-                    "RETURN DISTINCT rle.stId AS identifier ";
-            Map<String, Object> params = new HashMap<>();
-            params.put("toFlag", toFlag);
-            toFlag.addAll(ados.getCustomQueryResults(String.class, q, params));
-        } catch (CustomQueryException e) {
-            //Nothing here
-        }
+        // Reactions in subpathways without diagram are drawn in this diagram, so they are also flagged
+        toFlag.addAll(subpathwayReactionIndexManager.getReactions(toFlag));
         return toFlag;
     }
 
@@ -86,8 +95,13 @@ public class SearchManager {
     }
 
 
-    @SuppressWarnings("Duplicates")
     public Collection<String> getFireworksFlagging(Species species, String query, Boolean includeInteractors) throws SolrSearcherException {
+        List<Object> key = Arrays.asList(getDBVersion(), species.getDbId(), query, includeInteractors);
+        return new ArrayList<>(fireworksFlaggingCache.get(key, () -> List.copyOf(queryFireworksFlagging(species, query, includeInteractors))));
+    }
+
+    @SuppressWarnings("Duplicates")
+    private Collection<String> queryFireworksFlagging(Species species, String query, Boolean includeInteractors) throws SolrSearcherException {
         FireworksOccurrencesResult occ = getFireworksOccurrencesResult(species, query);
         Collection<String> rtn = occ.getLlps() != null ? occ.getLlps() : new ArrayList<>();
         if (includeInteractors && occ.getInteractsWith() != null) rtn.addAll(occ.getInteractsWith());
@@ -96,13 +110,22 @@ public class SearchManager {
         return rtn;
     }
 
+    private String getDBVersion() {
+        return String.valueOf(generalService.getDBInfo().getVersion());
+    }
+
     @Autowired
     public void setSearchService(SearchService searchService) {
         this.searchService = searchService;
     }
 
     @Autowired
-    public void setAdos(AdvancedDatabaseObjectService ados) {
-        this.ados = ados;
+    public void setSubpathwayReactionIndexManager(SubpathwayReactionIndexManager subpathwayReactionIndexManager) {
+        this.subpathwayReactionIndexManager = subpathwayReactionIndexManager;
+    }
+
+    @Autowired
+    public void setGeneralService(GeneralService generalService) {
+        this.generalService = generalService;
     }
 }
@@ -0,0 +1,188 @@
+package org.reactome.server.service.manager;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.reactome.server.graph.exception.CustomQueryException;
+import org.reactome.server.graph.service.AdvancedDatabaseObjectService;
+import org.reactome.server.graph.service.GeneralService;
+import org.reactome.server.service.exception.ServiceUnavailableException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps, for every pathway without diagram, the reactions that can be reached from it without going through a
+ * pathway with diagram. Those reactions are drawn in the diagram of the closest diagrammed ancestor, so they have to
+ * be flagged when any of the subpathways containing them is flagged.
+ * <p>
+ * The index is built from the graph once per database version (when the application starts or the first time it is
+ * needed) and stores the reactions of each pathway as a sorted array of positions in a shared identifiers table. A
+ * build that fails is not kept (neither are the results depending on it), so it is retried the next time it is needed.
+ */
+@Component
+public class SubpathwayReactionIndexManager {
+
+    private static final Logger infoLogger = LoggerFactory.getLogger("infoLogger");
+    private static final Logger errorLogger = LoggerFactory.getLogger("errorLogger");
+
+    private static final int[] NONE = new int[0];
+    private static final long RETRY_AFTER = 10L;
+
+    @Value("${flagging.index.prewarm:true}")
+    private Boolean prewarm;
+
+    private volatile Index index;
+
+    private GeneralService generalService;
+    private AdvancedDatabaseObjectService ados;
+
+    private Timer buildTimer;
+
+    /**
+     * @param pathways stable identifiers of pathways (other identifiers are ignored)
+     * @return the stable identifiers of the reactions contained in the given pathways without diagram
+     */
+    public Set<String> getReactions(Collection<String> pathways) {
+        Index index = getIndex();
+        Set<String> rtn = new HashSet<>();
+        for (String pathway : pathways) {
+            for (int reaction : index.reactions.getOrDefault(pathway, NONE)) {
+                rtn.add(index.identifiers[reaction]);
+            }
+        }
+        return rtn;
+    }
+
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void prewarm() {
+        if (!prewarm) return;
+        try {
+            getIndex();
+        } catch (ServiceUnavailableException e) {
+            //Already logged, it will be built again when needed
+        }
+    }
+
+    private Index getIndex() {
+        String version = String.valueOf(generalService.getDBInfo().getVersion());
+        Index current = index;
+        if (current != null && current.version.equals(version)) return current;
+        synchronized (this) {
+            current = index;
+            if (current == null || !current.version.equals(version)) {
+                current = build(version);
+                index = current;
+            }
+        }
+        return current;
+    }
+
+    private Index build(String version) throws ServiceUnavailableException {
+        //language=cypher
+        String query = "" +
+                "MATCH (p:Pathway)-[:hasEvent]->(e:Event) " +
+                "WHERE NOT coalesce(p.hasDiagram, false) " +
+                "  AND (e:ReactionLikeEvent OR (e:Pathway AND NOT coalesce(e.hasDiagram, false))) " +
+                "RETURN p.stId + ' ' + e.stId + CASE WHEN e:ReactionLikeEvent THEN ' R' ELSE ' P' END ";
+        long start = System.nanoTime();
+        Collection<String> edges;
+        try {
+            edges = ados.getCustomQueryResults(String.class, query, Map.of());
+        } catch (CustomQueryException e) {
+            errorLogger.error("Could not build the subpathway reactions index for version " + version, e);
+            throw new ServiceUnavailableException("The elements to be flagged could not be retrieved. Please try again later", RETRY_AFTER);
+        }
+
+        Map<String, List<String>> subpathways = new HashMap<>();
+        Map<String, List<String>> direct = new HashMap<>();
+        SortedSet<String> reactions = new TreeSet<>();
+        for (String edge : edges) {
+            String[] parts = edge.split(" ");
+            if (parts[2].equals("R")) {
+                direct.computeIfAbsent(parts[0], k -> new ArrayList<>()).add(parts[1]);
+                reactions.add(parts[1]);
+            } else {
+                subpathways.computeIfAbsent(parts[0], k -> new ArrayList<>()).add(parts[1]);
+            }
+        }
+
+        String[] identifiers = reactions.toArray(new String[0]);
+        Map<String, int[]> closure = new HashMap<>();
+        Set<String> pathways = new HashSet<>(direct.keySet());
+        pathways.addAll(subpathways.keySet());
+        for (String pathway : pathways) {
+            expand(pathway, subpathways, direct, identifiers, closure, new HashSet<>());
+        }
+        closure.values().removeIf(r -> r.length == 0);
+
+        Index rtn = new Index(version, identifiers, closure);
+        long elapsed = System.nanoTime() - start;
+        buildTimer.record(elapsed, TimeUnit.NANOSECONDS);
+        infoLogger.info("Subpathway reactions index for version {} built: {} pathways, {} reactions in {}ms", version, closure.size(), identifiers.length, TimeUnit.NANOSECONDS.toMillis(elapsed));
+        return rtn;
+    }
+
+    // Depth first with memoisation, so shared subpathways are expanded only once
+    private int[] expand(String pathway, Map<String, List<String>> subpathways, Map<String, List<String>> direct,
+                         String[] identifiers, Map<String, int[]> closure, Set<String> visiting) {
+        int[] cached = closure.get(pathway);
+        if (cached != null) return cached;
+        if (!visiting.add(pathway)) return NONE; //The events hierarchy should not contain cycles, but just in case
+
+        BitSet set = new BitSet(identifiers.length);
+        for (String reaction : direct.getOrDefault(pathway, Collections.emptyList())) {
+            set.set(Arrays.binarySearch(identifiers, reaction));
+        }
+        for (String subpathway : subpathways.getOrDefault(pathway, Collections.emptyList())) {
+            for (int reaction : expand(subpathway, subpathways, direct, identifiers, closure, visiting)) set.set(reaction);
+        }
+        int[] rtn = set.stream().toArray();
+        closure.put(pathway, rtn);
+        visiting.remove(pathway);
+        return rtn;
+    }
+
+    private static class Index {
+        private final String version;
+        private final String[] identifiers;
+        private final Map<String, int[]> reactions;
+
+        Index(String version, String[] identifiers, Map<String, int[]> reactions) {
+            this.version = version;
+            this.identifiers = identifiers;
+            this.reactions = reactions;
+        }
+
+        long getSize() {
+            return reactions.values().stream().mapToLong(r -> r.length).sum();
+        }
+    }
+
+    @Autowired
+    public void setMeterRegistry(MeterRegistry registry) {
+        this.buildTimer = Timer.builder("contentservice.flagging.index.build").register(registry);
+        Gauge.builder("contentservice.flagging.index.size", this, m -> m.index == null ? 0 : m.index.getSize())
+                .description("Number of pathway to reaction entries in the index")
+                .register(registry);
+    }
+
+    @Autowired
+    public void setGeneralService(GeneralService generalService) {
+        this.generalService = generalService;
+    }
+
+    @Autowired
+    public void setAdos(AdvancedDatabaseObjectService ados) {
+        this.ados = ados;
+    }
+}
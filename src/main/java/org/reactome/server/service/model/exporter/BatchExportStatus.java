@@ -0,0 +1,111 @@
+package org.reactome.server.service.model.exporter;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Progress of a batch export job (i.e. SBML and SBGN pre-export)
+ */
+@JsonPropertyOrder({"version", "state", "threads", "total", "processed", "converted", "skipped", "failed", "elapsed", "throughput"})
+public class BatchExportStatus {
+
+    public enum State {RUNNING, CANCELLED, FINISHED}
+
+    private final String version;
+    private final Integer threads;
+    private final long total;
+    private final long start = System.currentTimeMillis();
+    private volatile long end = 0L;
+    private volatile State state = State.RUNNING;
+
+    private final AtomicLong converted = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    public BatchExportStatus(String version, Integer threads, long total) {
+        this.version = version;
+        this.threads = threads;
+        this.total = total;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public Integer getThreads() {
+        return threads;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public long getProcessed() {
+        return converted.get() + skipped.get() + failed.get();
+    }
+
+    public long getConverted() {
+        return converted.get();
+    }
+
+    public long getSkipped() {
+        return skipped.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    /**
+     * @return the time (in seconds) the job has been running for
+     */
+    public long getElapsed() {
+        return ((end > 0 ? end : System.currentTimeMillis()) - start) / 1000;
+    }
+
+    /**
+     * @return the number of converted files per minute
+     */
+    public double getThroughput() {
+        long elapsed = (end > 0 ? end : System.currentTimeMillis()) - start;
+        return elapsed == 0 ? 0 : converted.get() * 60000d / elapsed;
+    }
+
+    @JsonIgnore
+    public boolean isRunning() {
+        return state == State.RUNNING;
+    }
+
+    public void converted() {
+        converted.incrementAndGet();
+    }
+
+    public void skipped() {
+        skipped.incrementAndGet();
+    }
+
+    public void failed() {
+        failed.incrementAndGet();
+    }
+
+    public void cancel() {
+        if (state == State.RUNNING) state = State.CANCELLED;
+    }
+
+    public void finish() {
+        if (state == State.RUNNING) state = State.FINISHED;
+        end = System.currentTimeMillis();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d/%d processed (%d converted, %d skipped, %d failed) in %ds [%.1f files/min]",
+                getProcessed(), total, getConverted(), getSkipped(), getFailed(), getElapsed(), getThroughput());
+    }
+}
@@ -0,0 +1,158 @@
+package org.reactome.server.service.model.graph;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import org.reactome.server.analysis.core.model.PathwayNodeData;
+import org.reactome.server.analysis.core.model.resource.MainResource;
+import org.reactome.server.analysis.core.result.PathwayNodeSummary;
+import org.reactome.server.analysis.core.result.model.EntityStatistics;
+import org.reactome.server.analysis.core.result.model.ReactionStatistics;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Analysis results overlaid on top of a shared {@link PathwayBrowserTree}: the results of every node are kept in
+ * arrays indexed as the nodes of the tree (no node is copied), and they are serialised together with the tree in the
+ * same format as the trees of {@link AnalysedPathwayBrowserNode}.
+ */
+@JsonSerialize(using = AnalysedPathwayBrowserTree.Serializer.class)
+public class AnalysedPathwayBrowserTree {
+
+    private static final byte LLP_NONE = 0;
+    private static final byte LLP_FALSE = 1;
+    private static final byte LLP_TRUE = 2;
+
+    private final PathwayBrowserTree tree;
+    // All of them are null when there is no analysis
+    private final byte[] llp;
+    private final EntityStatistics[] entities;
+    private final ReactionStatistics[] reactions;
+
+    AnalysedPathwayBrowserTree(PathwayBrowserTree tree) {
+        this(tree, null, null, null);
+    }
+
+    private AnalysedPathwayBrowserTree(PathwayBrowserTree tree, byte[] llp, EntityStatistics[] entities, ReactionStatistics[] reactions) {
+        this.tree = tree;
+        this.llp = llp;
+        this.entities = entities;
+        this.reactions = reactions;
+    }
+
+    public PathwayBrowserTree getTree() {
+        return tree;
+    }
+
+    /**
+     * Decorates the given tree with the analysis results. The nodes are visited in a single pass over the tree arrays
+     * and only the statistics of the nodes found in the analysis are created.
+     *
+     * @param tree      the shared tree (i.e. the precomputed events hierarchy), which is not modified
+     * @param summaries pathway summaries of the analysis indexed by stable identifier
+     * @return the analysis results of every node of the given tree
+     */
+    public static AnalysedPathwayBrowserTree overlay(PathwayBrowserTree tree, Map<String, PathwayNodeSummary> summaries,
+                                                     String resource, boolean includeInteractors, boolean importableOnly) {
+        int size = tree.size();
+        byte[] llp = new byte[size];
+        EntityStatistics[] entities = new EntityStatistics[size];
+        ReactionStatistics[] reactions = new ReactionStatistics[size];
+        for (int i = 0; i < size; i++) {
+            PathwayNodeSummary summary = summaries.get(tree.stIds[i]);
+            if (summary == null) continue;
+            Boolean isLlp = summary.isLlp();
+            if (isLlp != null) llp[i] = isLlp ? LLP_TRUE : LLP_FALSE;
+            PathwayNodeData analysisData = summary.getData();
+            if (analysisData == null) continue;
+
+            if (resource.equals("TOTAL")) {
+                entities[i] = new EntityStatistics(analysisData, includeInteractors, importableOnly);
+                reactions[i] = new ReactionStatistics(analysisData, importableOnly);
+            } else {
+                for (MainResource mr : analysisData.getResources()) {
+                    if (mr.getName().equals(resource)) {
+                        entities[i] = new EntityStatistics(mr, analysisData, includeInteractors);
+                        reactions[i] = new ReactionStatistics(mr, analysisData);
+                        break;
+                    }
+                }
+            }
+        }
+        return new AnalysedPathwayBrowserTree(tree, llp, entities, reactions);
+    }
+
+    /**
+     * Walks the tree arrays in pre-order together with the analysis arrays. The nodes with children stay open until
+     * the position after their subtree is reached, so the nesting is kept without recursion.
+     */
+    public static class Serializer extends StdSerializer<AnalysedPathwayBrowserTree> {
+
+        // Whether "llp" is serialised for AnalysedPathwayBrowserNode (it depends on how the mapper detects the getter)
+        private volatile Boolean llpSerialised;
+
+        public Serializer() {
+            super(AnalysedPathwayBrowserTree.class);
+        }
+
+        @Override
+        public void serialize(AnalysedPathwayBrowserTree value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            PathwayBrowserTree tree = value.tree;
+            boolean writeLlp = value.llp != null && isLlpSerialised(provider);
+            int[] open = new int[tree.size()];
+            int depth = 0;
+
+            gen.writeStartArray();
+            for (int i = 0; i < tree.size(); i++) {
+                while (depth > 0 && tree.next[open[depth - 1]] <= i) {
+                    gen.writeEndArray();
+                    writeEnd(tree, open[--depth], gen, provider);
+                }
+
+                gen.writeStartObject();
+                writeFields(tree, i, 0, tree.tail, gen, provider);
+                if (writeLlp && value.llp[i] != LLP_NONE) gen.writeBooleanField("llp", value.llp[i] == LLP_TRUE);
+                gen.writeNumberField("totalEntity", tree.totalEntity[i]);
+                gen.writeNumberField("totalEntityAndInteractors", tree.totalEntityAndInteractors[i]);
+                if (value.entities != null && value.entities[i] != null) provider.defaultSerializeField("entities", value.entities[i], gen);
+                if (value.reactions != null && value.reactions[i] != null) provider.defaultSerializeField("reactions", value.reactions[i], gen);
+
+                if (tree.next[i] > i + 1) {
+                    gen.writeArrayFieldStart("children");
+                    open[depth++] = i;
+                } else {
+                    writeEnd(tree, i, gen, provider);
+                }
+            }
+            while (depth > 0) {
+                gen.writeEndArray();
+                writeEnd(tree, open[--depth], gen, provider);
+            }
+            gen.writeEndArray();
+        }
+
+        private void writeEnd(PathwayBrowserTree tree, int i, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            writeFields(tree, i, tree.tail, tree.names.length, gen, provider);
+            gen.writeEndObject();
+        }
+
+        // Fields of the node i in the columns [from, to)
+        private void writeFields(PathwayBrowserTree tree, int i, int from, int to, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            for (int c = from; c < to; c++) {
+                Object value = tree.values[c][i];
+                if (value != PathwayBrowserTree.ABSENT) provider.defaultSerializeField(tree.names[c], value, gen);
+            }
+        }
+
+        private boolean isLlpSerialised(SerializerProvider provider) {
+            if (llpSerialised == null) {
+                BeanDescription description = provider.getConfig().introspect(provider.constructType(AnalysedPathwayBrowserNode.class));
+                llpSerialised = description.findProperties().stream().anyMatch(p -> p.getName().equals("llp") && p.couldSerialize());
+            }
+            return llpSerialised;
+        }
+    }
+}
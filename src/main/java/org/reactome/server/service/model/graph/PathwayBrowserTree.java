@@ -0,0 +1,168 @@
+package org.reactome.server.service.model.graph;
+
+import com.fasterxml.jackson.annotation.JsonValue;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.reactome.server.analysis.core.model.PathwayNode;
+import org.reactome.server.analysis.core.model.PathwayNodeData;
+import org.reactome.server.graph.service.helper.PathwayBrowserNode;
+
+import java.util.*;
+
+/**
+ * Flyweight version of the events hierarchy: the structure of the trees and the fields of every node (the ones that
+ * only change per release) are kept once in arrays indexed by node, in pre-order. The fields are kept by column (one
+ * array of values per field name) and the repeated values (i.e. species or types) are shared. Decorating the trees for a request
+ * (see {@link AnalysedPathwayBrowserTree}) only needs arrays with the decoration of every node instead of a copy of
+ * the nodes, and both are serialised together in the same format as the trees of {@link SizedPathwayBrowserNode}.
+ * <p>
+ * The tree is shared by all the requests, so it is never modified once built.
+ */
+public class PathwayBrowserTree {
+
+    // Fields set (or kept) per node instead of being part of the serialised fields
+    private static final Set<String> DECORATIONS = Set.of("llp", "totalEntityAndInteractors", "entities", "reactions", "children");
+    // Value of the fields that are not serialised for a node
+    static final Object ABSENT = new Object();
+
+    final String[] stIds;
+    // Serialised fields in order: values[c][i] is the value of the field names[c] for the node i (or ABSENT)
+    final String[] names;
+    final Object[][] values;
+    // Columns from this one on are serialised after the sizes
+    final int tail;
+    final int[] totalEntity;
+    final int[] totalEntityAndInteractors;
+    // Position after the subtree of every node: the children of i go from i + 1 to next[i], skipping their subtrees
+    final int[] next;
+
+    private final AnalysedPathwayBrowserTree withoutAnalysis;
+
+    /**
+     * @param roots      trees of PathwayBrowserNode (served in the given order, their children in natural order)
+     * @param stIdToNode analysis nodes providing the sizes (nodes not found keep the size of the SizedPathwayBrowserNode)
+     * @param mapper     used to serialise the fields of every node
+     */
+    public PathwayBrowserTree(Collection<? extends PathwayBrowserNode> roots, Map<String, PathwayNode> stIdToNode, ObjectMapper mapper) {
+        List<PathwayBrowserNode> nodes = new ArrayList<>();
+        List<Integer> parents = new ArrayList<>();
+
+        Deque<PathwayBrowserNode> stack = new ArrayDeque<>();
+        Deque<Integer> stackParents = new ArrayDeque<>();
+        push(stack, stackParents, new ArrayList<>(roots), -1);
+        while (!stack.isEmpty()) {
+            PathwayBrowserNode node = stack.pop();
+            parents.add(stackParents.pop());
+            nodes.add(node);
+            Set<PathwayBrowserNode> children = node.getChildren();
+            if (children != null && !children.isEmpty()) {
+                // Same order as the TreeSet of the SizedPathwayBrowserNode copies
+                push(stack, stackParents, new ArrayList<>(children instanceof SortedSet ? children : new TreeSet<>(children)), nodes.size() - 1);
+            }
+        }
+
+        int size = nodes.size();
+        stIds = new String[size];
+        totalEntity = new int[size];
+        totalEntityAndInteractors = new int[size];
+        next = new int[size];
+        ObjectNode[] fields = new ObjectNode[size];
+        for (int i = 0; i < size; i++) {
+            PathwayBrowserNode node = nodes.get(i);
+            stIds[i] = node.getStId();
+            fields[i] = serialise(node, mapper);
+            PathwayNode pathwayNode = stIdToNode.get(node.getStId());
+            if (pathwayNode != null) {
+                PathwayNodeData nodeData = pathwayNode.getPathwayNodeData();
+                totalEntity[i] = nodeData.getEntitiesCount();
+                totalEntityAndInteractors[i] = nodeData.getEntitiesAndInteractorsCount();
+            } else if (node instanceof SizedPathwayBrowserNode) {
+                totalEntity[i] = ((SizedPathwayBrowserNode) node).getTotalEntity();
+                totalEntityAndInteractors[i] = ((SizedPathwayBrowserNode) node).getTotalEntityAndInteractors();
+            }
+        }
+
+        List<String> columns = getColumns(fields);
+        int sizes = columns.indexOf("totalEntity");
+        tail = sizes < 0 ? columns.size() : sizes;
+        if (sizes >= 0) columns.remove(sizes);
+        names = columns.toArray(new String[0]);
+        values = new Object[names.length][size];
+        Map<Object, Object> shared = new HashMap<>();
+        for (int c = 0; c < names.length; c++) {
+            for (int i = 0; i < size; i++) {
+                JsonNode value = fields[i].get(names[c]);
+                values[c][i] = value == null ? ABSENT : shared.computeIfAbsent(toValue(value), v -> v);
+            }
+        }
+
+        // Children are always after their parents, so the subtree sizes are accumulated backwards
+        int[] subtree = new int[size];
+        for (int i = size - 1; i >= 0; i--) {
+            subtree[i]++;
+            int parent = parents.get(i);
+            if (parent >= 0) subtree[parent] += subtree[i];
+            next[i] = i + subtree[i];
+        }
+
+        withoutAnalysis = new AnalysedPathwayBrowserTree(this);
+    }
+
+    /**
+     * @return the number of nodes in the trees (nodes in more than one location are counted once per location)
+     */
+    public int size() {
+        return stIds.length;
+    }
+
+    /**
+     * @return the trees without analysis, which is how the tree itself is serialised
+     */
+    @JsonValue
+    public AnalysedPathwayBrowserTree withoutAnalysis() {
+        return withoutAnalysis;
+    }
+
+    // The fields are serialised as an AnalysedPathwayBrowserNode (without children or analysis) to keep the same order
+    private static ObjectNode serialise(PathwayBrowserNode node, ObjectMapper mapper) {
+        SizedPathwayBrowserNode sized = node instanceof SizedPathwayBrowserNode ? (SizedPathwayBrowserNode) node : new SizedPathwayBrowserNode(node);
+        AnalysedPathwayBrowserNode prototype = new AnalysedPathwayBrowserNode(sized);
+        prototype.setChildren(null);
+        return mapper.valueToTree(prototype);
+    }
+
+    // Field names of all the nodes in serialisation order ("totalEntity" included, as the position of the sizes)
+    private static List<String> getColumns(ObjectNode[] fields) {
+        List<String> columns = new ArrayList<>();
+        for (ObjectNode node : fields) {
+            int position = -1;
+            Iterator<String> names = node.fieldNames();
+            while (names.hasNext()) {
+                String name = names.next();
+                if (DECORATIONS.contains(name)) continue;
+                int index = columns.indexOf(name);
+                // Fields missing in the previous nodes are placed after the previous field of this node
+                if (index < 0) columns.add(index = position + 1, name);
+                position = index;
+            }
+        }
+        return columns;
+    }
+
+    // Scalars are kept as plain values, so the repeated ones are shared
+    private static Object toValue(JsonNode node) {
+        if (node.isTextual()) return node.textValue();
+        if (node.isBoolean()) return node.booleanValue();
+        if (node.isNumber()) return node.numberValue();
+        return node.isNull() ? null : node;
+    }
+
+    private static void push(Deque<PathwayBrowserNode> stack, Deque<Integer> stackParents, List<PathwayBrowserNode> nodes, int parent) {
+        // Pushed backwards, so they are popped in the given order
+        for (int i = nodes.size() - 1; i >= 0; i--) {
+            stack.push(nodes.get(i));
+            stackParents.push(parent);
+        }
+    }
+}
@@ -33,6 +33,14 @@ public class AspectLazyLoadingPrevention {
             "|| execution(public * org.reactome.server.service.controller.interactors.*.*(..))")
     public void controllerMethod() {}
 
+    /**
+     * For the objects written by the controllers themselves (i.e. streamed results), which are not returned and
+     * therefore not intercepted
+     */
+    public static void preventLazyLoading(Object obj) {
+        preventLazyLoading(obj, true);
+    }
+
     private static void preventLazyLoading(Object obj, boolean prevent) {
         if (obj == null) return;
 
@@ -0,0 +1,147 @@
+package org.reactome.server.service.utils;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.reactome.server.service.exception.ServiceUnavailableException;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs long tasks (i.e. document generation) in a dedicated pool of threads so the servlet threads are released
+ * while the task is being processed. The number of tasks running at the same time is limited by the size of the
+ * pool and the number of waiting ones by the size of the queue.
+ * <p>
+ * A {@link ServiceUnavailableException} is thrown when the queue is full and it is set as the result of the request
+ * when a task has been waiting in the queue for longer than the queue timeout.
+ */
+public class BoundedAsyncExecutor {
+
+    private final String name;
+    private final long queueTimeout;
+    private final ThreadPoolExecutor executor;
+
+    private final Timer waitTimer;
+    private final Timer durationTimer;
+    private final Counter queueFullRejections;
+    private final Counter timeoutRejections;
+
+    /**
+     * @param name         name of the executor (used to name the threads and to tag the metrics)
+     * @param threads      maximum number of tasks running at the same time
+     * @param queueSize    maximum number of tasks waiting to be run
+     * @param queueTimeout maximum time (in milliseconds) a task waits in the queue before being discarded
+     * @param registry     where the queue, duration and rejection metrics are registered
+     */
+    public BoundedAsyncExecutor(String name, int threads, int queueSize, long queueTimeout, MeterRegistry registry) {
+        this.name = name;
+        this.queueTimeout = queueTimeout;
+
+        AtomicInteger count = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueSize), r -> {
+            Thread thread = new Thread(r, name + "-worker-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.AbortPolicy());
+
+        this.waitTimer = Timer.builder("contentservice.executor.wait").tag("executor", name).register(registry);
+        this.durationTimer = Timer.builder("contentservice.executor.duration").tag("executor", name)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(registry);
+        this.queueFullRejections = Counter.builder("contentservice.executor.rejections").tags("executor", name, "reason", "queue_full").register(registry);
+        this.timeoutRejections = Counter.builder("contentservice.executor.rejections").tags("executor", name, "reason", "timeout").register(registry);
+        Gauge.builder("contentservice.executor.queue", executor, e -> e.getQueue().size()).tag("executor", name).register(registry);
+        Gauge.builder("contentservice.executor.active", executor, ThreadPoolExecutor::getActiveCount).tag("executor", name).register(registry);
+    }
+
+    /**
+     * Queues the task and returns straight away. The returned {@link DeferredResult} is completed with the value
+     * returned by the task or with the exception it throws.
+     *
+     * @param timeout maximum time (in milliseconds) for the request to be completed, including the time in the queue
+     * @param task    the task to be run
+     * @return the result to be returned by the controller
+     * @throws ServiceUnavailableException when the queue is full
+     */
+    public <T> DeferredResult<T> submit(long timeout, Callable<T> task) {
+        return toDeferredResult(timeout, execute(task));
+    }
+
+    /**
+     * Queues the task and returns straight away. The returned future is completed with the value returned by the
+     * task or with the exception it throws (a {@link ServiceUnavailableException} if it waited too long to be run).
+     *
+     * @param task the task to be run
+     * @return the future result of the task
+     * @throws ServiceUnavailableException when the queue is full
+     */
+    public <T> CompletableFuture<T> execute(Callable<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        long queued = System.nanoTime();
+        try {
+            executor.execute(() -> run(task, future, queued));
+        } catch (RejectedExecutionException e) {
+            queueFullRejections.increment();
+            throw new ServiceUnavailableException(String.format("Too many '%s' requests waiting. Please try again later", name), getRetryAfter());
+        }
+        return future;
+    }
+
+    /**
+     * The tasks must not write to the response: it is answered with a 503 when the timeout is reached, while the
+     * task might still be running. Their result is written once the request is dispatched back instead.
+     *
+     * @param timeout maximum time (in milliseconds) for the request to be completed
+     * @param future  the future to be adapted (cancelled when the timeout is reached, so it is not run if still queued)
+     * @return a {@link DeferredResult} completed with the result of the future
+     */
+    public <T> DeferredResult<T> toDeferredResult(long timeout, CompletableFuture<T> future) {
+        DeferredResult<T> result = new DeferredResult<>(timeout);
+        result.onTimeout(() -> {
+            future.cancel(false);
+            result.setErrorResult(new ServiceUnavailableException(String.format("The '%s' request could not be completed on time. Please try again later", name), getRetryAfter()));
+        });
+        future.whenComplete((value, ex) -> {
+            if (ex == null) {
+                result.setResult(value);
+            } else {
+                result.setErrorResult(ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex);
+            }
+        });
+        return result;
+    }
+
+    private <T> void run(Callable<T> task, CompletableFuture<T> future, long queued) {
+        if (future.isDone()) return; //Cancelled while waiting in the queue
+        long waited = System.nanoTime() - queued;
+        waitTimer.record(waited, TimeUnit.NANOSECONDS);
+        if (TimeUnit.NANOSECONDS.toMillis(waited) > queueTimeout) {
+            timeoutRejections.increment();
+            future.completeExceptionally(new ServiceUnavailableException(String.format("The '%s' request could not be processed on time. Please try again later", name), getRetryAfter()));
+            return;
+        }
+
+        long start = System.nanoTime();
+        try {
+            future.complete(task.call());
+        } catch (Exception e) {
+            future.completeExceptionally(e);
+        } finally {
+            durationTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * @return the number of seconds suggested to the client before retrying
+     */
+    private long getRetryAfter() {
+        return Math.max(1L, TimeUnit.MILLISECONDS.toSeconds(queueTimeout));
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,149 @@
+package org.reactome.server.service.utils;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.reactome.server.service.exception.ErrorInfo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Resolves big lists of identifiers (i.e. thousands of them sent by data pipelines) in batches of a fixed size and
+ * streams the results as newline delimited JSON, one batch after the other, as soon as every batch is resolved.
+ * <p>
+ * The batches are resolved in a dedicated pool of threads shared by all the bulk lookups, and every request has at
+ * most 'parallelism' batches being resolved at the same time, so the memory used per request depends on the batch
+ * size and the parallelism instead of the number of identifiers. The results are written in the order of the batches.
+ * <p>
+ * The status cannot be changed once the first results have been sent, so when a batch fails afterwards the stream
+ * ends with an error record (an {@link ErrorInfo} line) instead of the results of the remaining batches.
+ */
+public class BulkLookupWriter {
+
+    private static final Logger errorLogger = LoggerFactory.getLogger("errorLogger");
+
+    private final int maxIds;
+    private final int batchSize;
+    private final int parallelism;
+    private final BoundedAsyncExecutor executor;
+    private final DistributionSummary identifiers;
+
+    /**
+     * Resolves a batch of identifiers
+     */
+    @FunctionalInterface
+    public interface BatchLoader<T> {
+        Collection<T> load(List<String> ids) throws Exception;
+    }
+
+    /**
+     * @param maxIds       maximum number of (distinct) identifiers per request, the rest are ignored
+     * @param batchSize    number of identifiers per batch
+     * @param parallelism  maximum number of batches of a request resolved at the same time
+     * @param threads      maximum number of batches (of all the requests) resolved at the same time
+     * @param queueSize    maximum number of batches waiting to be resolved
+     * @param queueTimeout maximum time (in milliseconds) a batch waits in the queue before the request is discarded
+     * @param registry     where the executor metrics and the number of identifiers per request are registered
+     */
+    public BulkLookupWriter(int maxIds, int batchSize, int parallelism, int threads, int queueSize, long queueTimeout, MeterRegistry registry) {
+        this.maxIds = maxIds;
+        this.batchSize = batchSize;
+        this.parallelism = parallelism;
+        this.executor = new BoundedAsyncExecutor("bulk", threads, queueSize, queueTimeout, registry);
+        this.identifiers = DistributionSummary.builder("contentservice.bulk.identifiers")
+                .description("Identifiers per bulk lookup")
+                .register(registry);
+    }
+
+    /**
+     * @param ids      the identifiers requested by the client (duplicates are removed)
+     * @param loader   resolves every batch
+     * @param writer   the writer used for every element (i.e. the one for the requested view)
+     * @param request  the URL of the request is reported in the error record
+     * @param response where the results are written
+     * @return false when nothing has been found (and nothing has been written)
+     */
+    public <T> boolean write(Collection<String> ids, BatchLoader<T> loader, ObjectWriter writer,
+                             HttpServletRequest request, HttpServletResponse response) throws IOException {
+        List<String> distinct = new ArrayList<>(new LinkedHashSet<>(ids));
+        if (distinct.size() > maxIds) distinct = distinct.subList(0, maxIds);
+        identifiers.record(distinct.size());
+
+        Deque<CompletableFuture<Collection<T>>> pending = new ArrayDeque<>();
+        ServletOutputStream out = null;
+        JsonGenerator generator = null;
+        SequenceWriter sequence = null;
+        int next = 0;
+        try {
+            while (next < distinct.size() || !pending.isEmpty()) {
+                Collection<T> results;
+                try {
+                    // Submitting a batch can also fail (i.e. the queue is full) once some results have been sent
+                    while (pending.size() < parallelism && next < distinct.size()) {
+                        List<String> batch = distinct.subList(next, Math.min(next + batchSize, distinct.size()));
+                        next += batch.size();
+                        pending.add(executor.execute(() -> loader.load(batch)));
+                    }
+                    results = get(pending.poll());
+                } catch (IOException | RuntimeException e) {
+                    if (sequence == null) throw e;
+                    errorLogger.error("Bulk lookup of " + distinct.size() + " identifiers failed after sending some results", e);
+                    sequence.write(new ErrorInfo(HttpStatus.INTERNAL_SERVER_ERROR, request.getRequestURL(), "The lookup failed before retrieving all the identifiers"));
+                    break;
+                }
+                if (results == null || results.isEmpty()) continue;
+                // The results are not returned by the controllers, so they are not covered by AspectLazyLoadingPrevention
+                AspectLazyLoadingPrevention.preventLazyLoading(results);
+
+                if (sequence == null) {
+                    // Nothing is sent until something has been found, so the client can still get a 404
+                    response.setContentType(JsonStreamWriter.APPLICATION_NDJSON + ";charset=UTF-8");
+                    out = response.getOutputStream();
+                    generator = writer.getFactory().createGenerator(out);
+                    generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                    sequence = writer.withRootValueSeparator("\n").writeValues(generator);
+                }
+                sequence.writeAll(results);
+                sequence.flush();
+            }
+        } finally {
+            // Batches of a failed request are not needed anymore (the running ones are completed anyway)
+            pending.forEach(future -> future.cancel(false));
+            if (sequence != null) sequence.close();
+        }
+        if (sequence == null) return false;
+        generator.close();
+        out.write('\n');
+        out.flush();
+        return true;
+    }
+
+    private static <T> T get(CompletableFuture<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while resolving the identifiers", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof IOException) throw (IOException) cause;
+            throw new IOException("Could not resolve the identifiers", cause);
+        }
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
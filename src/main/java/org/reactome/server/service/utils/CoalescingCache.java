@@ -0,0 +1,199 @@
+package org.reactome.server.service.utils;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded LRU cache for the results of expensive queries (i.e. Solr + Neo4j). Concurrent requests for a key that is
+ * being loaded wait for that load instead of running the same query again. Failed loads are not cached.
+ * <p>
+ * The cache is bounded by the number of entries or, when a {@link Weigher} is provided, by the sum of the weights of
+ * the entries (i.e. for results with very different sizes). When a time to live is set, entries not requested for
+ * longer than it are discarded the next time they are requested (expire after access).
+ * <p>
+ * Keys have to include everything the result depends on, database version included.
+ */
+public class CoalescingCache<K, V> {
+
+    private final long maxWeight;
+    private final Weigher<V> weigher;
+    private final long ttl;
+    private long weight = 0L;
+
+    private final LinkedHashMap<K, CachedResult<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<K, CompletableFuture<V>> inProgress = new ConcurrentHashMap<>();
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter coalesced;
+    private final Counter evictions;
+    private final Counter expirations;
+    private final Counter saved;
+    private final Timer loadTimer;
+
+    /**
+     * @param name       name of the cache (used to tag the metrics)
+     * @param maxEntries maximum number of results kept
+     * @param registry   where the hit/miss/eviction, load time and saved time metrics are registered
+     */
+    public CoalescingCache(String name, int maxEntries, MeterRegistry registry) {
+        this(name, maxEntries, value -> 1L, registry);
+    }
+
+    /**
+     * @param name      name of the cache (used to tag the metrics)
+     * @param maxWeight maximum sum of the weights of the results kept
+     * @param weigher   provides the weight of every result
+     * @param registry  where the hit/miss/eviction, load time and saved time metrics are registered
+     */
+    public CoalescingCache(String name, long maxWeight, Weigher<V> weigher, MeterRegistry registry) {
+        this(name, maxWeight, weigher, 0L, registry);
+    }
+
+    /**
+     * @param name      name of the cache (used to tag the metrics)
+     * @param maxWeight maximum sum of the weights of the results kept
+     * @param weigher   provides the weight of every result
+     * @param ttl       time (in milliseconds) a result is kept since it was last requested (0 means no expiration)
+     * @param registry  where the hit/miss/eviction, load time and saved time metrics are registered
+     */
+    public CoalescingCache(String name, long maxWeight, Weigher<V> weigher, long ttl, MeterRegistry registry) {
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+        this.ttl = ttl;
+
+        this.hits = Counter.builder("contentservice.cache.requests").tags("cache", name, "result", "hit", "tier", "heap").register(registry);
+        this.misses = Counter.builder("contentservice.cache.requests").tags("cache", name, "result", "miss", "tier", "none").register(registry);
+        this.coalesced = Counter.builder("contentservice.cache.requests").tags("cache", name, "result", "coalesced", "tier", "none").register(registry);
+        this.evictions = Counter.builder("contentservice.cache.evictions").tags("cache", name, "tier", "heap").register(registry);
+        this.expirations = Counter.builder("contentservice.cache.evictions").tags("cache", name, "tier", "expired").register(registry);
+        this.saved = Counter.builder("contentservice.cache.saved").tag("cache", name).baseUnit("milliseconds")
+                .description("Accumulated load time avoided by the cache hits")
+                .register(registry);
+        this.loadTimer = Timer.builder("contentservice.cache.load").tag("cache", name).register(registry);
+        Gauge.builder("contentservice.cache.entries", this, c -> c.size()).tag("cache", name).register(registry);
+        Gauge.builder("contentservice.cache.weight", this, c -> c.weight()).tag("cache", name).register(registry);
+    }
+
+    /**
+     * @param key    the result key
+     * @param loader loads the result when it is not cached
+     * @return the cached result or the one provided by the loader
+     * @throws E the exception thrown by the loader (also for the requests that waited for it)
+     */
+    public <E extends Exception> V get(K key, Loader<V, E> loader) throws E {
+        synchronized (entries) {
+            CachedResult<V> entry = entries.get(key);
+            if (entry != null) {
+                long now = System.currentTimeMillis();
+                if (ttl <= 0 || now - entry.accessed <= ttl) {
+                    entry.accessed = now;
+                    hits.increment();
+                    saved.increment(entry.loadTime);
+                    return entry.value;
+                }
+                entries.remove(key);
+                weight -= entry.weight;
+                expirations.increment();
+            }
+        }
+
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> running = inProgress.putIfAbsent(key, future);
+        if (running != null) {
+            coalesced.increment();
+            return this.<E>await(running);
+        }
+
+        misses.increment();
+        try {
+            long start = System.nanoTime();
+            V value = loader.load();
+            long elapsed = System.nanoTime() - start;
+            loadTimer.record(elapsed, TimeUnit.NANOSECONDS);
+            put(key, value, TimeUnit.NANOSECONDS.toMillis(elapsed));
+            future.complete(value);
+            return value;
+        } catch (Exception | Error e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inProgress.remove(key);
+        }
+    }
+
+    private void put(K key, V value, long loadTime) {
+        CachedResult<V> entry = new CachedResult<>(value, loadTime, weigher.weigh(value));
+        synchronized (entries) {
+            CachedResult<V> previous = entries.put(key, entry);
+            if (previous != null) weight -= previous.weight;
+            weight += entry.weight;
+            Iterator<Map.Entry<K, CachedResult<V>>> it = entries.entrySet().iterator();
+            while (weight > maxWeight && it.hasNext()) {
+                weight -= it.next().getValue().weight;
+                it.remove();
+                evictions.increment();
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <E extends Exception> V await(CompletableFuture<V> running) throws E {
+        try {
+            return running.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the result", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw (E) cause; // The loader only throws E
+        }
+    }
+
+    private int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private long weight() {
+        synchronized (entries) {
+            return weight;
+        }
+    }
+
+    @FunctionalInterface
+    public interface Loader<V, E extends Exception> {
+        V load() throws E;
+    }
+
+    @FunctionalInterface
+    public interface Weigher<V> {
+        long weigh(V value);
+    }
+
+    private static class CachedResult<V> {
+        private final V value;
+        private final long loadTime;
+        private final long weight;
+        private long accessed = System.currentTimeMillis(); //Guarded by the entries lock
+
+        CachedResult(V value, long loadTime, long weight) {
+            this.value = value;
+            this.loadTime = loadTime;
+            this.weight = weight;
+        }
+    }
+}
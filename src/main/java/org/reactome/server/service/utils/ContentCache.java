@@ -0,0 +1,317 @@
+package org.reactome.server.service.utils;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * Two-tier content addressed cache for rendered files. The first tier keeps the most recently used contents in the
+ * heap while the second one keeps them on disk, under a folder provided by the owner of the cache (typically
+ * depending on the database version). Both tiers are bounded by size and evict the least recently used entries.
+ * <p>
+ * Keys are expected to be the result of {@link #key(Object...)}, so they can be safely used as file names. When a time
+ * to live is set, entries older than it are discarded from both tiers the next time they are requested.
+ */
+public class ContentCache {
+
+    private static final Logger infoLogger = LoggerFactory.getLogger("infoLogger");
+    private static final Logger errorLogger = LoggerFactory.getLogger("errorLogger");
+
+    private final String name;
+    private final long heapMaxSize;
+    private final long diskMaxSize;
+    private final long ttl;
+    private final Supplier<File> folderSupplier;
+
+    private final LinkedHashMap<String, CachedContent> heap = new LinkedHashMap<>(16, 0.75f, true);
+    private long heapSize = 0L;
+
+    private File folder;
+    private final LinkedHashMap<String, Long> disk = new LinkedHashMap<>(16, 0.75f, true);
+    private long diskSize = 0L;
+
+    private final Counter heapHits;
+    private final Counter diskHits;
+    private final Counter misses;
+    private final Counter heapEvictions;
+    private final Counter diskEvictions;
+    private final Counter expirations;
+
+    /**
+     * @param name           name of the cache (used to tag the metrics)
+     * @param heapMaxSize    maximum number of bytes kept in the heap tier (0 disables it)
+     * @param diskMaxSize    maximum number of bytes kept in the disk tier (0 disables it)
+     * @param folderSupplier provides the folder for the disk tier. When the provided folder changes, the disk tier
+     *                       is reset (i.e. on database version change)
+     * @param registry       where the hit/miss/eviction metrics are registered
+     */
+    public ContentCache(String name, long heapMaxSize, long diskMaxSize, Supplier<File> folderSupplier, MeterRegistry registry) {
+        this(name, heapMaxSize, diskMaxSize, 0L, folderSupplier, registry);
+    }
+
+    /**
+     * @param name           name of the cache (used to tag the metrics)
+     * @param heapMaxSize    maximum number of bytes kept in the heap tier (0 disables it)
+     * @param diskMaxSize    maximum number of bytes kept in the disk tier (0 disables it)
+     * @param ttl            time (in milliseconds) an entry is valid for since it was stored (0 means no expiration)
+     * @param folderSupplier provides the folder for the disk tier. When the provided folder changes, the disk tier
+     *                       is reset (i.e. on database version change)
+     * @param registry       where the hit/miss/eviction metrics are registered
+     */
+    public ContentCache(String name, long heapMaxSize, long diskMaxSize, long ttl, Supplier<File> folderSupplier, MeterRegistry registry) {
+        this.name = name;
+        this.heapMaxSize = heapMaxSize;
+        this.diskMaxSize = diskMaxSize;
+        this.ttl = ttl;
+        this.folderSupplier = folderSupplier;
+
+        this.heapHits = counter(registry, "contentservice.cache.requests", "result", "hit", "tier", "heap");
+        this.diskHits = counter(registry, "contentservice.cache.requests", "result", "hit", "tier", "disk");
+        this.misses = counter(registry, "contentservice.cache.requests", "result", "miss", "tier", "none");
+        this.heapEvictions = counter(registry, "contentservice.cache.evictions", "tier", "heap");
+        this.diskEvictions = counter(registry, "contentservice.cache.evictions", "tier", "disk");
+        this.expirations = counter(registry, "contentservice.cache.evictions", "tier", "expired");
+        Gauge.builder("contentservice.cache.size", this, c -> c.heapSize).tags("cache", name, "tier", "heap").baseUnit("bytes").register(registry);
+        Gauge.builder("contentservice.cache.size", this, c -> c.diskSize).tags("cache", name, "tier", "disk").baseUnit("bytes").register(registry);
+    }
+
+    /**
+     * Builds a canonical key for the given parts. Collections are sorted so the order in which the elements were
+     * provided does not affect the key and null values are kept apart from empty ones.
+     *
+     * @param parts the values that univocally define the content
+     * @return the hexadecimal SHA-256 digest of the canonical representation of the parts
+     */
+    public static String key(Object... parts) {
+        StringBuilder sb = new StringBuilder();
+        for (Object part : parts) {
+            if (part instanceof Collection) {
+                List<String> aux = new ArrayList<>();
+                for (Object o : (Collection<?>) part) aux.add(String.valueOf(o));
+                Collections.sort(aux);
+                sb.append(aux);
+            } else {
+                sb.append(part == null ? "\u0000" : part.toString());
+            }
+            sb.append('\u001F');
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(sb.toString().getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) hex.append(String.format("%02x", b));
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); //SHA-256 is always available in the JVM
+        }
+    }
+
+    /**
+     * @param key the content key
+     * @return the cached content or null if it is not in any of the tiers
+     */
+    public byte[] get(String key) {
+        synchronized (heap) {
+            CachedContent cached = heap.get(key);
+            if (cached != null) {
+                if (!isExpired(cached.created)) {
+                    heapHits.increment();
+                    return cached.content;
+                }
+                heap.remove(key);
+                heapSize -= cached.content.length;
+                expirations.increment();
+            }
+        }
+
+        File file = getDiskFile(key);
+        if (file != null && file.exists()) {
+            try {
+                byte[] content = Files.readAllBytes(file.toPath());
+                diskHits.increment();
+                putInHeap(key, content, file.lastModified());
+                return content;
+            } catch (IOException e) {
+                errorLogger.error("Could not read cached file " + file.getPath(), e);
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * @param key the content key
+     * @return the file in the disk tier for the given key or null if it has not been cached on disk
+     */
+    public File getFile(String key) {
+        File file = getDiskFile(key);
+        if (file != null && file.exists()) {
+            diskHits.increment();
+            return file;
+        }
+        misses.increment();
+        return null;
+    }
+
+    public void put(String key, byte[] content) {
+        putInHeap(key, content, System.currentTimeMillis());
+        putInDisk(key, content);
+    }
+
+    /**
+     * Writes the content straight to the disk tier, so big contents (i.e. documents) are never held in memory
+     *
+     * @param key    the content key
+     * @param writer writes the content
+     * @return the cached file or null when the content does not fit in the disk tier (or it is disabled)
+     * @throws IOException when the content could not be stored
+     * @throws E             the exception thrown by the writer
+     */
+    public <E extends Exception> File put(String key, ContentWriter<E> writer) throws IOException, E {
+        File target = getDiskFile(key);
+        if (target == null) return null;
+        // Written to a temporary file first and then moved, so concurrent readers never see a partial file
+        File tmp = File.createTempFile(key, ".tmp", target.getParentFile());
+        try {
+            try (OutputStream os = Files.newOutputStream(tmp.toPath())) {
+                writer.write(os);
+            }
+            long length = tmp.length();
+            if (length > diskMaxSize) return null;
+            Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            addToDisk(key, length);
+            return target;
+        } finally {
+            if (tmp.exists() && !tmp.delete()) errorLogger.error("Could not delete the temporary file {}", tmp.getPath());
+        }
+    }
+
+    private void putInHeap(String key, byte[] content, long created) {
+        if (content.length > heapMaxSize) return;
+        synchronized (heap) {
+            CachedContent previous = heap.put(key, new CachedContent(content, created));
+            if (previous != null) heapSize -= previous.content.length;
+            heapSize += content.length;
+            Iterator<Map.Entry<String, CachedContent>> it = heap.entrySet().iterator();
+            while (heapSize > heapMaxSize && it.hasNext()) {
+                Map.Entry<String, CachedContent> eldest = it.next();
+                heapSize -= eldest.getValue().content.length;
+                it.remove();
+                heapEvictions.increment();
+            }
+        }
+    }
+
+    private void putInDisk(String key, byte[] content) {
+        if (content.length > diskMaxSize) return;
+        File target = getDiskFile(key);
+        if (target == null) return;
+        File tmp = null;
+        try {
+            // Written to a temporary file first and then moved, so concurrent readers never see a partial file
+            tmp = File.createTempFile(key, ".tmp", target.getParentFile());
+            Files.write(tmp.toPath(), content);
+            Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            errorLogger.error("Could not write cached file " + target.getPath(), e);
+            if (tmp != null && !tmp.delete()) errorLogger.error("Could not delete the temporary file {}", tmp.getPath());
+            return;
+        }
+        addToDisk(key, content.length);
+    }
+
+    private void addToDisk(String key, long length) {
+        List<File> toDelete = new ArrayList<>();
+        synchronized (disk) {
+            Long previous = disk.put(key, length);
+            if (previous != null) diskSize -= previous;
+            diskSize += length;
+            Iterator<Map.Entry<String, Long>> it = disk.entrySet().iterator();
+            while (diskSize > diskMaxSize && it.hasNext()) {
+                Map.Entry<String, Long> eldest = it.next();
+                diskSize -= eldest.getValue();
+                toDelete.add(new File(folder, eldest.getKey()));
+                it.remove();
+                diskEvictions.increment();
+            }
+        }
+        for (File file : toDelete) {
+            if (!file.delete()) errorLogger.error("Could not delete the evicted file {}", file.getPath());
+        }
+    }
+
+    private File getDiskFile(String key) {
+        if (diskMaxSize <= 0) return null;
+        File current = folderSupplier.get();
+        File file;
+        synchronized (disk) {
+            if (!current.equals(folder)) initDisk(current);
+            disk.get(key); //Updates the access order
+            file = new File(folder, key);
+        }
+        if (ttl > 0 && file.exists() && isExpired(file.lastModified())) expire(key, file);
+        return file;
+    }
+
+    private boolean isExpired(long created) {
+        return ttl > 0 && System.currentTimeMillis() - created > ttl;
+    }
+
+    private void expire(String key, File file) {
+        synchronized (disk) {
+            Long length = disk.remove(key);
+            if (length != null) diskSize -= length;
+        }
+        if (file.delete()) expirations.increment();
+    }
+
+    // Keeps track of the files previously stored in the folder, so eviction also applies to them after a restart
+    private void initDisk(File current) {
+        if (!current.exists() && !current.mkdirs()) {
+            errorLogger.error("Could not create the folder {} for the '{}' cache", current.getPath(), name);
+        }
+        folder = current;
+        disk.clear();
+        diskSize = 0L;
+        File[] files = current.listFiles((dir, n) -> !n.endsWith(".tmp"));
+        if (files != null) {
+            Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+            for (File file : files) {
+                disk.put(file.getName(), file.length());
+                diskSize += file.length();
+            }
+        }
+        infoLogger.info("'{}' cache initialised in {} with {} files ({} bytes)", name, current.getPath(), disk.size(), diskSize);
+    }
+
+    private Counter counter(MeterRegistry registry, String metric, String... tags) {
+        return Counter.builder(metric).tag("cache", name).tags(tags).register(registry);
+    }
+
+    @FunctionalInterface
+    public interface ContentWriter<E extends Exception> {
+        void write(OutputStream os) throws E;
+    }
+
+    private static class CachedContent {
+        private final byte[] content;
+        private final long created;
+
+        CachedContent(byte[] content, long created) {
+            this.content = content;
+            this.created = created;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package org.reactome.server.service.utils;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Sends files previously stored on disk (i.e. cached documents) to the client. When the container supports it
+ * (Tomcat with sendfile enabled), the file is handed to the container, which copies it straight from the file system
+ * to the socket once the request has been processed. Otherwise, it is transferred through a file channel.
+ */
+public class FileResponseUtils {
+
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    /**
+     * Sends the file to the client. The headers (such as Content-Type) are expected to be set beforehand.
+     * Note sendfile is only used when called from the container thread (not for asynchronously processed requests)
+     *
+     * @param file     the file to be sent
+     * @param request  the request object as provided
+     * @param response where the file is written
+     */
+    public static void send(File file, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        long length = file.length();
+        response.setContentLengthLong(length);
+
+        if (!request.isAsyncStarted() && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, file.getCanonicalPath());
+            request.setAttribute(SENDFILE_START, 0L);
+            request.setAttribute(SENDFILE_END, length);
+            return;
+        }
+
+        transfer(file, response);
+    }
+
+    /**
+     * Writes the file to the response straight away, so the file can be deleted afterwards (i.e. temporary files)
+     *
+     * @param file     the file to be sent
+     * @param response where the file is written
+     */
+    public static void transfer(File file, HttpServletResponse response) throws IOException {
+        long length = file.length();
+        response.setContentLengthLong(length);
+        try (FileChannel in = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = 0L;
+            while (position < length) {
+                position += in.transferTo(position, length - position, out);
+            }
+        }
+        response.flushBuffer();
+    }
+}
@@ -0,0 +1,55 @@
+package org.reactome.server.service.utils;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Collection;
+
+/**
+ * Writes already retrieved results as newline delimited JSON (one element per line) for the clients that accept
+ * "application/x-ndjson", so they can process every element as soon as its line is read. The rest of the media types
+ * are negotiated by the message converters as usual.
+ */
+public class JsonStreamWriter {
+
+    public static final String APPLICATION_NDJSON = "application/x-ndjson";
+
+    /**
+     * @param elements the results retrieved for the client
+     * @param writer   the writer used for every element (i.e. the one for the requested view)
+     * @param response where the result is written
+     * @return false when there are no results (and nothing has been written)
+     */
+    public static <T> boolean writeNDJSON(Collection<T> elements, ObjectWriter writer, HttpServletResponse response) throws IOException {
+        if (elements == null || elements.isEmpty()) return false;
+        // The elements are not returned by the controllers, so they are not covered by AspectLazyLoadingPrevention
+        AspectLazyLoadingPrevention.preventLazyLoading(elements);
+
+        response.setContentType(APPLICATION_NDJSON + ";charset=UTF-8");
+        ServletOutputStream out = response.getOutputStream();
+        JsonGenerator generator = writer.getFactory().createGenerator(out);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        try (SequenceWriter sequence = writer.withRootValueSeparator("\n").writeValues(generator)) {
+            sequence.writeAll(elements);
+        }
+        generator.close();
+        out.write('\n');
+        out.flush();
+        return true;
+    }
+
+    public static boolean acceptsNDJSON(HttpServletRequest request) {
+        String accept = request.getHeader(HttpHeaders.ACCEPT);
+        if (accept == null) return false;
+        MediaType ndjson = MediaType.parseMediaType(APPLICATION_NDJSON);
+        return MediaType.parseMediaTypes(accept).stream().anyMatch(ndjson::equalsTypeAndSubtype);
+    }
+
+}
@@ -0,0 +1,213 @@
+package org.reactome.server.service.utils;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.reactome.server.graph.service.GeneralService;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Keeps the gzip compressed body of responses that only depend on the database version (i.e. species, diseases or
+ * the schema model), so they are generated and compressed once per release instead of on every
+ * request. The body is sent as it is to the clients accepting gzip and decompressed for the rest.
+ * <p>
+ * Only successful GET requests are kept. Requests with an analysis token are not, since their result depends on the
+ * analysis (and the token expires).
+ */
+public class PrecompressedResponseFilter extends OncePerRequestFilter {
+
+    private static final String GZIP = "gzip";
+
+    private final GeneralService generalService;
+    private final int maxEntries;
+
+    private final LinkedHashMap<String, CompressedBody> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private String version;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter saved;
+    private final Counter compressionSaved;
+    private final Timer compressionTimer;
+    private final DistributionSummary ratio;
+
+    /**
+     * @param generalService provides the database version the kept responses belong to
+     * @param maxEntries     maximum number of responses kept
+     * @param registry       where the hit/miss, compression ratio and saved time metrics are registered
+     */
+    public PrecompressedResponseFilter(GeneralService generalService, int maxEntries, MeterRegistry registry) {
+        this.generalService = generalService;
+        this.maxEntries = maxEntries;
+
+        this.hits = Counter.builder("contentservice.cache.requests").tags("cache", "precompressed", "result", "hit", "tier", "heap").register(registry);
+        this.misses = Counter.builder("contentservice.cache.requests").tags("cache", "precompressed", "result", "miss", "tier", "none").register(registry);
+        this.saved = Counter.builder("contentservice.cache.saved").tag("cache", "precompressed").baseUnit("milliseconds")
+                .description("Accumulated response generation time avoided by the cache hits")
+                .register(registry);
+        this.compressionSaved = Counter.builder("contentservice.compression.saved").baseUnit("milliseconds")
+                .description("Accumulated compression time avoided by sending precompressed bodies")
+                .register(registry);
+        this.compressionTimer = Timer.builder("contentservice.compression.time").register(registry);
+        this.ratio = DistributionSummary.builder("contentservice.compression.ratio")
+                .description("Uncompressed size divided by the compressed size of the precompressed bodies")
+                .register(registry);
+        Gauge.builder("contentservice.cache.entries", this, f -> f.size()).tag("cache", "precompressed").register(registry);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        if (!"GET".equals(request.getMethod()) || request.getParameter("token") != null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        String key = getKey(request);
+        CompressedBody body = get(key);
+        if (body != null) {
+            hits.increment();
+            saved.increment(body.generationTime);
+            compressionSaved.increment(body.compressionTime);
+            response.setContentType(body.contentType);
+            if (body.contentDisposition != null) response.setHeader(HttpHeaders.CONTENT_DISPOSITION, body.contentDisposition);
+            send(body, request, response);
+            return;
+        }
+
+        misses.increment();
+        long start = System.nanoTime();
+        ContentCachingResponseWrapper wrapper = new ContentCachingResponseWrapper(response);
+        filterChain.doFilter(request, wrapper);
+        if (wrapper.getStatus() != HttpServletResponse.SC_OK || wrapper.getContentType() == null || request.isAsyncStarted()) {
+            wrapper.copyBodyToResponse();
+            return;
+        }
+        long generationTime = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        byte[] content = wrapper.getContentAsByteArray();
+        body = compress(wrapper.getContentType(), wrapper.getHeader(HttpHeaders.CONTENT_DISPOSITION), content, generationTime);
+        put(key, body);
+
+        if (acceptsGzip(request)) {
+            send(body, request, response);
+        } else {
+            response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+            response.setContentLength(content.length);
+            response.getOutputStream().write(content);
+        }
+    }
+
+    private void send(CompressedBody body, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (acceptsGzip(request)) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, GZIP);
+            response.setContentLength(body.content.length);
+            response.getOutputStream().write(body.content);
+        } else {
+            try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(body.content))) {
+                in.transferTo(response.getOutputStream());
+            }
+        }
+    }
+
+    private CompressedBody compress(String contentType, String contentDisposition, byte[] content, long generationTime) throws IOException {
+        long start = System.nanoTime();
+        byte[] compressed = gzip(content);
+        long elapsed = System.nanoTime() - start;
+        compressionTimer.record(elapsed, TimeUnit.NANOSECONDS);
+        ratio.record(content.length / (double) Math.max(1, compressed.length));
+        return new CompressedBody(contentType, contentDisposition, compressed, generationTime, TimeUnit.NANOSECONDS.toMillis(elapsed));
+    }
+
+    /**
+     * @return the given content gzip compressed with the best compression level (meant for content compressed once)
+     */
+    public static byte[] gzip(byte[] content) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(Math.max(32, content.length / 8));
+        try (GZIPOutputStream gzip = new GZIPOutputStream(baos) {{ def.setLevel(Deflater.BEST_COMPRESSION); }}) {
+            gzip.write(content);
+        }
+        return baos.toByteArray();
+    }
+
+    // The Accept header is part of the key since the same URL can be served in different formats (JSON, CBOR, Smile)
+    private String getKey(HttpServletRequest request) {
+        String query = request.getQueryString();
+        String accept = request.getHeader(HttpHeaders.ACCEPT);
+        return request.getRequestURI() + (query == null ? "" : "?" + query) + " " + (accept == null ? "" : accept);
+    }
+
+    private CompressedBody get(String key) {
+        String version = String.valueOf(generalService.getDBInfo().getVersion());
+        synchronized (entries) {
+            if (!version.equals(this.version)) {
+                entries.clear();
+                this.version = version;
+            }
+            return entries.get(key);
+        }
+    }
+
+    private void put(String key, CompressedBody body) {
+        synchronized (entries) {
+            entries.put(key, body);
+            Iterator<Map.Entry<String, CompressedBody>> it = entries.entrySet().iterator();
+            while (entries.size() > maxEntries && it.hasNext()) {
+                it.next();
+                it.remove();
+            }
+        }
+    }
+
+    private int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public static boolean acceptsGzip(HttpServletRequest request) {
+        String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        if (acceptEncoding == null) return false;
+        for (String encoding : acceptEncoding.split(",")) {
+            String[] parts = encoding.trim().split(";");
+            if (!parts[0].trim().equalsIgnoreCase(GZIP) && !parts[0].trim().equals("*")) continue;
+            return parts.length == 1 || !parts[1].trim().matches("q=0(\\.0*)?");
+        }
+        return false;
+    }
+
+    private static class CompressedBody {
+        private final String contentType;
+        private final String contentDisposition;
+        private final byte[] content;
+        private final long generationTime;
+        private final long compressionTime;
+
+        CompressedBody(String contentType, String contentDisposition, byte[] content, long generationTime, long compressionTime) {
+            this.contentType = contentType;
+            this.contentDisposition = contentDisposition;
+            this.content = content;
+            this.generationTime = generationTime;
+            this.compressionTime = compressionTime;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package org.reactome.server.service.utils;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.reactome.server.graph.service.GeneralService;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * The content does not change within a release, so the successful GET responses get an ETag based on the database
+ * version and a long Cache-Control, so browsers and the CDN can keep them. Conditional requests (If-None-Match) for
+ * the current release are answered with 304 before the controllers run.
+ * <p>
+ * The ETag also depends on the Accept header, since it changes the representation of the same URL. It is weak, since
+ * the response may or may not be gzip compressed (depending on its size) and that is only known once it is written.
+ * Requests with an analysis token are excluded, since their result depends on the analysis (and the token expires).
+ * <p>
+ * "If-None-Match: *" is left to the controllers, since only they know whether the resource exists.
+ */
+public class ReleaseETagFilter extends OncePerRequestFilter {
+
+    private final GeneralService generalService;
+    private final String cacheControl;
+
+    private final Counter notModified;
+    private final Counter tagged;
+
+    /**
+     * @param generalService provides the database version
+     * @param maxAge         time (in seconds) the responses can be cached for
+     * @param registry       where the conditional requests metrics are registered
+     */
+    public ReleaseETagFilter(GeneralService generalService, long maxAge, MeterRegistry registry) {
+        this.generalService = generalService;
+        this.cacheControl = "public, max-age=" + maxAge;
+
+        this.notModified = Counter.builder("contentservice.etag.requests").tag("result", "not-modified").register(registry);
+        this.tagged = Counter.builder("contentservice.etag.requests").tag("result", "tagged").register(registry);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        String method = request.getMethod();
+        if (!("GET".equals(method) || "HEAD".equals(method)) || request.getParameter("token") != null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        String eTag = getETag(request);
+        if (matches(request.getHeader(HttpHeaders.IF_NONE_MATCH), eTag)) {
+            notModified.increment();
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            setHeaders(response, eTag);
+            return;
+        }
+
+        tagged.increment();
+        filterChain.doFilter(request, new ETagResponseWrapper(response, eTag));
+    }
+
+    private String getETag(HttpServletRequest request) {
+        String version = String.valueOf(generalService.getDBInfo().getVersion());
+        String accept = request.getHeader(HttpHeaders.ACCEPT);
+        String variant = Integer.toHexString(accept == null ? 0 : accept.hashCode());
+        return "W/\"" + version + "-" + variant + "\"";
+    }
+
+    // Weak comparison (as stated for If-None-Match) of the concrete tags only
+    private static boolean matches(String ifNoneMatch, String eTag) {
+        if (ifNoneMatch == null) return false;
+        String opaque = eTag.substring(2);
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.startsWith("W/")) candidate = candidate.substring(2);
+            if (candidate.equals(opaque)) return true;
+        }
+        return false;
+    }
+
+    private void setHeaders(HttpServletResponse response, String eTag) {
+        response.setHeader(HttpHeaders.ETAG, eTag);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl);
+        response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+        response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+    }
+
+    /**
+     * Adds the headers right before the body is written, only if the response is successful (the status is known by
+     * then), so errors are not kept by the caches
+     */
+    private class ETagResponseWrapper extends HttpServletResponseWrapper {
+
+        private final String eTag;
+        private boolean checked = false;
+
+        ETagResponseWrapper(HttpServletResponse response, String eTag) {
+            super(response);
+            this.eTag = eTag;
+        }
+
+        private void addHeaders() {
+            if (checked) return;
+            checked = true;
+            if (getStatus() == HttpServletResponse.SC_OK && !isCommitted()) setHeaders((HttpServletResponse) getResponse(), eTag);
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            addHeaders();
+            return super.getOutputStream();
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            addHeaders();
+            return super.getWriter();
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            addHeaders();
+            super.flushBuffer();
+        }
+    }
+}
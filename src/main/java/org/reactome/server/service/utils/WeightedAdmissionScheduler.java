@@ -0,0 +1,156 @@
+package org.reactome.server.service.utils;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.reactome.server.service.exception.ServiceUnavailableException;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Admits memory hungry tasks (i.e. rasterisation) based on a shared budget. Every task declares its weight (for
+ * images, an estimation of the number of pixels) and it is admitted when the weight fits in the remaining budget.
+ * <p>
+ * Admission is FIFO: a task waits while there are other tasks in front of it, even if its own weight would fit, so
+ * big tasks cannot be starved by a stream of small ones. Waiting is bounded both in time and in number of waiters,
+ * and a {@link ServiceUnavailableException} is thrown when any of these limits is reached.
+ */
+public class WeightedAdmissionScheduler {
+
+    private final String name;
+    private final long budget;
+    private final int maxQueueSize;
+    private final long timeout;
+
+    private final ReentrantLock lock = new ReentrantLock(true);
+    private final Deque<Waiter> queue = new ArrayDeque<>();
+    private long inFlight = 0L;
+
+    private final Timer waitTimer;
+    private final Counter queueFullRejections;
+    private final Counter timeoutRejections;
+
+    /**
+     * @param name         name of the scheduler (used to tag the metrics)
+     * @param budget       maximum accumulated weight of the tasks running at the same time
+     * @param maxQueueSize maximum number of tasks waiting to be admitted
+     * @param timeout      maximum time (in milliseconds) a task waits to be admitted
+     * @param registry     where the wait time, budget and rejection metrics are registered
+     */
+    public WeightedAdmissionScheduler(String name, long budget, int maxQueueSize, long timeout, MeterRegistry registry) {
+        this.name = name;
+        this.budget = budget;
+        this.maxQueueSize = maxQueueSize;
+        this.timeout = timeout;
+
+        this.waitTimer = Timer.builder("contentservice.admission.wait").tag("scheduler", name).register(registry);
+        this.queueFullRejections = Counter.builder("contentservice.admission.rejections").tags("scheduler", name, "reason", "queue_full").register(registry);
+        this.timeoutRejections = Counter.builder("contentservice.admission.rejections").tags("scheduler", name, "reason", "timeout").register(registry);
+        Gauge.builder("contentservice.admission.inflight", this, s -> s.inFlight).tag("scheduler", name).register(registry);
+        Gauge.builder("contentservice.admission.budget", this, s -> s.budget).tag("scheduler", name).register(registry);
+        Gauge.builder("contentservice.admission.queue", this, s -> s.queue.size()).tag("scheduler", name).register(registry);
+    }
+
+    /**
+     * Blocks until the task with the given weight is admitted. Weights bigger than the budget are reduced to the
+     * budget, so those tasks are run on their own.
+     *
+     * @param weight the estimated cost of the task
+     * @return the permit to be closed once the task finishes
+     * @throws ServiceUnavailableException when the queue is full or the task could not be admitted on time
+     * @throws InterruptedException        if the thread is interrupted while waiting
+     */
+    public Permit acquire(long weight) throws InterruptedException {
+        long w = Math.max(0, Math.min(weight, budget));
+        long start = System.nanoTime();
+        lock.lock();
+        try {
+            if (queue.isEmpty() && inFlight + w <= budget) {
+                inFlight += w;
+                waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                return new Permit(w);
+            }
+
+            if (queue.size() >= maxQueueSize) {
+                queueFullRejections.increment();
+                throw new ServiceUnavailableException(String.format("Too many '%s' requests waiting. Please try again later", name), getRetryAfter());
+            }
+
+            Waiter waiter = new Waiter(lock.newCondition());
+            queue.addLast(waiter);
+            long nanos = TimeUnit.MILLISECONDS.toNanos(timeout);
+            try {
+                while (queue.peekFirst() != waiter || inFlight + w > budget) {
+                    if (nanos <= 0L) {
+                        timeoutRejections.increment();
+                        throw new ServiceUnavailableException(String.format("The '%s' request could not be processed on time. Please try again later", name), getRetryAfter());
+                    }
+                    nanos = waiter.condition.awaitNanos(nanos);
+                }
+            } catch (InterruptedException | ServiceUnavailableException e) {
+                queue.remove(waiter);
+                signalHead();
+                throw e;
+            }
+            queue.removeFirst();
+            inFlight += w;
+            signalHead(); // The next one might also fit in the remaining budget
+            waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return new Permit(w);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release(long weight) {
+        lock.lock();
+        try {
+            inFlight -= weight;
+            signalHead();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void signalHead() {
+        Waiter head = queue.peekFirst();
+        if (head != null) head.condition.signal();
+    }
+
+    /**
+     * @return the number of seconds suggested to the client before retrying
+     */
+    private long getRetryAfter() {
+        return Math.max(1L, TimeUnit.MILLISECONDS.toSeconds(timeout));
+    }
+
+    public class Permit implements AutoCloseable {
+        private final long weight;
+        private boolean released = false;
+
+        private Permit(long weight) {
+            this.weight = weight;
+        }
+
+        @Override
+        public void close() {
+            if (!released) {
+                released = true;
+                release(weight);
+            }
+        }
+    }
+
+    private static class Waiter {
+        private final Condition condition;
+
+        Waiter(Condition condition) {
+            this.condition = condition;
+        }
+    }
+}
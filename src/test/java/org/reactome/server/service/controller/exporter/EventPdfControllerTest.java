@@ -3,10 +3,13 @@ package org.reactome.server.service.controller.exporter;
 
 import org.junit.jupiter.api.Test;
 import org.reactome.server.service.utils.BaseTest;
+import org.springframework.test.web.servlet.MvcResult;
 
 import java.util.HashMap;
 import java.util.Map;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
 
 public class EventPdfControllerTest extends BaseTest {
 
@@ -19,6 +22,22 @@ public class EventPdfControllerTest extends BaseTest {
         params.put("expColumn", 1);
         params.put("analysisProfile", "Standard");
 
-        mockMvcGetResult("/exporter/document/event/R-HSA-69620.pdf", "application/pdf;charset=UTF-8", params);
+        mockMvcGetAsyncResult("/exporter/document/event/R-HSA-69620.pdf", "application/pdf;charset=UTF-8", params);
+    }
+
+    @Test
+    public void eventPdfCached() throws Exception {
+        Map<String, Object> params = new HashMap<>();
+        params.put("level", 1);
+        params.put("diagramProfile", "Modern");
+
+        MvcResult first = mockMvcGetAsyncResult("/exporter/document/event/R-HSA-69620.pdf", "application/pdf;charset=UTF-8", params);
+        MvcResult second = mockMvcGetAsyncResult("/exporter/document/event/R-HSA-69620.pdf", "application/pdf;charset=UTF-8", params);
+        assertEquals(first.getResponse().getContentLength(), second.getResponse().getContentLength());
+    }
+
+    @Test
+    public void eventPdfNotFound() throws Exception {
+        mockMvcGetResultNotFound("/exporter/document/event/R-HSA-0000000.pdf");
     }
 }
\ No newline at end of file
@@ -6,6 +6,8 @@ import org.reactome.server.service.utils.BaseTest;
 import java.util.HashMap;
 import java.util.Map;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
 
 public class FireworksImageExporterControllerTest extends BaseTest {
 
@@ -24,4 +26,15 @@ public class FireworksImageExporterControllerTest extends BaseTest {
         mockMvcGetResult("/exporter/fireworks/9606.svg", "image/svg+xml;charset=UTF-8;", params);
         mockMvcGetResult("/exporter/fireworks/9606.png", "image/png;charset=UTF-8;", params);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void diagramImageCached() throws Exception {
+        Map<String, Object> params = new HashMap<>();
+        params.put("quality", 3);
+        params.put("diagramProfile", "Barium Lithium");
+        //the second request is served from the render cache and has to be identical to the first one
+        byte[] first = mockMvcGetResult("/exporter/fireworks/9606.png", "image/png;charset=UTF-8", params).getResponse().getContentAsByteArray();
+        byte[] second = mockMvcGetResult("/exporter/fireworks/9606.png", "image/png;charset=UTF-8", params).getResponse().getContentAsByteArray();
+        assertArrayEquals(first, second);
+    }
+}
@@ -7,6 +7,8 @@ import org.reactome.server.service.utils.BaseTest;
 import java.util.HashMap;
 import java.util.Map;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
 
 public class ImageExporterControllerTest extends BaseTest {
 
@@ -26,6 +28,17 @@ public class ImageExporterControllerTest extends BaseTest {
         mockMvcGetResult("/exporter/diagram/3928662.svg", "image/svg+xml;charset=UTF-8 ", params);
     }
 
+    @Test
+    public void diagramImageCached() throws Exception {
+        Map<String, Object> params = new HashMap<>();
+        params.put("quality", 3);
+        params.put("diagramProfile", "Standard");
+        //the second request is served from the render cache and has to be identical to the first one
+        byte[] first = mockMvcGetResult("/exporter/diagram/R-HSA-177929.png", "image/png;charset=UTF-8", params).getResponse().getContentAsByteArray();
+        byte[] second = mockMvcGetResult("/exporter/diagram/R-HSA-177929.png", "image/png;charset=UTF-8", params).getResponse().getContentAsByteArray();
+        assertArrayEquals(first, second);
+    }
+
     @Test
     public void reactionImage() throws Exception {
         Map<String, Object> params = new HashMap<>();
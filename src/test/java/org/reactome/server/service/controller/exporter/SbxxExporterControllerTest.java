@@ -10,19 +10,18 @@ public class SbxxExporterControllerTest extends BaseTest {
     @Test
     public void eventSBGN() throws Exception {
         //pathway
-        //todo ERROR: Trying to write a SBGN file that already exists, but test passed
-        mockMvcGetResult("/exporter/event/68886.sbgn", "application/sbgn+xml;charset=UTF-8");
+        mockMvcGetAsyncResult("/exporter/event/68886.sbgn", "application/sbgn+xml;charset=UTF-8", null);
         //reaction
-        mockMvcGetResult("/exporter/event/R-HSA-9817254.sbgn", "application/sbgn+xml;charset=UTF-8");
+        mockMvcGetAsyncResult("/exporter/event/R-HSA-9817254.sbgn", "application/sbgn+xml;charset=UTF-8", null);
     }
 
     @Test
     public void eventSBML() throws Exception {
         //pathway
-        mockMvcGetResult("/exporter/event/R-HSA-157118.sbml", "application/sbml+xml;charset=UTF-8");
+        mockMvcGetAsyncResult("/exporter/event/R-HSA-157118.sbml", "application/sbml+xml;charset=UTF-8", null);
         //reaction
-        mockMvcGetResult("/exporter/event/R-HSA-9817254.sbml", "application/sbml+xml;charset=UTF-8");
+        mockMvcGetAsyncResult("/exporter/event/R-HSA-9817254.sbml", "application/sbml+xml;charset=UTF-8", null);
         //pathway in V73
-        mockMvcGetResult("/exporter/event/R-HSA-9679191.sbml", "application/sbml+xml;charset=UTF-8");
+        mockMvcGetAsyncResult("/exporter/event/R-HSA-9679191.sbml", "application/sbml+xml;charset=UTF-8", null);
     }
 }
\ No newline at end of file
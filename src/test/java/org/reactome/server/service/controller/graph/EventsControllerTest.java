@@ -1,11 +1,22 @@
 package org.reactome.server.service.controller.graph;
 
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
 import org.junit.jupiter.api.Test;
 import org.reactome.server.service.utils.BaseTest;
 
+import java.io.ByteArrayInputStream;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 
 public class EventsControllerTest extends BaseTest {
@@ -26,4 +37,37 @@ public class EventsControllerTest extends BaseTest {
         params.put("interactors", false);
         mockMvcGetResult("/data/eventsHierarchy/9913", "application/json;Charset=UTF-8", params);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void getEventHierarchyPrecomputed() throws Exception {
+        byte[] plain = mockMvcGetResult("/data/eventsHierarchy/9606", "application/json;Charset=UTF-8", "pathwaysOnly", "true").getResponse().getContentAsByteArray();
+
+        byte[] compressed = this.getMockMvc().perform(get("/data/eventsHierarchy/Homo sapiens").param("pathwaysOnly", "true").header("Accept-Encoding", "gzip"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Encoding", "gzip"))
+                .andReturn().getResponse().getContentAsByteArray();
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            assertArrayEquals(plain, in.readAllBytes());
+        }
+
+        //Binary formats are still serialised on request
+        this.getMockMvc().perform(get("/data/eventsHierarchy/9606").param("pathwaysOnly", "true").header("Accept", "application/cbor"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/cbor"));
+
+        //Media types that cannot be produced are still not acceptable
+        this.getMockMvc().perform(get("/data/eventsHierarchy/9606").param("pathwaysOnly", "true").header("Accept", "application/xml"))
+                .andExpect(status().isNotAcceptable());
+    }
+
+    @Test
+    public void getEventHierarchyBinary() throws Exception {
+        byte[] json = mockMvcGetResult("/data/eventsHierarchy/9606", "application/json;Charset=UTF-8").getResponse().getContentAsByteArray();
+
+        //The binary formats are written from the same flyweight tree as the precomputed JSON
+        byte[] cbor = this.getMockMvc().perform(get("/data/eventsHierarchy/9606").header("Accept", "application/cbor"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsByteArray();
+        assertEquals(new ObjectMapper().readTree(json).toString(), new ObjectMapper(new CBORFactory()).readTree(cbor).toString());
+    }
+}
@@ -1,17 +1,52 @@
 package org.reactome.server.service.controller.graph;
 
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.reactome.server.service.utils.BaseTest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 
 public class QueryObjectControllerTest extends BaseTest {
 
+    @Autowired
+    private MeterRegistry registry;
+
     @Test
     public void findById() throws Exception {
         mockMvcGetResult("/data/query/R-HSA-69620", "application/json;Charset=UTF-8");
     }
 
+    @Test
+    public void findByIdBinary() throws Exception {
+        byte[] cbor = this.getMockMvc().perform(get("/data/query/R-HSA-69620").header("Accept", "application/cbor"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/cbor"))
+                .andReturn().getResponse().getContentAsByteArray();
+        JsonNode node = new ObjectMapper(new CBORFactory()).readTree(cbor);
+        assertEquals("R-HSA-69620", node.get("stId").asText());
+
+        byte[] smile = this.getMockMvc().perform(get("/data/query/R-HSA-69620").param("includeRef", "true").header("Accept", "application/x-jackson-smile"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-jackson-smile"))
+                .andReturn().getResponse().getContentAsByteArray();
+        node = new ObjectMapper(new SmileFactory()).readTree(smile);
+        assertEquals("R-HSA-69620", node.get("stId").asText());
+    }
+
     @Test
     public void findByIdAttributeName() throws Exception {
         mockMvcGetResult("/data/query/8956320/displayName", "text/plain;charset=UTF-8");
@@ -28,6 +63,56 @@ public class QueryObjectControllerTest extends BaseTest {
         mockMvcPostResult("/data/query/ids/map", "141409,141431,141422");
     }
 
+    @Test
+    public void findByIdsMapMixed() throws Exception {
+        //Stable identifiers, versioned stable identifiers and database identifiers are resolved together
+        double queries = registry.counter("contentservice.identifiers.queries").count();
+        byte[] content = mockMvcPostResult("/data/query/ids/map", "R-HSA-141409, R-HSA-141431.1, 141422, R-HSA-0000000").getResponse().getContentAsByteArray();
+        JsonNode map = new ObjectMapper().readTree(content);
+        assertEquals(3, map.size());
+        assertEquals("R-HSA-141409", map.get("R-HSA-141409").get("stId").asText());
+        assertEquals("R-HSA-141431", map.get("R-HSA-141431.1").get("stId").asText());
+        assertEquals(141422L, map.get("141422").get("dbId").asLong());
+        //Unknown identifiers following the current pattern are not looked up as old stable identifiers
+        assertEquals(queries, registry.counter("contentservice.identifiers.queries").count());
+    }
+
+    @Test
+    public void findByIdsBulk() throws Exception {
+        //Way more than 20 ids are accepted in bulk mode
+        byte[] list = this.getMockMvc().perform(get("/data/schema/ReactionLikeEvent/min").param("page", "1").param("offset", "100"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsByteArray();
+        List<String> stIds = new ArrayList<>();
+        new ObjectMapper().readTree(list).forEach(node -> stIds.add(node.get("stId").asText()));
+
+        String ndjson = this.getMockMvc().perform(post("/data/query/ids").contentType(MediaType.TEXT_PLAIN).content(String.join(",", stIds)).header("Accept", "application/x-ndjson"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-ndjson;charset=UTF-8"))
+                .andReturn().getResponse().getContentAsString();
+        Set<String> found = new HashSet<>();
+        for (String line : ndjson.split("\n")) found.add(new ObjectMapper().readTree(line).get("stId").asText());
+        assertEquals(new HashSet<>(stIds), found);
+    }
+
+    @Test
+    public void findByIdsBulkSameAsJson() throws Exception {
+        //The streamed objects have to be the same (depth included) as the ones in the JSON response
+        String ids = "R-HSA-141409, R-HSA-141431, R-HSA-141422, 199420, R-HSA-69620";
+        byte[] json = this.getMockMvc().perform(post("/data/query/ids").contentType(MediaType.TEXT_PLAIN).content(ids))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsByteArray();
+        List<JsonNode> expected = new ArrayList<>();
+        new ObjectMapper().readTree(json).forEach(expected::add);
+
+        String ndjson = this.getMockMvc().perform(post("/data/query/ids").contentType(MediaType.TEXT_PLAIN).content(ids).header("Accept", "application/x-ndjson"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        List<JsonNode> streamed = new ArrayList<>();
+        for (String line : ndjson.split("\n")) streamed.add(new ObjectMapper().readTree(line));
+        assertEquals(expected, streamed);
+    }
+
     @Test
     public void findEnhancedObjectById() throws Exception {
         mockMvcGetResult("/data/query/enhanced/R-HSA-9612973", "application/json;charset=UTF-8");
@@ -1,12 +1,17 @@
 package org.reactome.server.service.controller.graph;
 
 
+import org.hamcrest.Matchers;
 import org.junit.jupiter.api.Test;
 import org.reactome.server.service.utils.BaseTest;
 
 import java.util.HashMap;
 import java.util.Map;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
 
 public class SchemaControllerTest extends BaseTest {
 
@@ -31,6 +36,27 @@ public class SchemaControllerTest extends BaseTest {
         mockMvcGetResult("/data/schema/TopLevelPathway/min", "Application/json;Charset=UTF-8", params);
     }
 
+    @Test
+    public void getSimpleDatabaseObjectByClassNameStreamed() throws Exception {
+        //2500 entries are returned as a single array or as one line per entry
+        this.getMockMvc().perform(get("/data/schema/ReactionLikeEvent/min").param("page", "1").param("offset", "2500"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/json;charset=UTF-8"))
+                .andExpect(jsonPath("$").value(Matchers.hasSize(2500)));
+
+        String ndjson = this.getMockMvc().perform(get("/data/schema/ReactionLikeEvent/min").param("page", "2").param("offset", "2500").header("Accept", "application/x-ndjson"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-ndjson;charset=UTF-8"))
+                .andReturn().getResponse().getContentAsString();
+        assertEquals(2500, ndjson.split("\n").length);
+
+        this.getMockMvc().perform(get("/data/schema/ReactionLikeEvent/min").param("page", "1").param("offset", "10").header("Accept", "application/cbor"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/cbor"));
+
+        mockMvcGetResultNotFound("/data/schema/ReactionLikeEvent/min", Map.<String, Object>of("page", 100000, "offset", 2500));
+    }
+
     @Test
     public void getSimpleReferencesObjectsByClassName() throws Exception {
 
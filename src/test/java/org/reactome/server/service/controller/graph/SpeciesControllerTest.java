@@ -4,6 +4,15 @@ package org.reactome.server.service.controller.graph;
 import org.junit.jupiter.api.Test;
 import org.reactome.server.service.utils.BaseTest;
 
+import java.io.ByteArrayInputStream;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
 
 public class SpeciesControllerTest extends BaseTest {
 
@@ -16,4 +25,35 @@ public class SpeciesControllerTest extends BaseTest {
     public void getAllSpecies() throws Exception {
         mockMvcGetResult("/data/species/all", "application/json;charset=UTF-8");
     }
-}
\ No newline at end of file
+
+    @Test
+    public void getSpeciesPrecompressed() throws Exception {
+        byte[] plain = mockMvcGetResult("/data/species/main", "application/json;charset=UTF-8").getResponse().getContentAsByteArray();
+
+        //The second request is served from the precompressed cache
+        byte[] compressed = this.getMockMvc().perform(get("/data/species/main").header("Accept-Encoding", "gzip, deflate"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Encoding", "gzip"))
+                .andReturn().getResponse().getContentAsByteArray();
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            assertArrayEquals(plain, in.readAllBytes());
+        }
+    }
+
+    @Test
+    public void getSpeciesNotModified() throws Exception {
+        String eTag = mockMvcGetResult("/data/species/all", "application/json;charset=UTF-8").getResponse().getHeader("ETag");
+        assertNotNull(eTag);
+
+        this.getMockMvc().perform(get("/data/species/all").header("If-None-Match", eTag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", eTag));
+
+        this.getMockMvc().perform(get("/data/species/all").header("If-None-Match", "\"0-0\""))
+                .andExpect(status().isOk());
+
+        //Only the controllers know whether the resource exists
+        this.getMockMvc().perform(get("/data/query/R-HSA-0000000").header("If-None-Match", "*"))
+                .andExpect(status().isNotFound());
+    }
+}
@@ -0,0 +1,77 @@
+package org.reactome.server.service.utils;
+
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.junit.jupiter.api.Test;
+import org.reactome.server.analysis.core.result.AnalysisStoredResult;
+import org.reactome.server.analysis.core.result.PathwayNodeSummary;
+import org.reactome.server.analysis.core.result.utils.TokenUtils;
+import org.reactome.server.service.config.CustomMessageConverter;
+import org.reactome.server.service.manager.AnalysisResultManager;
+import org.reactome.server.service.manager.EventHierarchyManager;
+import org.reactome.server.service.model.graph.AnalysedPathwayBrowserTree;
+import org.reactome.server.service.model.graph.PathwayBrowserTree;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+/**
+ * The overlay built from the cached analysis result has to be the same as the one built reading the token for every
+ * request (as it used to be). Nothing is checked without a token.
+ *
+ * E.G.: mvn -Dtest=AnalysisOverlayBenchmarkTest test -Doverlay.benchmark.token=MjAy... -P Your-maven-profile
+ */
+public class AnalysisOverlayBenchmarkTest extends BaseTest {
+
+    @Value("${overlay.benchmark.token:}")
+    private String token;
+
+    @Value("${overlay.benchmark.species:9606}")
+    private String species;
+
+    @Autowired
+    private TokenUtils tokenUtils;
+
+    @Autowired
+    private AnalysisResultManager analysisResultManager;
+
+    @Autowired
+    private EventHierarchyManager eventHierarchyManager;
+
+    @Autowired
+    private CustomMessageConverter customMessageConverter;
+
+    @Test
+    public void sameOverlay() throws Exception {
+        if (token.isEmpty()) return;
+
+        PathwayBrowserTree hierarchy = eventHierarchyManager.getHierarchy(species, false).getTree();
+        ObjectWriter writer = customMessageConverter.getDefaultObjectWriter();
+        assertArrayEquals(writer.writeValueAsBytes(overlayFromToken(hierarchy)), writer.writeValueAsBytes(overlayFromCache(hierarchy)));
+    }
+
+    @Test
+    public void compareOverlay() throws Exception {
+        if (!Benchmark.isEnabled() || token.isEmpty()) return;
+
+        PathwayBrowserTree hierarchy = eventHierarchyManager.getHierarchy(species, false).getTree();
+        Benchmark.run("Token read per request", 10, 100, () -> overlayFromToken(hierarchy));
+        Benchmark.run("Cached analysis result", 10, 100, () -> overlayFromCache(hierarchy));
+    }
+
+    // How the analysis result used to be retrieved
+    private AnalysedPathwayBrowserTree overlayFromToken(PathwayBrowserTree hierarchy) {
+        AnalysisStoredResult result = tokenUtils.getFromToken(token);
+        Map<String, PathwayNodeSummary> summaries = result.getPathways().stream().collect(Collectors.toMap(PathwayNodeSummary::getStId, Function.identity()));
+        return AnalysedPathwayBrowserTree.overlay(hierarchy, summaries, "TOTAL", false, false);
+    }
+
+    private AnalysedPathwayBrowserTree overlayFromCache(PathwayBrowserTree hierarchy) {
+        Map<String, PathwayNodeSummary> summaries = analysisResultManager.getResult(token).getSummaries();
+        return AnalysedPathwayBrowserTree.overlay(hierarchy, summaries, "TOTAL", false, false);
+    }
+}
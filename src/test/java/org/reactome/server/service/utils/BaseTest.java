@@ -6,11 +6,13 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.ResultActions;
 import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 
 import java.util.HashMap;
 import java.util.Map;
 
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
@@ -80,6 +82,29 @@ public class BaseTest {
     }
 
 
+    /**
+     * Get request testing of Spring MVC controllers that might process the request asynchronously (i.e. returning
+     * a DeferredResult) or straight away (i.e. when the response is cached)
+     */
+    public MvcResult mockMvcGetAsyncResult(String url, String contentType, Map<String, Object> params) throws Exception {
+        MockHttpServletRequestBuilder requestBuilder = get(url);
+        if (params != null) {
+            for (Map.Entry<String, Object> entry : params.entrySet())
+                requestBuilder.param(entry.getKey(), entry.getValue().toString());
+        }
+        ResultActions actions = this.mockMvc.perform(requestBuilder);
+        MvcResult mvcResult = actions.andReturn();
+        if (!mvcResult.getRequest().isAsyncStarted()) {
+            return actions.andExpect(status().isOk())
+                    .andExpect(content().contentType(contentType))
+                    .andReturn();
+        }
+        return this.mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(contentType))
+                .andReturn();
+    }
+
     /**
      * Get request not found testing of Spring MVC controllers
      */
@@ -0,0 +1,80 @@
+package org.reactome.server.service.utils;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.reactome.server.graph.domain.model.DatabaseObject;
+import org.reactome.server.graph.service.AdvancedDatabaseObjectService;
+import org.reactome.server.graph.service.helper.RelationshipDirection;
+import org.reactome.server.service.controller.graph.QueryObjectController;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * {@link QueryObjectController#findByIdsMap} resolves a mix of stable identifiers, versioned stable identifiers,
+ * database identifiers and old stable identifiers in one go; it has to map them to the objects that the previous
+ * one-query-per-identifier approach found.
+ */
+public class BatchedIdsBenchmarkTest extends BaseTest {
+
+    private static final Logger infoLogger = LoggerFactory.getLogger("benchmarkLogger");
+
+    @Value("${batched.benchmark.ids:R-HSA-1640170,R-HSA-109581,199420,R-HSA-69620,R-HSA-1252247.2,R-HSA-6799198,R-HSA-162582,R-HSA-5673001,R-HSA-60140.1,9607240,69173,141409,141431,141422,R-HSA-141409.1,R-HSA-9612973,8956320,REACT_578,REACT_1698,REACT_15518}")
+    private String ids;
+
+    @Autowired
+    private QueryObjectController queryObjectController;
+
+    @Autowired
+    private AdvancedDatabaseObjectService advancedDatabaseObjectService;
+
+    @Autowired
+    private MeterRegistry registry;
+
+    @Test
+    public void sameObjects() throws Exception {
+        List<String> identifiers = Arrays.asList(ids.split(","));
+        assertEquals(toDbIds(getPerIdentifier(identifiers)), toDbIds(findByIdsMap()));
+    }
+
+    @Test
+    public void compareBatched() throws Exception {
+        if (!Benchmark.isEnabled()) return;
+
+        List<String> identifiers = Arrays.asList(ids.split(","));
+        double queries = registry.counter("contentservice.identifiers.queries").count();
+        int found = findByIdsMap().size();
+        double oldStIdQueries = registry.counter("contentservice.identifiers.queries").count() - queries;
+
+        infoLogger.info("{} identifiers ({} found)", identifiers.size(), found);
+        Benchmark.run("Per identifier (" + identifiers.size() + " round trips)", 10, 100, () -> getPerIdentifier(identifiers));
+        Benchmark.run("Batched (" + (1 + (int) oldStIdQueries) + " round trips)", 10, 100, this::findByIdsMap);
+    }
+
+    private Map<String, DatabaseObject> findByIdsMap() throws Exception {
+        return queryObjectController.findByIdsMap(ids, new MockHttpServletRequest(), new MockHttpServletResponse());
+    }
+
+    // How QueryObjectController used to retrieve the objects
+    private Map<String, DatabaseObject> getPerIdentifier(Collection<String> identifiers) {
+        Map<String, DatabaseObject> map = new HashMap<>();
+        for (String id : identifiers) {
+            DatabaseObject object = advancedDatabaseObjectService.findById(id, RelationshipDirection.OUTGOING);
+            if (object != null) map.put(id, object);
+        }
+        return map;
+    }
+
+    private Map<String, Long> toDbIds(Map<String, DatabaseObject> map) {
+        Map<String, Long> rtn = new HashMap<>();
+        map.forEach((id, object) -> rtn.put(id, object.getDbId()));
+        return rtn;
+    }
+}
@@ -0,0 +1,96 @@
+package org.reactome.server.service.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+/**
+ * Warm-up and timing loop of the benchmarks comparing a change with the approach it replaced. The equality of both
+ * approaches is checked by regular tests, while the timings take a while, so they are only measured when requested.
+ * The results are reported through the benchmarkLogger.
+ *
+ * E.G.: mvn -Dtest=BlackbirdBenchmarkTest test -Dbenchmark=true -P Your-maven-profile
+ */
+public class Benchmark {
+
+    private static final Logger infoLogger = LoggerFactory.getLogger("benchmarkLogger");
+
+    public static final int WARM_UP = 20;
+    public static final int ITERATIONS = 200;
+
+    @FunctionalInterface
+    public interface Task {
+        void run() throws Exception;
+    }
+
+    private final long[] times;     // Nanoseconds per iteration (sorted)
+    private final long allocated;   // Bytes allocated by all the iterations
+
+    private Benchmark(long[] times, long allocated) {
+        this.times = times;
+        this.allocated = allocated;
+    }
+
+    public static boolean isEnabled() {
+        return Boolean.getBoolean("benchmark");
+    }
+
+    public static Benchmark run(String name, Task task) throws Exception {
+        return run(name, WARM_UP, ITERATIONS, task);
+    }
+
+    /**
+     * Runs the task 'warmUp' times and then measures 'iterations' runs of it (time per iteration and bytes allocated
+     * by the current thread). The result is reported before it is returned.
+     */
+    public static Benchmark run(String name, int warmUp, int iterations, Task task) throws Exception {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        for (int i = 0; i < warmUp; i++) task.run();
+
+        long[] times = new long[iterations];
+        long allocated = threads.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            task.run();
+            times[i] = System.nanoTime() - start;
+        }
+        allocated = threads.getThreadAllocatedBytes(thread) - allocated;
+        Arrays.sort(times);
+
+        Benchmark benchmark = new Benchmark(times, allocated);
+        infoLogger.info("{}: mean {}ms p50 {}ms p95 {}ms, {} bytes allocated per iteration", name,
+                format(benchmark.getMean()), format(benchmark.getPercentile(50)), format(benchmark.getPercentile(95)),
+                String.format("%,d", benchmark.getAllocated()));
+        return benchmark;
+    }
+
+    /**
+     * @return mean time per iteration in milliseconds
+     */
+    public double getMean() {
+        return Arrays.stream(times).average().orElse(0) / 1e6;
+    }
+
+    /**
+     * @return time per iteration in milliseconds for the given percentile
+     */
+    public double getPercentile(int percentile) {
+        if (times.length == 0) return 0;
+        int index = (int) Math.ceil(percentile / 100.0 * times.length) - 1;
+        return times[Math.max(0, index)] / 1e6;
+    }
+
+    /**
+     * @return bytes allocated per iteration
+     */
+    public long getAllocated() {
+        return times.length == 0 ? 0 : allocated / times.length;
+    }
+
+    private static String format(double ms) {
+        return String.format("%.3f", ms);
+    }
+}
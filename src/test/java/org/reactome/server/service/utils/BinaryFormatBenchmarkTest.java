@@ -0,0 +1,111 @@
+package org.reactome.server.service.utils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.junit.jupiter.api.Test;
+import org.reactome.server.graph.service.AdvancedDatabaseObjectService;
+import org.reactome.server.graph.service.ParticipantService;
+import org.reactome.server.graph.service.helper.EnhancedQueryOptions;
+import org.reactome.server.service.config.BinaryMessageConverter;
+import org.reactome.server.service.config.CustomMessageConverter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * An enhanced pathway and the participants of a reaction serialised to JSON, CBOR and Smile have to decode (to a
+ * tree, as generic clients do) to the same content. The benchmark also reports the size of every format.
+ */
+public class BinaryFormatBenchmarkTest extends BaseTest {
+
+    private static final Logger infoLogger = LoggerFactory.getLogger("benchmarkLogger");
+
+    private static final String[] INCLUDE_REF = {"false", "true"};
+
+    @Value("${binary.benchmark.pathway:R-HSA-69620}")
+    private String pathwayId;
+
+    @Value("${binary.benchmark.reaction:R-HSA-6799198}")
+    private String reactionId;
+
+    @Autowired
+    private AdvancedDatabaseObjectService advancedDatabaseObjectService;
+
+    @Autowired
+    private ParticipantService participantService;
+
+    @Autowired
+    private CustomMessageConverter customMessageConverter;
+
+    @Autowired
+    @Qualifier("cborMessageConverter")
+    private BinaryMessageConverter cborMessageConverter;
+
+    @Autowired
+    @Qualifier("smileMessageConverter")
+    private BinaryMessageConverter smileMessageConverter;
+
+    @Test
+    public void sameContent() throws Exception {
+        Map<String, Object> payloads = getPayloads();
+        for (String includeRef : INCLUDE_REF) {
+            Map<String, ObjectWriter> writers = getWriters(includeRef);
+            for (Map.Entry<String, Object> payload : payloads.entrySet()) {
+                String expected = null;
+                for (Map.Entry<String, ObjectWriter> writer : writers.entrySet()) {
+                    ObjectReader reader = new ObjectMapper(writer.getValue().getFactory()).reader();
+                    String tree = reader.readTree(writer.getValue().writeValueAsBytes(payload.getValue())).toString(); //The number types may differ between formats
+                    if (expected == null) expected = tree;
+                    assertEquals(expected, tree, "Different content for " + payload.getKey() + " in " + writer.getKey() + " (includeRef=" + includeRef + ")");
+                }
+            }
+        }
+    }
+
+    @Test
+    public void compareFormats() throws Exception {
+        if (!Benchmark.isEnabled()) return;
+
+        Map<String, Object> payloads = getPayloads();
+        for (String includeRef : INCLUDE_REF) {
+            Map<String, ObjectWriter> writers = getWriters(includeRef);
+            for (Map.Entry<String, Object> payload : payloads.entrySet()) {
+                for (Map.Entry<String, ObjectWriter> writer : writers.entrySet()) {
+                    ObjectReader reader = new ObjectMapper(writer.getValue().getFactory()).reader();
+                    byte[] content = writer.getValue().writeValueAsBytes(payload.getValue());
+                    String name = "includeRef=" + includeRef + " " + payload.getKey() + " " + writer.getKey();
+                    infoLogger.info("{}: {} bytes", name, content.length);
+                    Benchmark.run(name + " encode", () -> writer.getValue().writeValueAsBytes(payload.getValue()));
+                    Benchmark.run(name + " decode", () -> reader.readTree(content));
+                }
+            }
+        }
+    }
+
+    private Map<String, Object> getPayloads() {
+        Map<String, Object> payloads = new LinkedHashMap<>();
+        payloads.put("pathway " + pathwayId, advancedDatabaseObjectService.findEnhancedObjectById(pathwayId, new EnhancedQueryOptions(false, true, false)));
+        payloads.put("participants " + reactionId, participantService.getParticipants(reactionId));
+        return payloads;
+    }
+
+    private Map<String, ObjectWriter> getWriters(String includeRef) {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setParameter("includeRef", includeRef);
+
+        Map<String, ObjectWriter> writers = new LinkedHashMap<>();
+        writers.put("json", customMessageConverter.getObjectWriter(request));
+        writers.put("cbor", cborMessageConverter.getObjectWriter(request));
+        writers.put("smile", smileMessageConverter.getObjectWriter(request));
+        return writers;
+    }
+}
@@ -0,0 +1,105 @@
+package org.reactome.server.service.utils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import org.junit.jupiter.api.Test;
+import org.reactome.server.graph.domain.annotations.StoichiometryView;
+import org.reactome.server.graph.domain.model.DatabaseObject;
+import org.reactome.server.graph.service.AdvancedDatabaseObjectService;
+import org.reactome.server.graph.service.ParticipantService;
+import org.reactome.server.graph.service.helper.EnhancedQueryOptions;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+
+import java.io.OutputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+/**
+ * The Blackbird module (see jackson.blackbird property) must not change the serialised content of the default
+ * (dbId identity) and the JSOG mappers for an enhanced pathway, an enhanced complex and the participants of a reaction.
+ */
+public class BlackbirdBenchmarkTest extends BaseTest {
+
+    @Value("${serializer.benchmark.pathway:R-HSA-69620}")
+    private String pathwayId;
+
+    @Value("${serializer.benchmark.complex:R-HSA-1252247}")
+    private String complexId;
+
+    @Value("${serializer.benchmark.reaction:R-HSA-6799198}")
+    private String reactionId;
+
+    @Autowired
+    private AdvancedDatabaseObjectService advancedDatabaseObjectService;
+
+    @Autowired
+    private ParticipantService participantService;
+
+    @Autowired
+    private ObjectMapper defaultObjectMapper;
+
+    @Autowired
+    @Qualifier("jsogObjectMapper")
+    private ObjectMapper jsogObjectMapper;
+
+    @Test
+    public void sameContent() throws Exception {
+        Map<String, Object> payloads = getPayloads();
+        for (Map.Entry<String, ObjectMapper> mapper : getMappers().entrySet()) {
+            ObjectWriter reflection = getWriter(mapper.getValue(), false);
+            ObjectWriter blackbird = getWriter(mapper.getValue(), true);
+            for (Map.Entry<String, Object> payload : payloads.entrySet()) {
+                assertArrayEquals(reflection.writeValueAsBytes(payload.getValue()), blackbird.writeValueAsBytes(payload.getValue()),
+                        "Different content for " + payload.getKey() + " with the " + mapper.getKey() + " mapper");
+            }
+        }
+    }
+
+    @Test
+    public void compareSerialisers() throws Exception {
+        if (!Benchmark.isEnabled()) return;
+
+        Map<String, Object> payloads = getPayloads();
+        OutputStream discard = OutputStream.nullOutputStream();
+        for (Map.Entry<String, ObjectMapper> mapper : getMappers().entrySet()) {
+            ObjectWriter reflection = getWriter(mapper.getValue(), false);
+            ObjectWriter blackbird = getWriter(mapper.getValue(), true);
+            for (Map.Entry<String, Object> payload : payloads.entrySet()) {
+                String name = mapper.getKey() + " mapper, " + payload.getKey();
+                Benchmark.run(name + " reflection", () -> reflection.writeValue(discard, payload.getValue()));
+                Benchmark.run(name + " blackbird", () -> blackbird.writeValue(discard, payload.getValue()));
+            }
+        }
+    }
+
+    private Map<String, Object> getPayloads() {
+        Map<String, Object> payloads = new LinkedHashMap<>();
+        payloads.put("pathway " + pathwayId, getEnhanced(pathwayId));
+        payloads.put("complex " + complexId, getEnhanced(complexId));
+        payloads.put("participants " + reactionId, participantService.getParticipants(reactionId));
+        return payloads;
+    }
+
+    private Map<String, ObjectMapper> getMappers() {
+        Map<String, ObjectMapper> mappers = new LinkedHashMap<>();
+        mappers.put("default", defaultObjectMapper);
+        mappers.put("jsog", jsogObjectMapper);
+        return mappers;
+    }
+
+    // Copies, so the result does not depend on the jackson.blackbird property
+    private ObjectWriter getWriter(ObjectMapper mapper, boolean blackbird) {
+        ObjectMapper copy = mapper.copy();
+        if (blackbird) copy.registerModule(new BlackbirdModule());
+        return copy.writerWithView(StoichiometryView.Flatten.class);
+    }
+
+    private DatabaseObject getEnhanced(String id) {
+        return advancedDatabaseObjectService.findEnhancedObjectById(id, new EnhancedQueryOptions(false, true, false));
+    }
+}
@@ -0,0 +1,186 @@
+package org.reactome.server.service.utils;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.Test;
+import org.reactome.server.analysis.core.data.AnalysisData;
+import org.reactome.server.analysis.core.model.PathwayHierarchy;
+import org.reactome.server.analysis.core.model.PathwayNode;
+import org.reactome.server.analysis.core.model.PathwayNodeData;
+import org.reactome.server.analysis.core.model.SpeciesNodeFactory;
+import org.reactome.server.analysis.core.model.resource.MainResource;
+import org.reactome.server.analysis.core.result.PathwayNodeSummary;
+import org.reactome.server.analysis.core.result.model.EntityStatistics;
+import org.reactome.server.analysis.core.result.model.ReactionStatistics;
+import org.reactome.server.graph.domain.model.Species;
+import org.reactome.server.graph.service.HierarchyService;
+import org.reactome.server.graph.service.SpeciesService;
+import org.reactome.server.graph.service.helper.PathwayBrowserNode;
+import org.reactome.server.service.config.CustomMessageConverter;
+import org.reactome.server.service.manager.AnalysisResultManager;
+import org.reactome.server.service.manager.EventHierarchyManager;
+import org.reactome.server.service.model.graph.AnalysedPathwayBrowserNode;
+import org.reactome.server.service.model.graph.AnalysedPathwayBrowserTree;
+import org.reactome.server.service.model.graph.PathwayBrowserTree;
+import org.reactome.server.service.model.graph.SizedPathwayBrowserNode;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+
+import java.io.OutputStream;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * The flyweight tree (shared structure with the analysis results in arrays) has to produce the same nodes as the
+ * decoration of copies of the sized trees it replaced (see the former AnalysedPathwayBrowserNode.initAnalysis).
+ * The children used to be collected in a HashSet, so their order was not defined and it is not compared; the
+ * flyweight tree keeps the order of the sized trees instead.
+ * <p>
+ * Without a token there are no analysis results, which still covers the copy of the trees.
+ *
+ * E.G.: mvn -Dtest=FlyweightHierarchyBenchmarkTest test -Dflyweight.benchmark.token=MjAy... -P Your-maven-profile
+ */
+public class FlyweightHierarchyBenchmarkTest extends BaseTest {
+
+    @Value("${flyweight.benchmark.token:}")
+    private String token;
+
+    @Value("${flyweight.benchmark.species:Homo sapiens}")
+    private String species;
+
+    @Autowired
+    private SpeciesService speciesService;
+
+    @Autowired
+    private HierarchyService hierarchyService;
+
+    @Autowired
+    private AnalysisData analysisData;
+
+    @Autowired
+    private AnalysisResultManager analysisResultManager;
+
+    @Autowired
+    private EventHierarchyManager eventHierarchyManager;
+
+    @Autowired
+    private CustomMessageConverter customMessageConverter;
+
+    @Test
+    public void sameContent() throws Exception {
+        Map<String, PathwayNodeSummary> summaries = getSummaries();
+        ObjectWriter writer = customMessageConverter.getDefaultObjectWriter();
+        ObjectMapper mapper = new ObjectMapper();
+        assertEquals(
+                sortChildren(mapper.readTree(writer.writeValueAsBytes(decorate(getSizedNodes(), summaries, "TOTAL", false, false)))),
+                sortChildren(mapper.readTree(writer.writeValueAsBytes(AnalysedPathwayBrowserTree.overlay(getTree(), summaries, "TOTAL", false, false))))
+        );
+    }
+
+    @Test
+    public void compareDecorations() throws Exception {
+        if (!Benchmark.isEnabled()) return;
+
+        Map<String, PathwayNodeSummary> summaries = getSummaries();
+        List<PathwayBrowserNode> nodes = getSizedNodes();
+        PathwayBrowserTree tree = getTree();
+        ObjectWriter writer = customMessageConverter.getDefaultObjectWriter();
+        OutputStream discard = OutputStream.nullOutputStream();
+
+        String name = "'" + species + "' events hierarchy (" + tree.size() + " nodes, " + summaries.size() + " pathways in the analysis) ";
+        Benchmark.run(name + "node copies", 10, 100, () -> writer.writeValue(discard, decorate(nodes, summaries, "TOTAL", false, false)));
+        Benchmark.run(name + "flyweight", 10, 100, () -> writer.writeValue(discard, AnalysedPathwayBrowserTree.overlay(tree, summaries, "TOTAL", false, false)));
+    }
+
+    private Map<String, PathwayNodeSummary> getSummaries() {
+        return token.isEmpty() ? Collections.emptyMap() : analysisResultManager.getResult(token).getSummaries();
+    }
+
+    private PathwayBrowserTree getTree() {
+        return eventHierarchyManager.getHierarchy(species, false).getTree();
+    }
+
+    // The sized trees as they were kept before the flyweight tree
+    private List<PathwayBrowserNode> getSizedNodes() {
+        Species target = speciesService.getSpecies(species);
+        PathwayHierarchy hierarchy = analysisData.getPathwayHierarchies().get(SpeciesNodeFactory.getSpeciesNode(target));
+        Map<String, PathwayNode> stIdToNode = new HashMap<>();
+        Deque<PathwayNode> stack = new ArrayDeque<>(hierarchy.getChildren());
+        while (!stack.isEmpty()) {
+            PathwayNode node = stack.pop();
+            stIdToNode.put(node.getStId(), node);
+            node.getChildren().forEach(stack::push);
+        }
+        return hierarchyService.getEventHierarchy(target.getDisplayName(), false).stream()
+                .map(SizedPathwayBrowserNode::new)
+                .peek(node -> node.initSize(stIdToNode))
+                .collect(Collectors.toList());
+    }
+
+    // How the trees used to be decorated (EventsController and AnalysedPathwayBrowserNode.initAnalysis)
+    private static List<PathwayBrowserNode> decorate(Collection<PathwayBrowserNode> nodes, Map<String, PathwayNodeSummary> summaries,
+                                                     String resource, boolean includeInteractors, boolean importableOnly) {
+        return nodes.stream()
+                .map(node -> (SizedPathwayBrowserNode) node)
+                .map(PreviousNode::new)
+                .peek(node -> node.initAnalysis(summaries, resource, includeInteractors, importableOnly))
+                .collect(Collectors.toList());
+    }
+
+    private static class PreviousNode extends AnalysedPathwayBrowserNode {
+
+        PreviousNode(SizedPathwayBrowserNode node) {
+            super(node);
+        }
+
+        void initAnalysis(Map<String, PathwayNodeSummary> stIdToData, String resource, boolean includeInteractors, boolean importableOnly) {
+            PathwayNodeSummary summary = stIdToData.get(getStId());
+            if (summary == null) return;
+            this.llp = summary.isLlp();
+            PathwayNodeData analysisData = summary.getData();
+            if (analysisData == null) return;
+
+            if (resource.equals("TOTAL")) {
+                this.entities = new EntityStatistics(analysisData, includeInteractors, importableOnly);
+                this.reactions = new ReactionStatistics(analysisData, importableOnly);
+            } else {
+                for (MainResource mr : analysisData.getResources()) {
+                    if (mr.getName().equals(resource)) {
+                        this.entities = new EntityStatistics(mr, analysisData, includeInteractors);
+                        this.reactions = new ReactionStatistics(mr, analysisData);
+                        break;
+                    }
+                }
+            }
+
+            if (this.getChildren() != null) {
+                this.setChildren(this.getChildren().stream()
+                        .map(node -> (SizedPathwayBrowserNode) node)
+                        .map(PreviousNode::new)
+                        .peek(node -> node.initAnalysis(stIdToData, resource, includeInteractors, importableOnly))
+                        .collect(Collectors.toSet())
+                );
+            }
+        }
+    }
+
+    // The order of the children is not taken into account (see above)
+    private static JsonNode sortChildren(JsonNode node) {
+        if (node.isArray()) {
+            List<JsonNode> nodes = new ArrayList<>();
+            node.forEach(child -> nodes.add(sortChildren(child)));
+            nodes.sort(Comparator.comparing(child -> child.path("stId").asText()));
+            ArrayNode sorted = JsonNodeFactory.instance.arrayNode();
+            sorted.addAll(nodes);
+            return sorted;
+        }
+        if (node.has("children")) ((ObjectNode) node).set("children", sortChildren(node.get("children")));
+        return node;
+    }
+}
@@ -0,0 +1,89 @@
+package org.reactome.server.service.utils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.junit.jupiter.api.Test;
+import org.reactome.server.graph.domain.annotations.StoichiometryView;
+import org.reactome.server.graph.domain.model.Pathway;
+import org.reactome.server.graph.service.DatabaseObjectService;
+import org.reactome.server.service.config.CustomMessageConverter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.io.OutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+/**
+ * The writers precomputed by {@link CustomMessageConverter} have to serialise a big pathway exactly as the shared
+ * mapper configured for every request used to, for every combination of includeRef and view.
+ */
+public class ObjectWriterBenchmarkTest extends BaseTest {
+
+    private static final String[] INCLUDE_REF = {"false", "true"};
+    private static final String[] VIEWS = {"flatten", "nested", "nested-aggregated"};
+
+    @Value("${writer.benchmark.pathway:R-HSA-162582}")
+    private String pathwayId;
+
+    @Autowired
+    private DatabaseObjectService databaseObjectService;
+
+    @Autowired
+    private CustomMessageConverter customMessageConverter;
+
+    @Autowired
+    private ObjectMapper defaultObjectMapper;
+
+    @Autowired
+    @Qualifier("jsogObjectMapper")
+    private ObjectMapper jsogObjectMapper;
+
+    @Test
+    public void sameContent() throws Exception {
+        Pathway pathway = databaseObjectService.findById(pathwayId);
+        for (String includeRef : INCLUDE_REF) {
+            for (String view : VIEWS) {
+                MockHttpServletRequest request = getRequest(includeRef, view);
+                assertArrayEquals(getPreviousWriter(request).writeValueAsBytes(pathway), customMessageConverter.getObjectWriter(request).writeValueAsBytes(pathway),
+                        "Different content for includeRef=" + includeRef + " view=" + view);
+            }
+        }
+    }
+
+    @Test
+    public void compareWriters() throws Exception {
+        if (!Benchmark.isEnabled()) return;
+
+        Pathway pathway = databaseObjectService.findById(pathwayId);
+        OutputStream discard = OutputStream.nullOutputStream();
+        for (String includeRef : INCLUDE_REF) {
+            for (String view : VIEWS) {
+                MockHttpServletRequest request = getRequest(includeRef, view);
+                String name = "includeRef=" + includeRef + " view=" + view;
+                Benchmark.run(name + " previous", () -> getPreviousWriter(request).writeValue(discard, pathway));
+                Benchmark.run(name + " current", () -> customMessageConverter.getObjectWriter(request).writeValue(discard, pathway));
+            }
+        }
+    }
+
+    private MockHttpServletRequest getRequest(String includeRef, String view) {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setParameter("includeRef", includeRef);
+        request.setParameter("view", view);
+        return request;
+    }
+
+    // How CustomMessageConverter used to provide the writer
+    private ObjectWriter getPreviousWriter(MockHttpServletRequest request) {
+        ObjectMapper mapper = Boolean.parseBoolean(request.getParameter("includeRef")) ? jsogObjectMapper : defaultObjectMapper;
+        mapper.configure(SerializationFeature.WRAP_ROOT_VALUE, false);
+        String view = request.getParameter("view");
+        if ("nested".equals(view)) return mapper.writerWithView(StoichiometryView.Nested.class);
+        if ("nested-aggregated".equals(view)) return mapper.writerWithView(StoichiometryView.NestedAggregated.class);
+        return mapper.writerWithView(StoichiometryView.Flatten.class);
+    }
+}
@@ -0,0 +1,78 @@
+package org.reactome.server.service.utils;
+
+import org.junit.jupiter.api.Test;
+import org.reactome.server.graph.exception.CustomQueryException;
+import org.reactome.server.graph.service.AdvancedDatabaseObjectService;
+import org.reactome.server.service.manager.SubpathwayReactionIndexManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * The subpathway reactions index used for the diagram flagging has to provide the same reactions as the Cypher
+ * traversal it replaced. The regular test checks a few pathways without diagram, while the benchmark goes through
+ * all of them for the given species.
+ */
+public class SubpathwayReactionIndexBenchmarkTest extends BaseTest {
+
+    private static final Logger infoLogger = LoggerFactory.getLogger("benchmarkLogger");
+
+    @Value("${flagging.benchmark.species:Homo sapiens}")
+    private String species;
+
+    @Autowired
+    private AdvancedDatabaseObjectService advancedDatabaseObjectService;
+
+    @Autowired
+    private SubpathwayReactionIndexManager subpathwayReactionIndexManager;
+
+    @Test
+    public void sameReactions() throws CustomQueryException {
+        for (String pathway : getPathwaysWithoutDiagram(5)) assertSameReactions(pathway);
+    }
+
+    @Test
+    public void compareWithCypher() throws Exception {
+        if (!Benchmark.isEnabled()) return;
+
+        List<String> pathways = new ArrayList<>(getPathwaysWithoutDiagram(Integer.MAX_VALUE));
+        if (pathways.isEmpty()) return;
+        infoLogger.info("{} pathways without diagram in '{}'", pathways.size(), species);
+        for (String pathway : pathways) assertSameReactions(pathway);
+
+        //The first iteration builds the index (if not built yet)
+        Benchmark.run("Index build", 0, 1, () -> subpathwayReactionIndexManager.getReactions(List.of()));
+        int[] next = {0, 0};
+        Benchmark.run("Cypher per pathway", 0, pathways.size(), () -> getReactionsWithCypher(pathways.get(next[0]++)));
+        Benchmark.run("Index per pathway", 0, pathways.size(), () -> subpathwayReactionIndexManager.getReactions(List.of(pathways.get(next[1]++))));
+    }
+
+    private void assertSameReactions(String pathway) throws CustomQueryException {
+        assertEquals(getReactionsWithCypher(pathway), subpathwayReactionIndexManager.getReactions(List.of(pathway)), "Different reactions for " + pathway);
+    }
+
+    private Collection<String> getPathwaysWithoutDiagram(int limit) throws CustomQueryException {
+        String query = "" +
+                "MATCH (p:Pathway{speciesName:$species}) " +
+                "WHERE NOT p.hasDiagram " +
+                "RETURN p.stId " +
+                "ORDER BY p.stId " +
+                "LIMIT $limit";
+        return advancedDatabaseObjectService.getCustomQueryResults(String.class, query, Map.of("species", species, "limit", limit));
+    }
+
+    private Set<String> getReactionsWithCypher(String pathway) throws CustomQueryException {
+        String query = "" +
+                "MATCH path=(p:Pathway)-[:hasEvent*]->(rle:ReactionLikeEvent) " +
+                "WHERE p.stId IN $toFlag AND NONE(x IN NODES(path) WHERE (x:Pathway) AND x.hasDiagram) " +
+                "RETURN DISTINCT rle.stId AS identifier ";
+        Map<String, Object> params = new HashMap<>();
+        params.put("toFlag", List.of(pathway));
+        return new HashSet<>(advancedDatabaseObjectService.getCustomQueryResults(String.class, query, params));
+    }
+}